@@ -0,0 +1,68 @@
+package com.ai.demo.budget;
+
+import org.springframework.ai.chat.client.ChatClientRequest;
+import org.springframework.ai.chat.client.ChatClientResponse;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisor;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisorChain;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisor;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisorChain;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.core.Ordered;
+import reactor.core.publisher.Flux;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按请求预算统计大模型调用次数与 token 数，预算耗尽后拒绝调用
+ * <p>只对通过 {@link RequestBudget#advise} 附加了预算参数的调用生效，其余调用原样放行。
+ * 流式调用以各段响应中最大的 token 总数计入，模型不在流式响应中返回用量时只统计调用次数。</p>
+ */
+public class BudgetAdvisor implements CallAdvisor, StreamAdvisor {
+
+    @Override
+    public ChatClientResponse adviseCall(ChatClientRequest chatClientRequest, CallAdvisorChain callAdvisorChain) {
+        if (!(chatClientRequest.context().get(RequestBudget.KEY) instanceof RequestBudget budget)) {
+            return callAdvisorChain.nextCall(chatClientRequest);
+        }
+        budget.beforeLlmCall();
+        ChatClientResponse response = callAdvisorChain.nextCall(chatClientRequest);
+        totalTokens(response).ifPresent(budget::recordTokens);
+        return response;
+    }
+
+    @Override
+    public Flux<ChatClientResponse> adviseStream(ChatClientRequest chatClientRequest,
+            StreamAdvisorChain streamAdvisorChain) {
+        if (!(chatClientRequest.context().get(RequestBudget.KEY) instanceof RequestBudget budget)) {
+            return streamAdvisorChain.nextStream(chatClientRequest);
+        }
+        return Flux.defer(() -> {
+            budget.beforeLlmCall();
+            AtomicLong tokens = new AtomicLong();
+            return streamAdvisorChain.nextStream(chatClientRequest)
+                    .doOnNext(response -> totalTokens(response)
+                            .ifPresent(total -> tokens.accumulateAndGet(total, Math::max)))
+                    .doFinally(signal -> budget.recordTokens(tokens.get()));
+        });
+    }
+
+    private static Optional<Integer> totalTokens(ChatClientResponse response) {
+        return Optional.ofNullable(response.chatResponse())
+                .map(ChatResponse::getMetadata)
+                .map(ChatResponseMetadata::getUsage)
+                .map(Usage::getTotalTokens);
+    }
+
+    @Override
+    public String getName() {
+        return "BudgetAdvisor";
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+}
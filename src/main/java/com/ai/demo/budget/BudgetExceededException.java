@@ -0,0 +1,11 @@
+package com.ai.demo.budget;
+
+/**
+ * 请求预算耗尽后仍尝试调用大模型时抛出
+ */
+public class BudgetExceededException extends RuntimeException {
+
+    public BudgetExceededException(String reason) {
+        super("Request budget exhausted: " + reason);
+    }
+}
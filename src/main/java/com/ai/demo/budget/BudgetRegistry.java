@@ -0,0 +1,70 @@
+package com.ai.demo.budget;
+
+import com.alibaba.cloud.ai.graph.OverAllState;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 进行中请求的预算登记表
+ * <p>图状态只保存可序列化的预算 id（状态键 {@value #STATE_KEY}），节点与边通过 {@link #of} 取回同一个预算对象，
+ * 状态在节点之间被复制时计数也不会丢失。</p>
+ */
+@Component
+public class BudgetRegistry {
+
+    public static final String STATE_KEY = "budget_id";
+
+    private final Map<String, RequestBudget> budgets = new ConcurrentHashMap<>();
+
+    private final int maxIterations;
+
+    private final int maxLlmCalls;
+
+    private final long maxTokens;
+
+    private final Duration timeout;
+
+    /**
+     * @param maxIterations 最多生成并评分的轮数
+     * @param maxLlmCalls 最多大模型调用次数
+     * @param maxTokens 最多消耗的 token 数
+     * @param timeout 单次请求的最长耗时
+     */
+    public BudgetRegistry(@Value("${rag.budget.max-iterations:3}") int maxIterations,
+            @Value("${rag.budget.max-llm-calls:12}") int maxLlmCalls,
+            @Value("${rag.budget.max-tokens:40000}") long maxTokens,
+            @Value("${rag.budget.timeout:60s}") Duration timeout) {
+        Assert.isTrue(maxIterations > 0, "maxIterations must be positive");
+        Assert.isTrue(maxLlmCalls > 0, "maxLlmCalls must be positive");
+        Assert.isTrue(maxTokens > 0, "maxTokens must be positive");
+        this.maxIterations = maxIterations;
+        this.maxLlmCalls = maxLlmCalls;
+        this.maxTokens = maxTokens;
+        this.timeout = timeout;
+    }
+
+    /**
+     * 为一次图执行创建预算，执行结束后必须调用 {@link #remove}
+     */
+    public RequestBudget create() {
+        RequestBudget budget = new RequestBudget(maxIterations, maxLlmCalls, maxTokens, timeout);
+        budgets.put(budget.id(), budget);
+        return budget;
+    }
+
+    /**
+     * @return 状态对应的预算，没有预算（如直接执行图）时为 null
+     */
+    public RequestBudget of(OverAllState state) {
+        return state.value(STATE_KEY, String.class).map(budgets::get).orElse(null);
+    }
+
+    public void remove(RequestBudget budget) {
+        budgets.remove(budget.id());
+    }
+}
@@ -0,0 +1,203 @@
+package com.ai.demo.budget;
+
+import org.springframework.ai.chat.client.ChatClient;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * 单次图执行的预算：自我纠正循环的轮数、大模型调用次数、token 数与截止时间
+ * <p>图状态中只保存预算 id（见 {@link BudgetRegistry}），计数在节点、边与 {@link BudgetAdvisor} 之间共享。
+ * 预算耗尽后评分边路由到结束，并以目前最好的回答作为结果：优先取最近一次被判定符合事实的回答，否则取最近一次回答。</p>
+ */
+public class RequestBudget {
+
+    /**
+     * advisor 上下文中的参数名
+     */
+    public static final String KEY = "request_budget";
+
+    private final String id = UUID.randomUUID().toString();
+
+    private final int maxIterations;
+
+    private final int maxLlmCalls;
+
+    private final long maxTokens;
+
+    private final long startNanos = System.nanoTime();
+
+    private final long deadlineNanos;
+
+    private final AtomicInteger iterations = new AtomicInteger();
+
+    private final AtomicInteger llmCalls = new AtomicInteger();
+
+    private final AtomicLong tokens = new AtomicLong();
+
+    private volatile String exitReason;
+
+    private volatile String cancelReason;
+
+    private String bestAnswer;
+
+    private boolean bestGrounded;
+
+    public RequestBudget(int maxIterations, int maxLlmCalls, long maxTokens, Duration timeout) {
+        this.maxIterations = maxIterations;
+        this.maxLlmCalls = maxLlmCalls;
+        this.maxTokens = maxTokens;
+        this.deadlineNanos = startNanos + timeout.toNanos();
+    }
+
+    /**
+     * 为一次 ChatClient 调用附加预算参数，budget 为 null 时不做任何事
+     */
+    public static Consumer<ChatClient.AdvisorSpec> advise(RequestBudget budget) {
+        return advisors -> {
+            if (budget != null) {
+                advisors.param(KEY, budget);
+            }
+        };
+    }
+
+    public String id() {
+        return id;
+    }
+
+    /**
+     * @return 已完成的自我纠正轮数
+     */
+    public int iterations() {
+        return iterations.get();
+    }
+
+    /**
+     * @return 已发起的大模型调用次数
+     */
+    public int llmCalls() {
+        return llmCalls.get();
+    }
+
+    /**
+     * @return 已消耗的 token 数
+     */
+    public long tokens() {
+        return tokens.get();
+    }
+
+    /**
+     * @return 耗尽原因，未耗尽时为 null
+     */
+    public String exhaustedReason() {
+        if (cancelReason != null) {
+            return "cancelled: " + cancelReason;
+        }
+        if (iterations.get() >= maxIterations) {
+            return "max iterations " + maxIterations;
+        }
+        if (llmCalls.get() >= maxLlmCalls) {
+            return "max llm calls " + maxLlmCalls;
+        }
+        if (tokens.get() >= maxTokens) {
+            return "max tokens " + maxTokens;
+        }
+        if (System.nanoTime() - deadlineNanos >= 0) {
+            return "deadline " + Duration.ofNanos(deadlineNanos - startNanos).toMillis() + " ms";
+        }
+        return null;
+    }
+
+    public boolean isExhausted() {
+        return exhaustedReason() != null;
+    }
+
+    /**
+     * 取消请求（如流式请求的客户端已断开），之后视为预算耗尽：节点跳过执行，大模型调用被拒绝，评分边结束执行
+     * @param reason 取消原因
+     */
+    public void cancel(String reason) {
+        cancelReason = reason;
+    }
+
+    /**
+     * 调用大模型前登记一次调用
+     * @throws BudgetExceededException 预算已耗尽
+     */
+    public void beforeLlmCall() {
+        String reason = exhaustedReason();
+        if (reason != null) {
+            throw new BudgetExceededException(reason);
+        }
+        llmCalls.incrementAndGet();
+    }
+
+    public void recordTokens(long count) {
+        tokens.addAndGet(count);
+    }
+
+    /**
+     * 一轮生成与评分结束
+     * @return 预算是否已耗尽
+     */
+    public boolean completeIteration() {
+        iterations.incrementAndGet();
+        return isExhausted();
+    }
+
+    /**
+     * 记录评分过的回答，用于预算耗尽时返回
+     * @param grounded 是否被判定为符合事实
+     */
+    public synchronized void offer(String generation, boolean grounded) {
+        if (generation == null || generation.isBlank() || (bestGrounded && !grounded)) {
+            return;
+        }
+        bestAnswer = generation;
+        bestGrounded = grounded;
+    }
+
+    public synchronized String bestAnswer() {
+        return bestAnswer;
+    }
+
+    /**
+     * 因预算耗尽而结束图执行
+     * @return 耗尽原因
+     */
+    public String exit() {
+        String reason = exhaustedReason();
+        exitReason = reason != null ? reason : "exhausted";
+        return exitReason;
+    }
+
+    /**
+     * @return 因预算耗尽而结束时的原因，正常结束时为 null
+     */
+    public String exitReason() {
+        return exitReason;
+    }
+
+    /**
+     * @return 预算使用情况
+     */
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("iterations", iterations.get());
+        map.put("maxIterations", maxIterations);
+        map.put("llmCalls", llmCalls.get());
+        map.put("maxLlmCalls", maxLlmCalls);
+        map.put("tokens", tokens.get());
+        map.put("maxTokens", maxTokens);
+        map.put("elapsedMillis", (System.nanoTime() - startNanos) / 1_000_000);
+        if (exitReason != null) {
+            map.put("exhausted", exitReason);
+        }
+        return map;
+    }
+}
@@ -0,0 +1,166 @@
+package com.ai.demo.cache;
+
+import com.ai.demo.ingest.ContentHash;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.document.MetadataMode;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.ai.embedding.EmbeddingResponseMetadata;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 带两级缓存的 EmbeddingModel 装饰器：内存 LRU + 磁盘追加日志
+ * <p>缓存键为 模型名 + 文本 SHA-256，同一批请求中未命中的文本合并为一次模型调用；
+ * 重复的问题与重新入库的片段不再请求向量化接口。</p>
+ */
+@Slf4j
+public class CachingEmbeddingModel implements EmbeddingModel, AutoCloseable {
+
+    private final EmbeddingModel delegate;
+
+    private final String modelName;
+
+    private final Cache<String, float[]> memory;
+
+    private final EmbeddingDiskStore disk;
+
+    private final LongAdder memoryHits = new LongAdder();
+
+    private final LongAdder diskHits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param delegate 实际调用的向量化模型
+     * @param modelName 模型名，参与缓存键，切换模型后旧缓存自然失效
+     * @param maxEntries 内存层最大条目数
+     * @param diskPath 磁盘层文件，为 null 时只使用内存层
+     */
+    public CachingEmbeddingModel(EmbeddingModel delegate, String modelName, long maxEntries, Path diskPath) {
+        this.delegate = delegate;
+        this.modelName = modelName;
+        this.memory = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .build();
+        try {
+            this.disk = diskPath != null ? EmbeddingDiskStore.open(diskPath) : null;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open embedding cache " + diskPath, e);
+        }
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        List<String> texts = request.getInstructions();
+        float[][] vectors = new float[texts.size()][];
+        List<String> missKeys = new ArrayList<>();
+        // 同一请求中重复的文本只请求一次
+        Map<String, String> missTexts = new LinkedHashMap<>();
+        for (int i = 0; i < texts.size(); i++) {
+            String key = key(texts.get(i));
+            vectors[i] = lookup(key);
+            if (vectors[i] == null) {
+                missKeys.add(key);
+                missTexts.putIfAbsent(key, texts.get(i));
+            } else {
+                missKeys.add(null);
+            }
+        }
+
+        EmbeddingResponseMetadata metadata = new EmbeddingResponseMetadata();
+        if (!missTexts.isEmpty()) {
+            misses.add(missTexts.size());
+            EmbeddingResponse response = delegate.call(new EmbeddingRequest(List.copyOf(missTexts.values()),
+                    request.getOptions()));
+            metadata = response.getMetadata();
+            Map<String, float[]> computed = new LinkedHashMap<>();
+            List<String> keys = List.copyOf(missTexts.keySet());
+            for (Embedding embedding : response.getResults()) {
+                String key = keys.get(embedding.getIndex());
+                computed.put(key, embedding.getOutput());
+                memory.put(key, embedding.getOutput());
+                if (disk != null) {
+                    disk.put(key, embedding.getOutput());
+                }
+            }
+            for (int i = 0; i < vectors.length; i++) {
+                if (vectors[i] == null) {
+                    vectors[i] = computed.get(missKeys.get(i));
+                }
+            }
+        }
+
+        List<Embedding> embeddings = new ArrayList<>(vectors.length);
+        for (int i = 0; i < vectors.length; i++) {
+            embeddings.add(new Embedding(vectors[i], i));
+        }
+        return new EmbeddingResponse(embeddings, metadata);
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        return embed(document.getFormattedContent(MetadataMode.EMBED));
+    }
+
+    @Override
+    public int dimensions() {
+        return delegate.dimensions();
+    }
+
+    /**
+     * @return 命中与未命中统计
+     */
+    public Map<String, Object> stats() {
+        long hits = memoryHits.sum() + diskHits.sum();
+        long total = hits + misses.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("memoryHits", memoryHits.sum());
+        stats.put("diskHits", diskHits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("hitRate", total == 0 ? 0.0 : (double) hits / total);
+        stats.put("memoryEntries", memory.estimatedSize());
+        stats.put("diskEntries", disk != null ? disk.size() : 0);
+        return stats;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (disk != null) {
+            disk.close();
+        }
+    }
+
+    private float[] lookup(String key) {
+        float[] vector = memory.getIfPresent(key);
+        if (vector != null) {
+            memoryHits.increment();
+            return vector;
+        }
+        if (disk != null) {
+            vector = disk.get(key);
+            if (vector != null) {
+                diskHits.increment();
+                memory.put(key, vector);
+                return vector;
+            }
+        }
+        return null;
+    }
+
+    private String key(String text) {
+        return modelName + ":" + ContentHash.of(text);
+    }
+}
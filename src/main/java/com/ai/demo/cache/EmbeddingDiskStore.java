@@ -0,0 +1,163 @@
+package com.ai.demo.cache;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 向量缓存的磁盘层：只追加写入的日志文件
+ * <pre>
+ * | 魔数 4 字节 | 版本 4 字节 | 记录 ... |
+ * 记录：| key 字节数 int | key（UTF-8） | 维度 int | float32 向量 |
+ * </pre>
+ * <p>打开时顺序扫描一遍建立 key 到向量偏移的索引，末尾不完整的记录（写入中途进程退出）会被截断；
+ * 读取使用按位置读，不与追加写互斥。</p>
+ */
+@Slf4j
+final class EmbeddingDiskStore implements AutoCloseable {
+
+    /**
+     * "EMBC"
+     */
+    private static final int MAGIC = 0x454d4243;
+
+    private static final int VERSION = 1;
+
+    private static final int HEADER_BYTES = 8;
+
+    private final Path path;
+
+    private final FileChannel channel;
+
+    /**
+     * key → 向量维度字段所在偏移
+     */
+    private final Map<String, Long> offsets = new ConcurrentHashMap<>();
+
+    private long end;
+
+    private EmbeddingDiskStore(Path path, FileChannel channel) {
+        this.path = path;
+        this.channel = channel;
+    }
+
+    static EmbeddingDiskStore open(Path path) throws IOException {
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        EmbeddingDiskStore store = new EmbeddingDiskStore(path, channel);
+        try {
+            store.scan();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        return store;
+    }
+
+    private void scan() throws IOException {
+        long size = channel.size();
+        if (size < HEADER_BYTES) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).flip();
+            channel.truncate(0);
+            channel.write(header, 0);
+            end = HEADER_BYTES;
+            return;
+        }
+        ByteBuffer header = readFully(0, HEADER_BYTES);
+        if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+            throw new IOException("Not an embedding cache file: " + path);
+        }
+        long position = HEADER_BYTES;
+        while (position + Integer.BYTES <= size) {
+            int keyLength = readFully(position, Integer.BYTES).getInt();
+            long dimensionsOffset = position + Integer.BYTES + keyLength;
+            if (keyLength <= 0 || dimensionsOffset + Integer.BYTES > size) {
+                break;
+            }
+            int dimensions = readFully(dimensionsOffset, Integer.BYTES).getInt();
+            long next = dimensionsOffset + Integer.BYTES + (long) dimensions * Float.BYTES;
+            if (dimensions <= 0 || next > size) {
+                break;
+            }
+            byte[] key = new byte[keyLength];
+            readFully(position + Integer.BYTES, keyLength).get(key);
+            offsets.put(new String(key, StandardCharsets.UTF_8), dimensionsOffset);
+            position = next;
+        }
+        if (position < size) {
+            log.warn("Truncating {} bytes of incomplete records in {}", size - position, path);
+            channel.truncate(position);
+        }
+        end = position;
+        log.info("Opened embedding cache {} with {} entries", path, offsets.size());
+    }
+
+    int size() {
+        return offsets.size();
+    }
+
+    float[] get(String key) {
+        Long offset = offsets.get(key);
+        if (offset == null) {
+            return null;
+        }
+        try {
+            int dimensions = readFully(offset, Integer.BYTES).getInt();
+            float[] vector = new float[dimensions];
+            readFully(offset + Integer.BYTES, dimensions * Float.BYTES).asFloatBuffer().get(vector);
+            return vector;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read embedding cache " + path, e);
+        }
+    }
+
+    synchronized void put(String key, float[] vector) {
+        if (offsets.containsKey(key)) {
+            return;
+        }
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer record = ByteBuffer.allocate(Integer.BYTES * 2 + keyBytes.length + vector.length * Float.BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        record.putInt(keyBytes.length).put(keyBytes).putInt(vector.length);
+        record.asFloatBuffer().put(vector);
+        record.clear();
+        try {
+            long position = end;
+            while (record.hasRemaining()) {
+                position += channel.write(record, position);
+            }
+            offsets.put(key, end + Integer.BYTES + keyBytes.length);
+            end = position;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write embedding cache " + path, e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.force(false);
+        channel.close();
+    }
+
+    private ByteBuffer readFully(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of embedding cache " + path);
+            }
+        }
+        return buffer.flip();
+    }
+}
@@ -0,0 +1,207 @@
+package com.ai.demo.cache;
+
+import com.ai.demo.vectorstore.LocalVectorStore;
+import com.ai.demo.vectorstore.SimilarityKernel;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 语义回答缓存：位于图执行之前，相似问题直接返回已经通过评估的回答
+ * <p>问题文本完全相同时不需要向量化；否则把问题向量化（经 {@link CachingEmbeddingModel}）后与已缓存问题逐一计算余弦相似度，
+ * 最高分不低于阈值即命中。条目按写入时间过期、按条目数淘汰；向量库内容变化（如重新入库）后全部失效，
+ * 避免返回基于旧文档生成的回答。</p>
+ */
+@Component
+@Slf4j
+public class SemanticAnswerCache {
+
+    private final EmbeddingModel embeddingModel;
+
+    private final LocalVectorStore vectorStore;
+
+    /**
+     * 只缓存回答本身；会话 id、路由、预取文档等请求内部的状态不应返回给其他会话
+     */
+    private static final List<String> CACHED_KEYS = List.of("question", "generation", "documents");
+
+    private final SimilarityKernel kernel = SimilarityKernel.auto();
+
+    private final boolean enabled;
+
+    private final double similarityThreshold;
+
+    private final Cache<String, Entry> entries;
+
+    private final AtomicLong storeVersion = new AtomicLong();
+
+    private final LongAdder exactHits = new LongAdder();
+
+    private final LongAdder semanticHits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder invalidations = new LongAdder();
+
+    /**
+     * @param similarityThreshold 命中所需的最低余弦相似度
+     * @param ttl 条目写入后的有效期
+     * @param maxEntries 最大条目数，超出后按 W-TinyLFU 淘汰
+     */
+    public SemanticAnswerCache(EmbeddingModel embeddingModel, LocalVectorStore vectorStore,
+            @Value("${rag.answer-cache.enabled:true}") boolean enabled,
+            @Value("${rag.answer-cache.similarity-threshold:0.95}") double similarityThreshold,
+            @Value("${rag.answer-cache.ttl:1h}") Duration ttl,
+            @Value("${rag.answer-cache.max-entries:1000}") long maxEntries) {
+        Assert.isTrue(similarityThreshold > 0 && similarityThreshold <= 1, "similarityThreshold must be in (0, 1]");
+        this.embeddingModel = embeddingModel;
+        this.vectorStore = vectorStore;
+        this.enabled = enabled;
+        this.similarityThreshold = similarityThreshold;
+        this.entries = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumSize(maxEntries)
+                .build();
+        this.storeVersion.set(vectorStore.version());
+    }
+
+    /**
+     * 查找相似问题的回答
+     * @param question 用户问题
+     * @return 命中时返回缓存的问题、回答与文档，附带 cached 与 cacheSimilarity 字段
+     */
+    public Optional<Map<String, Object>> lookup(String question) {
+        if (!enabled || !StringUtils.hasText(question)) {
+            return Optional.empty();
+        }
+        invalidateIfStoreChanged();
+        String key = keyOf(question);
+        Entry exact = entries.getIfPresent(key);
+        if (exact != null) {
+            exactHits.increment();
+            return Optional.of(exact.answer(1.0));
+        }
+        if (entries.estimatedSize() == 0) {
+            misses.increment();
+            return Optional.empty();
+        }
+
+        // 向量化结果可能是词嵌入缓存中的同一数组，归一化前先复制
+        float[] embedding = kernel.normalize(embeddingModel.embed(key).clone());
+        Entry best = null;
+        float bestScore = -1;
+        for (Entry entry : entries.asMap().values()) {
+            if (entry.embedding().length != embedding.length) {
+                continue;
+            }
+            float score = kernel.dot(embedding, entry.embedding());
+            if (score > bestScore) {
+                bestScore = score;
+                best = entry;
+            }
+        }
+        if (best == null || bestScore < similarityThreshold) {
+            misses.increment();
+            return Optional.empty();
+        }
+        semanticHits.increment();
+        log.info("Answer cache hit: [{}] ~ [{}], similarity {}", question, best.question(), bestScore);
+        return Optional.of(best.answer(bestScore));
+    }
+
+    /**
+     * 缓存图执行结束时的问题、回答与文档。图正常结束时回答已被评估为有用（useful）；
+     * 因预算耗尽而提前结束的回答（带有 budget_exhausted）未必可靠，不缓存。
+     * @param question 用户问题
+     * @param state 图执行结束时的状态数据
+     * @param storeVersion 图开始执行时的向量库版本号，执行期间文档有增删时回答基于旧文档，不缓存
+     */
+    public void put(String question, Map<String, Object> state, long storeVersion) {
+        if (!enabled || !StringUtils.hasText(question) || !(state.get("generation") instanceof String generation)
+                || !StringUtils.hasText(generation) || state.containsKey("budget_exhausted")) {
+            return;
+        }
+        invalidateIfStoreChanged();
+        if (this.storeVersion.get() != storeVersion) {
+            log.info("Vector store changed while answering [{}] (version {} -> {}), answer not cached", question,
+                    storeVersion, this.storeVersion.get());
+            return;
+        }
+        String key = keyOf(question);
+        float[] embedding = kernel.normalize(embeddingModel.embed(key).clone());
+        entries.put(key, new Entry(key, embedding, answerOf(state)));
+    }
+
+    public void invalidateAll() {
+        entries.invalidateAll();
+        invalidations.increment();
+    }
+
+    /**
+     * @return 命中与未命中统计
+     */
+    public Map<String, Object> stats() {
+        long hits = exactHits.sum() + semanticHits.sum();
+        long total = hits + misses.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("exactHits", exactHits.sum());
+        stats.put("semanticHits", semanticHits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("hitRate", total == 0 ? 0.0 : (double) hits / total);
+        stats.put("entries", entries.estimatedSize());
+        stats.put("invalidations", invalidations.sum());
+        return stats;
+    }
+
+    /**
+     * 向量库版本号变化说明文档有增删，之前的回答可能已经过时
+     */
+    private void invalidateIfStoreChanged() {
+        long current = vectorStore.version();
+        long previous = storeVersion.getAndSet(current);
+        if (previous != current) {
+            log.info("Vector store changed (version {} -> {}), invalidating {} cached answers", previous, current,
+                    entries.estimatedSize());
+            invalidateAll();
+        }
+    }
+
+    private static String keyOf(String question) {
+        return question.strip().replaceAll("\\s+", " ");
+    }
+
+    private static Map<String, Object> answerOf(Map<String, Object> state) {
+        Map<String, Object> answer = new LinkedHashMap<>();
+        for (String key : CACHED_KEYS) {
+            if (state.get(key) != null) {
+                answer.put(key, state.get(key));
+            }
+        }
+        return Collections.unmodifiableMap(answer);
+    }
+
+    private record Entry(String question, float[] embedding, Map<String, Object> cached) {
+
+        Map<String, Object> answer(double similarity) {
+            Map<String, Object> answer = new LinkedHashMap<>(cached);
+            answer.put("cached", true);
+            answer.put("cacheSimilarity", similarity);
+            return answer;
+        }
+    }
+}
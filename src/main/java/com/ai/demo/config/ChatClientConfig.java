@@ -1,20 +1,31 @@
 package com.ai.demo.config;
 
+import com.ai.demo.budget.BudgetAdvisor;
+import com.ai.demo.memory.BoundedChatMemoryRepository;
+import com.ai.demo.memory.ConversationScopeAdvisor;
+import com.ai.demo.memory.Conversations;
+import com.ai.demo.memory.StripedChatMemory;
+import com.ai.demo.metrics.ChatClientMetricsAdvisor;
 import com.ai.demo.tool.WebSearchTool;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.AllArgsConstructor;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.client.advisor.MessageChatMemoryAdvisor;
 import org.springframework.ai.chat.memory.ChatMemory;
 import org.springframework.ai.chat.memory.ChatMemoryRepository;
-import org.springframework.ai.chat.memory.InMemoryChatMemoryRepository;
 import org.springframework.ai.chat.memory.MessageWindowChatMemory;
 import org.springframework.ai.chat.model.ChatModel;
 import org.springframework.ai.chat.prompt.ChatOptions;
 import org.springframework.ai.chat.prompt.Prompt;
 import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
 
 @Configuration
 @AllArgsConstructor
@@ -22,26 +33,63 @@ public class ChatClientConfig {
 
     private final WebSearchTool webSearchTool;
 
+    private final MeterRegistry meterRegistry;
+
     /**
-     * 记忆类型 固定容量的消息窗口
-     * <p>此为 Spring AI 自动配置 ChatMemory Bean 时采用的默认消息类型（不配置也能使用）</p>
+     * 记忆类型 固定容量的消息窗口，按会话 id 分段加锁
+     * <p>每个会话各有一个窗口，同一会话的并发请求串行写入，不同会话之间不互相等待</p>
+     * @param chatMemoryRepository 记忆存储
+     * @param maxMessages 每个会话保留的消息数
+     * @param stripes 锁的数量
      * @return ChatMemory 实例
      */
     @Bean
-    public ChatMemory chatMemory() {
-        return MessageWindowChatMemory.builder()
-                .maxMessages(10)
-                .build();
+    public ChatMemory chatMemory(ChatMemoryRepository chatMemoryRepository,
+            @Value("${rag.memory.max-messages:10}") int maxMessages,
+            @Value("${rag.memory.stripes:64}") int stripes) {
+        return new StripedChatMemory(MessageWindowChatMemory.builder()
+                .chatMemoryRepository(chatMemoryRepository)
+                .maxMessages(maxMessages)
+                .build(), stripes);
+    }
+
+    /**
+     * 记忆存储 有界的内存 ChatMemoryRepository
+     * <p>InMemoryChatMemoryRepository 从不遗忘会话，按用户区分会话后堆内存会无限增长；
+     * 这里限制会话数与估算字节数，闲置会话过期，可选把被淘汰的会话溢出到磁盘、再次出现时读回</p>
+     * @param maxSessions 内存中的最大会话数
+     * @param maxBytes 内存中会话的估算总大小
+     * @param idleTtl 会话闲置多久后过期
+     * @param spillDirectory 溢出目录，为空时被淘汰的会话直接丢弃
+     * @param spillTtl 溢出到磁盘的会话保留多久
+     * @return BoundedChatMemoryRepository 实例
+     */
+    @Bean
+    public BoundedChatMemoryRepository chatMemoryRepository(
+            @Value("${rag.memory.max-sessions:10000}") int maxSessions,
+            @Value("${rag.memory.max-bytes:64MB}") DataSize maxBytes,
+            @Value("${rag.memory.idle-ttl:30m}") Duration idleTtl,
+            @Value("${rag.memory.spill-directory:}") String spillDirectory,
+            @Value("${rag.memory.spill-ttl:7d}") Duration spillTtl) {
+        return new BoundedChatMemoryRepository(maxSessions, maxBytes.toBytes(), idleTtl,
+                spillDirectory.isBlank() ? null : Path.of(spillDirectory), spillTtl);
     }
 
     /**
-     * 记忆存储 使用内存存储的 ChatMemoryRepository
-     * <p>默认情况下，若未配置其他 Repository，Spring AI 将自动配置 InMemoryChatMemoryRepository 类型的 ChatMemoryRepository Bean供直接使用。（不配置也能使用）</p>
-     * @return ChatMemoryRepository 实例
+     * 按请求预算统计大模型调用次数与 token 数，所有 ChatClient 共用
+     * <p>只对附加了 {@link com.ai.demo.budget.RequestBudget} 参数的调用生效</p>
+     * @return BudgetAdvisor 实例
      */
     @Bean
-    public ChatMemoryRepository chatMemoryRepository() {
-        return new InMemoryChatMemoryRepository();
+    public BudgetAdvisor budgetAdvisor() {
+        return new BudgetAdvisor();
+    }
+
+    /**
+     * 按 ChatClient 记录调用耗时与 token 数，client 标签为 bean 名
+     */
+    private ChatClientMetricsAdvisor metrics(String client) {
+        return new ChatClientMetricsAdvisor(client, meterRegistry);
     }
 
     /**
@@ -52,7 +100,8 @@ public class ChatClientConfig {
     @Bean
     @Primary
     public ChatClient openAiChatClient(ChatModel chatModel) {
-        return ChatClient.builder(chatModel).defaultOptions(ChatOptions.builder().temperature(0.8).build()).build();
+        return ChatClient.builder(chatModel).defaultOptions(ChatOptions.builder().temperature(0.8).build())
+                .defaultAdvisors(budgetAdvisor(), metrics("openAiChatClient")).build();
     }
 
     /**
@@ -82,7 +131,9 @@ public class ChatClientConfig {
         return ChatClient.builder(chatModel).defaultSystem(systemPrompt)
                 .defaultUser(u -> u.text("用户问题: {question}"))
                 .defaultOptions(ChatOptions.builder().temperature(0.0).build())
-                .defaultAdvisors(MessageChatMemoryAdvisor.builder(chatMemory).conversationId("QuestionRouter").build())
+                .defaultAdvisors(budgetAdvisor(), metrics("QuestionRouterChatClient"),
+                        new ConversationScopeAdvisor("QuestionRouter"),
+                        MessageChatMemoryAdvisor.builder(chatMemory).build())
                 .build();
     }
 
@@ -106,7 +157,9 @@ public class ChatClientConfig {
                 .defaultUser(u -> u.text("用户问题：{question}"))
                 // 此处要用 ToolCallingChatOptions 而不是 ChatOptions
                 .defaultOptions(ToolCallingChatOptions.builder().temperature(0.8).build())
-                .defaultAdvisors(MessageChatMemoryAdvisor.builder(chatMemory).conversationId("WebSearch").build())
+                .defaultAdvisors(budgetAdvisor(), metrics("WebSearchChatClient"),
+                        new ConversationScopeAdvisor("WebSearch"),
+                        MessageChatMemoryAdvisor.builder(chatMemory).build())
                 .defaultTools(webSearchTool)
                 .build();
     }
@@ -145,7 +198,9 @@ public class ChatClientConfig {
                 .defaultSystem(systemPrompt)
                 .defaultUser(userPrompt)
                 .defaultOptions(ChatOptions.builder().temperature(0.7).build())
-                .defaultAdvisors(MessageChatMemoryAdvisor.builder(chatMemory).conversationId("AdaptiveRag").build())
+                .defaultAdvisors(budgetAdvisor(), metrics("AdaptiveRagChatClient"),
+                        new ConversationScopeAdvisor(Conversations.GENERATION_SCOPE),
+                        MessageChatMemoryAdvisor.builder(chatMemory).build())
                 .build();
     }
 
@@ -175,7 +230,9 @@ public class ChatClientConfig {
                 .defaultSystem(systemPrompt)
                 .defaultUser(userPrompt)
                 .defaultOptions(ChatOptions.builder().temperature(0.0).build())
-                .defaultAdvisors(MessageChatMemoryAdvisor.builder(chatMemory).conversationId("Hallucination").build())
+                .defaultAdvisors(budgetAdvisor(), metrics("HallucinationChatClient"),
+                        new ConversationScopeAdvisor("Hallucination"),
+                        MessageChatMemoryAdvisor.builder(chatMemory).build())
                 .build();
     }
 
@@ -205,7 +262,44 @@ public class ChatClientConfig {
                 .defaultSystem(systemPrompt)
                 .defaultUser(userPrompt)
                 .defaultOptions(ChatOptions.builder().temperature(0.8).build())
-                .defaultAdvisors(MessageChatMemoryAdvisor.builder(chatMemory).conversationId("AnswerGrader").build())
+                .defaultAdvisors(budgetAdvisor(), metrics("AnswerGraderChatClient"),
+                        new ConversationScopeAdvisor("AnswerGrader"),
+                        MessageChatMemoryAdvisor.builder(chatMemory).build())
+                .build();
+    }
+
+    /**
+     * 一次调用同时评估回答是否基于检索到的事实、是否回应了问题
+     * <p>代替依次调用 HallucinationChatClient 与 AnswerGraderChatClient，检索到的文档只发送一次</p>
+     * @param chatModel 模型配置
+     * @return ChatClient 实例
+     */
+    @Bean
+    public ChatClient CombinedGraderChatClient(ChatModel chatModel) {
+
+        String systemPrompt = """
+                你是一个评分员，需要对LLM生成的回答给出两个二分类分数，取值均为 'yes' 或 'no'：
+                
+                1. groundedScore：回答是否基于/支持一组检索到的事实，'yes'表示答案是基于/支持这组事实的
+                2. answerScore：回答是否回应/解决了用户问题，'yes'表示答案回应/解决了问题
+                """;
+
+        String userPrompt = """
+                一组事实:
+                {documents}
+                
+                用户问题:
+                {question}
+                
+                LLM生成的回答:
+                {generation}
+                """;
+
+        return ChatClient.builder(chatModel)
+                .defaultSystem(systemPrompt)
+                .defaultUser(userPrompt)
+                .defaultOptions(ChatOptions.builder().temperature(0.0).build())
+                .defaultAdvisors(budgetAdvisor(), metrics("CombinedGraderChatClient"))
                 .build();
     }
 
@@ -238,7 +332,31 @@ public class ChatClientConfig {
                 .defaultSystem(systemPrompt)
                 .defaultUser(userPrompt)
                 .defaultOptions(ChatOptions.builder().temperature(0.0).build())
-                .defaultAdvisors(MessageChatMemoryAdvisor.builder(chatMemory).conversationId("QuestionRewriter").build())
+                .defaultAdvisors(budgetAdvisor(), metrics("QuestionRewriterChatClient"),
+                        new ConversationScopeAdvisor("QuestionRewriter"),
+                        MessageChatMemoryAdvisor.builder(chatMemory).build())
+                .build();
+    }
+
+    /**
+     * 查询转换 ChatClient
+     * 需要同时做压缩、翻译、重写中的多项时，用一次调用完成，代替依次调用多个查询转换器；对话历史由调用方放入提示词
+     * @param chatModel 模型配置
+     * @return ChatClient 实例
+     */
+    @Bean
+    public ChatClient QueryTransformChatClient(ChatModel chatModel) {
+
+        String systemPrompt = """
+                你是一个检索查询优化专家，负责把用户的问题转换为适合在知识库中检索的查询语句。
+                
+                只输出转换后的查询语句，不要回答问题，也不要添加解释。
+                """;
+
+        return ChatClient.builder(chatModel)
+                .defaultSystem(systemPrompt)
+                .defaultOptions(ChatOptions.builder().temperature(0.0).build())
+                .defaultAdvisors(budgetAdvisor(), metrics("QueryTransformChatClient"))
                 .build();
     }
 }
@@ -0,0 +1,40 @@
+package com.ai.demo.config;
+
+import com.ai.demo.execution.Bulkhead;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+@Configuration
+public class ExecutionConfig {
+
+    /**
+     * 图节点与推测执行使用的命名执行器，线程名以 graph- 开头
+     * <p>开启虚拟线程时每个任务一个虚拟线程，并发上限由 {@link Bulkhead} 控制；否则使用按需创建的平台线程</p>
+     * @param virtualThreads 是否使用虚拟线程，与 Tomcat 共用 spring.threads.virtual.enabled
+     * @return ExecutorService 实例
+     */
+    @Bean(destroyMethod = "close")
+    public ExecutorService graphExecutor(@Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        if (virtualThreads) {
+            return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("graph-", 0).factory());
+        }
+        return Executors.newCachedThreadPool(Thread.ofPlatform().name("graph-", 0).daemon().factory());
+    }
+
+    /**
+     * 限制同时进行的网络搜索请求数
+     * @param permits 最大并发数
+     * @param acquireTimeout 等待许可的最长时间
+     * @return Bulkhead 实例
+     */
+    @Bean
+    public Bulkhead webSearchBulkhead(@Value("${rag.execution.web-search-permits:64}") int permits,
+            @Value("${rag.execution.acquire-timeout:30s}") Duration acquireTimeout) {
+        return new Bulkhead("web-search", permits, acquireTimeout);
+    }
+}
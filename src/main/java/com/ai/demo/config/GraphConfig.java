@@ -1,28 +1,46 @@
 package com.ai.demo.config;
 
+import com.ai.demo.budget.BudgetRegistry;
+import com.ai.demo.context.ContextPacker;
 import com.ai.demo.edge.GradeGenerationEdge;
 import com.ai.demo.edge.RouteQuestionEdge;
+import com.ai.demo.execution.GraphNodeExecutor;
+import com.ai.demo.memory.Conversations;
+import com.ai.demo.metrics.GraphMetrics;
 import com.ai.demo.node.GenerationNode;
 import com.ai.demo.node.RetrieveNode;
+import com.ai.demo.node.RouteQuestionNode;
 import com.ai.demo.node.TransformQueryNode;
 import com.ai.demo.node.WebSearchNode;
+import com.ai.demo.retrieval.AdaptiveQueryTransformer;
+import com.ai.demo.retrieval.LocalReranker;
+import com.ai.demo.retrieval.PrefetchedDocumentRetriever;
+import com.ai.demo.stream.GraphEventRegistry;
+import com.ai.demo.stream.NodeStartEventAction;
+import com.ai.demo.tool.WebSearchTool;
 import com.alibaba.cloud.ai.graph.*;
 import com.alibaba.cloud.ai.graph.action.AsyncEdgeAction;
 import com.alibaba.cloud.ai.graph.action.AsyncNodeAction;
+import com.alibaba.cloud.ai.graph.action.EdgeAction;
+import com.alibaba.cloud.ai.graph.action.NodeAction;
 import com.alibaba.cloud.ai.graph.exception.GraphStateException;
 import com.alibaba.cloud.ai.graph.state.strategy.ReplaceStrategy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.client.advisor.MessageChatMemoryAdvisor;
+import org.springframework.ai.chat.memory.ChatMemory;
 import org.springframework.ai.rag.advisor.RetrievalAugmentationAdvisor;
-import org.springframework.ai.rag.preretrieval.query.transformation.CompressionQueryTransformer;
-import org.springframework.ai.rag.preretrieval.query.transformation.RewriteQueryTransformer;
-import org.springframework.ai.rag.preretrieval.query.transformation.TranslationQueryTransformer;
+import org.springframework.ai.rag.generation.augmentation.ContextualQueryAugmenter;
+import org.springframework.ai.rag.postretrieval.document.DocumentPostProcessor;
 import org.springframework.ai.rag.retrieval.search.DocumentRetriever;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 
 @Configuration
 @Slf4j
@@ -42,11 +60,27 @@ public class GraphConfig {
 
     private final DocumentRetriever documentRetriever;
 
-    private final CompressionQueryTransformer compressionQueryTransformer;
+    private final DocumentRetriever rerankDocumentRetriever;
 
-    private final RewriteQueryTransformer rewriteQueryTransformer;
+    private final AdaptiveQueryTransformer adaptiveQueryTransformer;
 
-    private final TranslationQueryTransformer translationQueryTransformer;
+    private final WebSearchTool webSearchTool;
+
+    private final BudgetRegistry budgetRegistry;
+
+    private final GraphEventRegistry graphEventRegistry;
+
+    private final GraphNodeExecutor nodeExecutor;
+
+    private final ExecutorService graphExecutor;
+
+    private final ChatMemory chatMemory;
+
+    private final ContextPacker contextPacker;
+
+    private final LocalReranker localReranker;
+
+    private final GraphMetrics graphMetrics;
 
     public GraphConfig(RouteQuestionEdge routeQuestionEdge, GradeGenerationEdge gradeGenerationEdge,
             ChatClient commonChatClient,
@@ -54,9 +88,17 @@ public class GraphConfig {
             @Qualifier("AdaptiveRagChatClient") ChatClient ragChatClient,
             @Qualifier("QuestionRewriterChatClient") ChatClient questionRewriterChatClient,
             DocumentRetriever documentRetriever,
-            CompressionQueryTransformer compressionQueryTransformer,
-            RewriteQueryTransformer rewriteQueryTransformer,
-            TranslationQueryTransformer translationQueryTransformer) {
+            @Qualifier("rerankDocumentRetriever") DocumentRetriever rerankDocumentRetriever,
+            AdaptiveQueryTransformer adaptiveQueryTransformer,
+            WebSearchTool webSearchTool,
+            BudgetRegistry budgetRegistry,
+            GraphEventRegistry graphEventRegistry,
+            GraphNodeExecutor nodeExecutor,
+            @Qualifier("graphExecutor") ExecutorService graphExecutor,
+            ChatMemory chatMemory,
+            ContextPacker contextPacker,
+            LocalReranker localReranker,
+            GraphMetrics graphMetrics) {
         this.routeQuestionEdge = routeQuestionEdge;
         this.gradeGenerationEdge = gradeGenerationEdge;
         this.commonChatClient = commonChatClient;
@@ -64,55 +106,117 @@ public class GraphConfig {
         this.ragChatClient = ragChatClient;
         this.questionRewriterChatClient = questionRewriterChatClient;
         this.documentRetriever = documentRetriever;
-        this.compressionQueryTransformer = compressionQueryTransformer;
-        this.rewriteQueryTransformer = rewriteQueryTransformer;
-        this.translationQueryTransformer = translationQueryTransformer;
+        this.rerankDocumentRetriever = rerankDocumentRetriever;
+        this.adaptiveQueryTransformer = adaptiveQueryTransformer;
+        this.webSearchTool = webSearchTool;
+        this.budgetRegistry = budgetRegistry;
+        this.graphEventRegistry = graphEventRegistry;
+        this.nodeExecutor = nodeExecutor;
+        this.graphExecutor = graphExecutor;
+        this.chatMemory = chatMemory;
+        this.contextPacker = contextPacker;
+        this.localReranker = localReranker;
+        this.graphMetrics = graphMetrics;
     }
 
+    /**
+     * @param speculativeMode 推测执行模式：off（先路由再检索）/ retrieval（路由的同时检索向量库）/
+     * all（同时检索向量库与网络搜索）
+     * @param webSearchMode 网络搜索模式：direct（直接调用搜索工具，需要拆分问题时才调用大模型）/ llm（每次由大模型调用搜索工具）
+     * @param rerank 是否在检索后本地重排序
+     */
     @Bean
-    public StateGraph graph(ChatClient.Builder chatClientBuilder) throws GraphStateException {
+    public StateGraph graph(ChatClient.Builder chatClientBuilder,
+            @Value("${rag.speculative.mode:retrieval}") String speculativeMode,
+            @Value("${rag.web-search.mode:direct}") String webSearchMode,
+            @Value("${rag.rerank.enabled:true}") boolean rerank) throws GraphStateException {
         OverAllStateFactory stateFactory = () -> {
             OverAllState state = new OverAllState();
             state.registerKeyAndStrategy("question", new ReplaceStrategy());
             state.registerKeyAndStrategy("generation", new ReplaceStrategy());
             state.registerKeyAndStrategy("documents", new ReplaceStrategy());
+            state.registerKeyAndStrategy("route", new ReplaceStrategy());
+            state.registerKeyAndStrategy("prefetched_documents", new ReplaceStrategy());
+            state.registerKeyAndStrategy(BudgetRegistry.STATE_KEY, new ReplaceStrategy());
+            state.registerKeyAndStrategy(GraphEventRegistry.STATE_KEY, new ReplaceStrategy());
+            state.registerKeyAndStrategy(Conversations.STATE_KEY, new ReplaceStrategy());
+            state.registerKeyAndStrategy(ContextPacker.STATE_KEY, new ReplaceStrategy());
+            state.registerKeyAndStrategy(ContextPacker.FINGERPRINT_STATE_KEY, new ReplaceStrategy());
             return state;
         };
 
         StateGraph stateGraph = new StateGraph("Spring AI Alibaba Graph Demo", stateFactory);
 
-        // 添加节点
-        stateGraph.addNode("prebuilt_rag_generation", AsyncNodeAction.node_async(RetrieveNode.builder()
+        // 多取的候选在本地重排序后保留 keepK 个，再按 token 预算打包
+        List<DocumentPostProcessor> postProcessors = rerank ? List.of(localReranker, contextPacker)
+                : List.of(contextPacker);
+
+        // 添加节点，流式请求在节点开始时推送事件，生成节点逐段推送 token；开启虚拟线程时节点在 graphExecutor 上执行
+        stateGraph.addNode("prebuilt_rag_generation", async("prebuilt_rag_generation",
+                RetrieveNode.builder()
                         .chatClient(commonChatClient)
                         .documentRetriever(documentRetriever)
                         .retrievalAugmentationAdvisor(RetrievalAugmentationAdvisor.builder()
-                                .documentRetriever(documentRetriever)
-                                .queryTransformers(compressionQueryTransformer, translationQueryTransformer, rewriteQueryTransformer)
+                                // 推测执行时直接使用路由阶段预取的文档，否则多取候选交给重排序
+                                .documentRetriever(new PrefetchedDocumentRetriever(rerankDocumentRetriever))
+                                // 按需压缩、翻译、重写，多项合并为一次调用
+                                .queryTransformers(adaptiveQueryTransformer)
+                                .documentPostProcessors(postProcessors)
+                                .queryAugmenter(ContextualQueryAugmenter.builder()
+                                        .documentFormatter(ContextPacker::join)
+                                        .build())
                                 .build())
+                        .chatMemoryAdvisor(MessageChatMemoryAdvisor.builder(chatMemory).build())
+                        .budgetRegistry(budgetRegistry)
+                        .graphEventRegistry(graphEventRegistry)
                         .build()));
-        stateGraph.addNode("web_search",
-                AsyncNodeAction.node_async(WebSearchNode.builder().chatClient(webSearchClient).build()));
-        stateGraph.addNode("self_rag_generation",
-                AsyncNodeAction.node_async(GenerationNode.builder().chatClient(ragChatClient).build()));
-        stateGraph.addNode("transform_query",
-                AsyncNodeAction.node_async(TransformQueryNode.builder().chatClient(questionRewriterChatClient).build()));
+        stateGraph.addNode("web_search", async("web_search",
+                WebSearchNode.builder().chatClient(webSearchClient).webSearchTool(webSearchTool)
+                        .budgetRegistry(budgetRegistry).mode(webSearchMode).build()));
+        stateGraph.addNode("self_rag_generation", async("self_rag_generation",
+                GenerationNode.builder().chatClient(ragChatClient).budgetRegistry(budgetRegistry)
+                        .graphEventRegistry(graphEventRegistry).contextPacker(contextPacker).build()));
+        stateGraph.addNode("transform_query", async("transform_query",
+                TransformQueryNode.builder().chatClient(questionRewriterChatClient)
+                        .budgetRegistry(budgetRegistry).build()));
 
         // 决定通过向量库检索还是网络搜索
-        stateGraph.addConditionalEdges(StateGraph.START, AsyncEdgeAction.edge_async(routeQuestionEdge),
-                Map.of("vectorstore", "prebuilt_rag_generation", "web_search", "web_search"));
+        if ("off".equalsIgnoreCase(speculativeMode)) {
+            stateGraph.addConditionalEdges(StateGraph.START, edge("route_question", routeQuestionEdge),
+                    Map.of("vectorstore", "prebuilt_rag_generation", "web_search", "web_search"));
+        } else {
+            // 推测执行：路由的同时预取检索结果，路由节点把决策写入状态；
+            // 预取结果交给检索增强 advisor，与其一致多取候选，开启重排序时由 LocalReranker 保留 keepK 个
+            stateGraph.addNode("route_question", async("route_question",
+                    RouteQuestionNode.builder()
+                            .routeQuestionEdge(routeQuestionEdge)
+                            .documentRetriever(rerankDocumentRetriever)
+                            .webSearchTool("all".equalsIgnoreCase(speculativeMode) ? webSearchTool : null)
+                            .executor(graphExecutor)
+                            .build()));
+            stateGraph.addEdge(StateGraph.START, "route_question");
+            stateGraph.addConditionalEdges("route_question",
+                    edge("route_question", state -> state.value("route", "vectorstore")),
+                    Map.of("vectorstore", "prebuilt_rag_generation", "web_search", "web_search"));
+        }
 
         // 向量库chains
-        stateGraph.addConditionalEdges("prebuilt_rag_generation", AsyncEdgeAction.edge_async(gradeGenerationEdge),
+        stateGraph.addConditionalEdges("prebuilt_rag_generation",
+                edge("grade_prebuilt_rag_generation", gradeGenerationEdge),
                 Map.of("useful", StateGraph.END,
                         "unuseful", "transform_query",
-                        "hallucination", "prebuilt_rag_generation"));
+                        "hallucination", "prebuilt_rag_generation",
+                        // 请求预算耗尽，以目前最好的回答结束
+                        "exhausted", StateGraph.END));
 
         // 网络搜索chains
         stateGraph.addEdge("web_search", "self_rag_generation");
-        stateGraph.addConditionalEdges("self_rag_generation", AsyncEdgeAction.edge_async(gradeGenerationEdge),
+        stateGraph.addConditionalEdges("self_rag_generation",
+                edge("grade_self_rag_generation", gradeGenerationEdge),
                 Map.of("useful", StateGraph.END,
                         "unuseful", "transform_query",
-                        "hallucination", "self_rag_generation"));
+                        "hallucination", "self_rag_generation",
+                        "exhausted", StateGraph.END));
 
         // 重写问题
         stateGraph.addEdge("transform_query", "self_rag_generation");
@@ -126,4 +230,19 @@ public class GraphConfig {
 
         return stateGraph;
     }
+
+    /**
+     * 节点开始时推送事件，并记录节点耗时
+     */
+    private AsyncNodeAction async(String node, NodeAction action) {
+        return nodeExecutor.async(node,
+                new NodeStartEventAction(node, graphMetrics.node(node, action), graphEventRegistry));
+    }
+
+    /**
+     * 记录条件边的耗时与决策
+     */
+    private AsyncEdgeAction edge(String edge, EdgeAction action) {
+        return AsyncEdgeAction.edge_async(graphMetrics.edge(edge, action));
+    }
 }
@@ -1,5 +1,17 @@
 package com.ai.demo.config;
 
+import com.ai.demo.cache.CachingEmbeddingModel;
+import com.ai.demo.context.ContextPacker;
+import com.ai.demo.retrieval.AdaptiveQueryTransformer;
+import com.ai.demo.retrieval.HybridDocumentRetriever;
+import com.ai.demo.retrieval.LocalReranker;
+import com.ai.demo.retrieval.MultiQueryDocumentRetriever;
+import com.ai.demo.retrieval.RankedRetriever;
+import com.ai.demo.vectorstore.HnswVectorStore;
+import com.ai.demo.vectorstore.LocalVectorStore;
+import com.ai.demo.vectorstore.ShardedVectorStore;
+import com.ai.demo.vectorstore.SimilarityKernel;
+import com.ai.demo.vectorstore.VectorEncoding;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.model.ChatModel;
 import org.springframework.ai.embedding.EmbeddingModel;
@@ -9,12 +21,21 @@ import org.springframework.ai.rag.preretrieval.query.transformation.RewriteQuery
 import org.springframework.ai.rag.preretrieval.query.transformation.TranslationQueryTransformer;
 import org.springframework.ai.rag.retrieval.search.DocumentRetriever;
 import org.springframework.ai.rag.retrieval.search.VectorStoreDocumentRetriever;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
 import org.springframework.ai.transformer.splitter.TextSplitter;
 import org.springframework.ai.transformer.splitter.TokenTextSplitter;
-import org.springframework.ai.vectorstore.SimpleVectorStore;
-import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.function.IntFunction;
 
 @Configuration
 public class RagConfig {
@@ -30,27 +51,183 @@ public class RagConfig {
                 .build();
     }
 
+    /**
+     * 上下文打包器，按 token 预算为生成节点与评分边打包文档
+     * @param maxTokens 上下文的最大 token 数
+     * @param duplicateThreshold 近似重复片段的词元重合度阈值
+     * @param tokenCacheSize token 数缓存的最大条目数
+     * @return ContextPacker 实例
+     */
+    @Bean
+    ContextPacker contextPacker(@Value("${rag.context.max-tokens:3000}") int maxTokens,
+            @Value("${rag.context.duplicate-threshold:0.8}") double duplicateThreshold,
+            @Value("${rag.context.token-cache-size:10000}") long tokenCacheSize) {
+        return new ContextPacker(new JTokkitTokenCountEstimator(), maxTokens, duplicateThreshold, tokenCacheSize);
+    }
+
+    /**
+     * 带缓存的词嵌入模型，包装自动配置的 OpenAI 词嵌入模型，作为默认的 EmbeddingModel 注入到向量库与入库流水线
+     * <p>内存 LRU + 磁盘追加日志两级缓存，键为 模型名 + 文本哈希，重复的问题与重新入库的片段不再请求向量化接口</p>
+     * @param delegate 自动配置的词嵌入模型
+     * @param modelName 词嵌入模型名
+     * @param maxEntries 内存层最大条目数
+     * @param path 磁盘层文件，为空时只使用内存层
+     * @return CachingEmbeddingModel 实例
+     */
+    @Bean
+    @Primary
+    CachingEmbeddingModel cachingEmbeddingModel(@Qualifier("openAiEmbeddingModel") EmbeddingModel delegate,
+            @Value("${spring.ai.openai.embedding.options.model:text-embedding-ada-002}") String modelName,
+            @Value("${rag.embedding-cache.max-entries:10000}") long maxEntries,
+            @Value("${rag.embedding-cache.path:}") String path) {
+        return new CachingEmbeddingModel(delegate, modelName, maxEntries, path.isBlank() ? null : Path.of(path));
+    }
+
     /**
      * 向量存储库，用于存储文档片段的向量表示
+     * <p>使用进程内 HNSW 图索引做近似最近邻检索，查询耗时不再随语料规模线性增长；
+     * 分片数大于 1 时文档分散到多个分片，查询在多核上并行检索后合并 topK</p>
+     * @param embeddingModel 词嵌入模型
+     * @param m 每个节点的最大邻居数
+     * @param efConstruction 建图时的候选队列长度
+     * @param efSearch 查询时的候选队列长度
+     * @param encoding 图遍历使用的向量编码
+     * @param rescoreMultiplier 量化检索时参与重打分的候选倍数
+     * @param similarityKernel 相似度计算内核
+     * @param shards 分片数
      * @return VectorStore 实例
      */
     @Bean
-    VectorStore vectorStore(EmbeddingModel embeddingModel) {
-        return SimpleVectorStore.builder(embeddingModel)
+    LocalVectorStore vectorStore(EmbeddingModel embeddingModel,
+            @Value("${rag.vector-store.hnsw.m:16}") int m,
+            @Value("${rag.vector-store.hnsw.ef-construction:200}") int efConstruction,
+            @Value("${rag.vector-store.hnsw.ef-search:64}") int efSearch,
+            @Value("${rag.vector-store.encoding:FLOAT32}") VectorEncoding encoding,
+            @Value("${rag.vector-store.rescore-multiplier:4}") int rescoreMultiplier,
+            @Value("${rag.vector-store.similarity-kernel:auto}") String similarityKernel,
+            @Value("${rag.vector-store.shards:1}") int shards) {
+        IntFunction<HnswVectorStore> shardFactory = shard -> HnswVectorStore.builder(embeddingModel)
+                .m(m)
+                .efConstruction(efConstruction)
+                .efSearch(efSearch)
+                .encoding(encoding)
+                .rescoreMultiplier(rescoreMultiplier)
+                .similarityKernel(SimilarityKernel.of(similarityKernel))
+                .build();
+        if (shards <= 1) {
+            return shardFactory.apply(0);
+        }
+        return ShardedVectorStore.builder(embeddingModel, shardFactory)
+                .shards(shards)
                 .build();
     }
 
     /**
      * 文档检索器，用于从向量存储中检索相关文档片段
+     * <p>hybrid 模式下向量检索与 BM25 关键词检索并行执行，按倒数排名融合，
+     * 补上向量检索容易漏掉的 API 名、配置项等精确匹配；vector 模式只做向量检索。
+     * 开启多查询时先把问题扩展为多个子查询，一次批量向量化后在虚拟线程上并发检索，结果统一融合去重</p>
      * @param vectorStore 向量存储库
+     * @param embeddingModel 词嵌入模型
+     * @param multiQueryExpander 多查询扩展器
+     * @param mode 检索模式：hybrid / vector
+     * @param multiQuery 是否开启多查询检索
+     * @param topK 返回的文档数
+     * @param candidates 每路检索取的候选数
+     * @param similarityThreshold 向量检索的最低相似度
+     * @param rrfK 倒数排名融合的平滑常数
      * @return DocumentRetriever 实例
      */
     @Bean
-    DocumentRetriever documentRetriever(VectorStore vectorStore) {
-        return VectorStoreDocumentRetriever.builder()
-                .vectorStore(vectorStore)
-                .similarityThreshold(0.50)
-                .build();
+    @Primary
+    DocumentRetriever documentRetriever(LocalVectorStore vectorStore, EmbeddingModel embeddingModel,
+            MultiQueryExpander multiQueryExpander,
+            @Value("${rag.retrieval.mode:hybrid}") String mode,
+            @Value("${rag.retrieval.multi-query:false}") boolean multiQuery,
+            @Value("${rag.retrieval.top-k:4}") int topK,
+            @Value("${rag.retrieval.candidates:20}") int candidates,
+            @Value("${rag.retrieval.similarity-threshold:0.50}") double similarityThreshold,
+            @Value("${rag.retrieval.rrf-k:60}") int rrfK) {
+        return buildDocumentRetriever(vectorStore, embeddingModel, multiQueryExpander, mode, multiQuery, topK, candidates,
+                similarityThreshold, rrfK);
+    }
+
+    /**
+     * 重排序前的候选检索器，供检索增强 advisor 与路由阶段的预取使用，两者的结果都交给 advisor 的后处理
+     * <p>开启重排序时取 keepK 的 overFetch 倍候选，由 LocalReranker 保留 keepK 个；
+     * 其余检索方仍使用 {@link #documentRetriever} 的 topK。未开启重排序时与其相同。</p>
+     * @param rerank 是否开启本地重排序
+     * @param keepK 重排序后保留的文档数
+     * @param overFetch 开启重排序时检索 keepK 的多少倍候选
+     * @return DocumentRetriever 实例
+     */
+    @Bean
+    DocumentRetriever rerankDocumentRetriever(LocalVectorStore vectorStore, EmbeddingModel embeddingModel,
+            MultiQueryExpander multiQueryExpander,
+            @Value("${rag.retrieval.mode:hybrid}") String mode,
+            @Value("${rag.retrieval.multi-query:false}") boolean multiQuery,
+            @Value("${rag.retrieval.top-k:4}") int topK,
+            @Value("${rag.retrieval.candidates:20}") int candidates,
+            @Value("${rag.retrieval.similarity-threshold:0.50}") double similarityThreshold,
+            @Value("${rag.retrieval.rrf-k:60}") int rrfK,
+            @Value("${rag.rerank.enabled:true}") boolean rerank,
+            @Value("${rag.rerank.keep-k:4}") int keepK,
+            @Value("${rag.rerank.over-fetch:3}") int overFetch) {
+        if (!rerank) {
+            return buildDocumentRetriever(vectorStore, embeddingModel, multiQueryExpander, mode, multiQuery, topK,
+                    candidates, similarityThreshold, rrfK);
+        }
+        int overFetchK = keepK * overFetch;
+        return buildDocumentRetriever(vectorStore, embeddingModel, multiQueryExpander, mode, multiQuery, overFetchK,
+                Math.max(candidates, overFetchK), similarityThreshold, rrfK);
+    }
+
+    private static DocumentRetriever buildDocumentRetriever(LocalVectorStore vectorStore,
+            EmbeddingModel embeddingModel, MultiQueryExpander multiQueryExpander, String mode, boolean multiQuery, int topK, int candidates,
+            double similarityThreshold, int rrfK) {
+        Executor executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("retrieval-", 0).factory());
+        DocumentRetriever retriever;
+        RankedRetriever rankedRetriever;
+        if ("vector".equalsIgnoreCase(mode)) {
+            retriever = VectorStoreDocumentRetriever.builder()
+                    .vectorStore(vectorStore)
+                    .topK(topK)
+                    .similarityThreshold(similarityThreshold)
+                    .build();
+            rankedRetriever = (query, embedding) -> List.of(vectorStore.similaritySearch(SearchRequest.builder()
+                    .query(query.text())
+                    .topK(candidates)
+                    .similarityThreshold(similarityThreshold)
+                    .build(), embedding));
+        } else {
+            HybridDocumentRetriever hybrid = new HybridDocumentRetriever(vectorStore, executor, topK, candidates,
+                    similarityThreshold, rrfK);
+            retriever = hybrid;
+            rankedRetriever = hybrid;
+        }
+        if (!multiQuery) {
+            return retriever;
+        }
+        return new MultiQueryDocumentRetriever(multiQueryExpander, embeddingModel, rankedRetriever, executor, topK,
+                rrfK);
+    }
+
+    /**
+     * 本地重排序器，作为检索增强 advisor 的文档后处理阶段
+     * <p>按向量相似度与 BM25 分数的加权和打分，再按 MMR 选取，全部在本地完成</p>
+     * @param vectorStore 向量存储库，提供文档向量
+     * @param embeddingModel 词嵌入模型，提供查询向量
+     * @param keepK 保留的文档数
+     * @param embeddingWeight 向量相似度的权重
+     * @param mmrLambda MMR 中相关度的权重
+     * @return LocalReranker 实例
+     */
+    @Bean
+    LocalReranker localReranker(LocalVectorStore vectorStore, EmbeddingModel embeddingModel,
+            @Value("${rag.rerank.keep-k:4}") int keepK,
+            @Value("${rag.rerank.embedding-weight:0.7}") double embeddingWeight,
+            @Value("${rag.rerank.mmr-lambda:0.7}") double mmrLambda) {
+        return new LocalReranker(vectorStore, embeddingModel, keepK, embeddingWeight, mmrLambda);
     }
 
     /**
@@ -93,6 +270,26 @@ public class RagConfig {
                 .build();
     }
 
+    /**
+     * 自适应查询转换器，代替依次执行的压缩、翻译、重写三个转换器
+     * <p> <em>检索前增强</em> 没有对话历史时不压缩，问题已是中文时不翻译；只需一项时调用对应转换器，需要多项时合并为一次调用</p>
+     * @param compressionQueryTransformer 压缩查询转换器
+     * @param translationQueryTransformer 翻译查询转换器
+     * @param rewriteQueryTransformer 重写查询转换器
+     * @param queryTransformChatClient 合并转换使用的 ChatClient
+     * @param rewrite 是否重写问题
+     * @return AdaptiveQueryTransformer 实例
+     */
+    @Bean
+    AdaptiveQueryTransformer adaptiveQueryTransformer(CompressionQueryTransformer compressionQueryTransformer,
+            TranslationQueryTransformer translationQueryTransformer,
+            RewriteQueryTransformer rewriteQueryTransformer,
+            @Qualifier("QueryTransformChatClient") ChatClient queryTransformChatClient,
+            @Value("${rag.query-transform.rewrite:true}") boolean rewrite) {
+        return new AdaptiveQueryTransformer(compressionQueryTransformer, translationQueryTransformer,
+                rewriteQueryTransformer, queryTransformChatClient, rewrite);
+    }
+
     /**
      * 多查询扩展器，生成多个查询以提高检索覆盖率
      * <p> <em>检索前增强</em> 利用大模型从不同视角生成多语义查询语句</p>
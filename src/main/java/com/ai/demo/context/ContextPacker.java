@@ -0,0 +1,253 @@
+package com.ai.demo.context;
+
+import com.ai.demo.ingest.ContentHash;
+import com.ai.demo.retrieval.ChineseTokenizer;
+import com.alibaba.cloud.ai.graph.OverAllState;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.rag.Query;
+import org.springframework.ai.rag.postretrieval.document.DocumentPostProcessor;
+import org.springframework.ai.tokenizer.TokenCountEstimator;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * 按 token 预算打包生成与评分使用的上下文
+ * <ul>
+ *     <li>按检索分数降序排列，没有分数的文档（如网络搜索结果）保持原有顺序排在后面</li>
+ *     <li>与已选文档词元重合度（Jaccard）不低于阈值的近似重复片段被丢弃</li>
+ *     <li>放不下的文档按句子抽取：优先保留与问题词元重合最多的句子，按原文顺序拼接</li>
+ * </ul>
+ * <p>每段文本的 token 数按内容哈希缓存。生成节点把打包结果连同问题与文档的指纹写入图状态，
+ * 评分边只读取状态中的上下文；自我纠正循环中问题与文档不变时直接复用，不再重新打包。</p>
+ * <p>同时作为检索增强 advisor 的文档后处理阶段，advisor 以 {@link #join} 拼接上下文，
+ * 与 {@link #packed} 写入状态的文本一致。</p>
+ */
+@Slf4j
+public class ContextPacker implements DocumentPostProcessor {
+
+    /**
+     * 打包后的上下文
+     */
+    public static final String STATE_KEY = "context";
+
+    /**
+     * 打包时的问题与文档指纹，用于判断状态中的上下文是否仍然有效
+     */
+    public static final String FINGERPRINT_STATE_KEY = "context_fingerprint";
+
+    private static final String SEPARATOR = "\n\n";
+
+    /**
+     * 句末标点（中英文）或换行处断句，标点保留在句子中
+     */
+    private static final Pattern SENTENCE_END = Pattern.compile("(?<=[。！？!?；;])|(?<=\\.)\\s+|\\n+");
+
+    /**
+     * 剩余预算少于该值时不再抽取句子，避免只放入一两个残句
+     */
+    private static final int MIN_TRIMMED_TOKENS = 32;
+
+    private final TokenCountEstimator tokenCountEstimator;
+
+    private final int maxTokens;
+
+    private final double duplicateThreshold;
+
+    private final Cache<String, Integer> tokenCounts;
+
+    /**
+     * @param tokenCountEstimator token 数估算器
+     * @param maxTokens 上下文的最大 token 数
+     * @param duplicateThreshold 词元 Jaccard 重合度不低于该值的片段视为近似重复
+     * @param tokenCacheSize token 数缓存的最大条目数
+     */
+    public ContextPacker(TokenCountEstimator tokenCountEstimator, int maxTokens, double duplicateThreshold,
+            long tokenCacheSize) {
+        this.tokenCountEstimator = tokenCountEstimator;
+        this.maxTokens = maxTokens;
+        this.duplicateThreshold = duplicateThreshold;
+        this.tokenCounts = Caffeine.newBuilder().maximumSize(tokenCacheSize).build();
+    }
+
+    /**
+     * 状态中已有按相同问题与文档打包的上下文时直接复用，否则重新打包
+     * @param state 图状态
+     * @param question 问题
+     * @param documents 文档
+     * @return 打包后的上下文
+     */
+    public PackedContext of(OverAllState state, String question, List<Document> documents) {
+        String fingerprint = fingerprint(question, documents);
+        String context = state.value(STATE_KEY, String.class).orElse(null);
+        if (context != null && fingerprint.equals(state.value(FINGERPRINT_STATE_KEY, String.class).orElse(null))) {
+            return new PackedContext(context, fingerprint, true);
+        }
+        return new PackedContext(pack(question, documents), fingerprint, false);
+    }
+
+    /**
+     * 已经打包好的文档（如检索增强 advisor 后处理的结果）直接拼接，不再重新打包
+     * @param question 问题
+     * @param packedDocuments 打包后的文档
+     * @return 打包后的上下文
+     */
+    public static PackedContext packed(String question, List<Document> packedDocuments) {
+        return new PackedContext(join(packedDocuments), fingerprint(question, packedDocuments), false);
+    }
+
+    @Override
+    public List<Document> process(Query query, List<Document> documents) {
+        return packDocuments(query.text(), documents);
+    }
+
+    /**
+     * @param question 问题，用于句子抽取
+     * @param documents 文档
+     * @return 不超过 token 预算的上下文，片段之间以空行分隔
+     */
+    public String pack(String question, List<Document> documents) {
+        return join(packDocuments(question, documents));
+    }
+
+    /**
+     * @param documents 打包后的文档
+     * @return 以空行分隔的上下文
+     */
+    public static String join(List<Document> documents) {
+        return documents.stream().map(Document::getText).collect(Collectors.joining(SEPARATOR));
+    }
+
+    /**
+     * @param question 问题，用于句子抽取
+     * @param documents 文档
+     * @return 按分数排列、去掉近似重复、超出预算时抽取句子后的文档，总计不超过 token 预算
+     */
+    public List<Document> packDocuments(String question, List<Document> documents) {
+        Set<String> questionTokens = new HashSet<>(ChineseTokenizer.tokenize(question));
+        List<Document> packed = new ArrayList<>();
+        List<Set<String>> packedTokens = new ArrayList<>();
+        int used = 0;
+        int duplicates = 0;
+        int trimmed = 0;
+
+        for (Document document : ranked(documents)) {
+            String text = document.getText();
+            if (text == null || text.isBlank()) {
+                continue;
+            }
+            Set<String> tokens = new HashSet<>(ChineseTokenizer.tokenize(text));
+            if (packedTokens.stream().anyMatch(kept -> jaccard(tokens, kept) >= duplicateThreshold)) {
+                duplicates++;
+                continue;
+            }
+            int remaining = maxTokens - used - (packed.isEmpty() ? 0 : tokens(SEPARATOR));
+            int count = tokens(text);
+            if (count > remaining) {
+                if (remaining < MIN_TRIMMED_TOKENS) {
+                    break;
+                }
+                text = extract(text, questionTokens, remaining);
+                if (text.isEmpty()) {
+                    continue;
+                }
+                count = tokens(text);
+                trimmed++;
+            }
+            packed.add(text.equals(document.getText()) ? document : document.mutate().text(text).build());
+            packedTokens.add(tokens);
+            used += count + (packed.size() > 1 ? tokens(SEPARATOR) : 0);
+        }
+        log.info("Packed {} of {} documents into ~{} tokens (budget {}), {} near-duplicates dropped, {} trimmed",
+                packed.size(), documents.size(), used, maxTokens, duplicates, trimmed);
+        return packed;
+    }
+
+    /**
+     * 按与问题的词元重合数从高到低选取句子，直到放不下为止，再按原文顺序拼接
+     */
+    String extract(String text, Set<String> questionTokens, int budget) {
+        String[] sentences = SENTENCE_END.split(text);
+        List<Integer> order = IntStream.range(0, sentences.length)
+                .filter(i -> !sentences[i].isBlank())
+                .boxed()
+                .sorted(Comparator.comparingLong((Integer i) -> ChineseTokenizer.tokenize(sentences[i]).stream()
+                        .filter(questionTokens::contains).count()).reversed())
+                .toList();
+        Set<Integer> selected = new HashSet<>();
+        int used = 0;
+        for (int i : order) {
+            int count = tokens(sentences[i]);
+            if (used + count <= budget) {
+                selected.add(i);
+                used += count;
+            }
+        }
+        return IntStream.range(0, sentences.length)
+                .filter(selected::contains)
+                .mapToObj(i -> sentences[i].strip())
+                .collect(Collectors.joining(" "));
+    }
+
+    /**
+     * 有分数的文档按分数降序在前，没有分数的保持原有顺序在后
+     */
+    private static List<Document> ranked(List<Document> documents) {
+        List<Document> ranked = new ArrayList<>(documents);
+        ranked.sort(Comparator.comparing(Document::getScore, Comparator.nullsLast(Comparator.reverseOrder())));
+        return ranked;
+    }
+
+    private int tokens(String text) {
+        return tokenCounts.get(ContentHash.of(text), key -> tokenCountEstimator.estimate(text));
+    }
+
+    private static double jaccard(Set<String> a, Set<String> b) {
+        if (a.isEmpty() || b.isEmpty()) {
+            return 0;
+        }
+        long intersection = a.stream().filter(b::contains).count();
+        return (double) intersection / (a.size() + b.size() - intersection);
+    }
+
+    /**
+     * @return 问题与各文档内容的指纹
+     */
+    static String fingerprint(String question, List<Document> documents) {
+        return ContentHash.of(documents.stream()
+                .map(document -> ContentHash.of(String.valueOf(document.getText())))
+                .collect(Collectors.joining(",", question + "\n", "")));
+    }
+
+    /**
+     * @param text 打包后的上下文
+     * @param fingerprint 问题与文档指纹
+     * @param reused 是否复用了状态中已有的上下文
+     */
+    public record PackedContext(String text, String fingerprint, boolean reused) {
+
+        /**
+         * @return 需要写回图状态的键值，复用时为空
+         */
+        public Map<String, Object> toState() {
+            if (reused) {
+                return Map.of();
+            }
+            Map<String, Object> state = new HashMap<>();
+            state.put(STATE_KEY, text);
+            state.put(FINGERPRINT_STATE_KEY, fingerprint);
+            return state;
+        }
+    }
+}
@@ -1,6 +1,25 @@
 package com.ai.demo.controller;
 
+import com.ai.demo.budget.BudgetExceededException;
+import com.ai.demo.budget.BudgetRegistry;
+import com.ai.demo.budget.RequestBudget;
+import com.ai.demo.cache.CachingEmbeddingModel;
+import com.ai.demo.cache.SemanticAnswerCache;
+import com.ai.demo.context.ContextPacker;
+import com.ai.demo.execution.Bulkhead;
+import com.ai.demo.execution.GraphNodeExecutor;
+import com.ai.demo.ingest.IngestionPipeline;
+import com.ai.demo.memory.BoundedChatMemoryRepository;
+import com.ai.demo.memory.Conversations;
+import com.ai.demo.metrics.GraphMetrics;
+import com.ai.demo.retrieval.PrefetchedDocumentRetriever;
+import com.ai.demo.stream.GraphEvent;
+import com.ai.demo.stream.GraphEventListener;
+import com.ai.demo.stream.GraphEventRegistry;
+import com.ai.demo.tool.TavilyClient;
+import com.ai.demo.vectorstore.LocalVectorStore;
 import com.alibaba.cloud.ai.graph.CompiledGraph;
+import com.alibaba.cloud.ai.graph.NodeOutput;
 import com.alibaba.cloud.ai.graph.OverAllState;
 import com.alibaba.cloud.ai.graph.RunnableConfig;
 import com.alibaba.cloud.ai.graph.StateGraph;
@@ -8,84 +27,303 @@ import com.alibaba.cloud.ai.graph.exception.GraphStateException;
 import lombok.AllArgsConstructor;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.ai.document.Document;
-import org.springframework.ai.reader.markdown.MarkdownDocumentReader;
-import org.springframework.ai.reader.markdown.config.MarkdownDocumentReaderConfig;
-import org.springframework.ai.vectorstore.SimpleVectorStore;
-import org.springframework.ai.vectorstore.VectorStore;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.ai.chat.memory.ChatMemory;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.Resource;
+import org.springframework.http.MediaType;
 import org.springframework.util.ResourceUtils;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 @RestController
 @RequestMapping("/graph")
 @Slf4j
 public class GraphController {
 
-    @Value("classpath:documents/faq.md")
-    Resource file1;
+    private final CompiledGraph compiledGraph;
 
-    @Value("classpath:documents/overview.md")
-    Resource file2;
+    private final LocalVectorStore vectorStore;
 
-    private final CompiledGraph compiledGraph;
+    private final IngestionPipeline ingestionPipeline;
+
+    private final CachingEmbeddingModel embeddingModel;
+
+    private final SemanticAnswerCache answerCache;
+
+    private final BudgetRegistry budgetRegistry;
+
+    private final GraphEventRegistry graphEventRegistry;
+
+    private final Duration streamTimeout;
+
+    private final GraphNodeExecutor nodeExecutor;
+
+    private final Bulkhead webSearchBulkhead;
+
+    private final BoundedChatMemoryRepository chatMemoryRepository;
+
+    private final ChatMemory chatMemory;
 
-    private final VectorStore vectorStore;
+    private final TavilyClient tavilyClient;
 
-    private final String SAVE_PATH = System.getProperty("user.dir") + "/src/main/resources/vectorstore/vectorstore.json";
+    private final GraphMetrics graphMetrics;
+
+    /**
+     * 流式请求在虚拟线程上执行图，请求线程立即返回
+     */
+    private final ExecutorService streamExecutor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("graph-stream-", 0).factory());
+
+    private final String SAVE_PATH = System.getProperty("user.dir") + "/src/main/resources/vectorstore/vectorstore.bin";
+
+    private final String LEGACY_SAVE_PATH = System.getProperty("user.dir") + "/src/main/resources/vectorstore/vectorstore.json";
 
     @SneakyThrows
-    public GraphController(@Qualifier("graph") StateGraph stateGraph, VectorStore vectorStore) {
+    public GraphController(@Qualifier("graph") StateGraph stateGraph, LocalVectorStore vectorStore,
+            IngestionPipeline ingestionPipeline, CachingEmbeddingModel embeddingModel,
+            SemanticAnswerCache answerCache, BudgetRegistry budgetRegistry, GraphEventRegistry graphEventRegistry,
+            @Value("${rag.stream.timeout:2m}") Duration streamTimeout, GraphNodeExecutor nodeExecutor,
+            @Qualifier("webSearchBulkhead") Bulkhead webSearchBulkhead,
+            BoundedChatMemoryRepository chatMemoryRepository, ChatMemory chatMemory, TavilyClient tavilyClient, GraphMetrics graphMetrics) {
         this.vectorStore = vectorStore;
+        this.ingestionPipeline = ingestionPipeline;
+        this.embeddingModel = embeddingModel;
+        this.answerCache = answerCache;
+        this.budgetRegistry = budgetRegistry;
+        this.graphEventRegistry = graphEventRegistry;
+        this.streamTimeout = streamTimeout;
+        this.nodeExecutor = nodeExecutor;
+        this.webSearchBulkhead = webSearchBulkhead;
+        this.chatMemoryRepository = chatMemoryRepository;
+        this.chatMemory = chatMemory;
+        this.tavilyClient = tavilyClient;
+        this.graphMetrics = graphMetrics;
         this.compiledGraph = stateGraph.compile();
     }
 
     @GetMapping(value = "/add")
-    public void addDocuments() {
-        // 如果存在则加载
+    public Map<String, Object> addDocuments() {
+        // 旧版 JSON 持久化文件一次性转换为二进制快照，其中的文档没有源文件信息，下次入库时由重新切分的片段取代
         File file = new File(SAVE_PATH);
-        if (file.exists()) {
-            log.info("load vector store from {}", SAVE_PATH);
-            ((SimpleVectorStore) vectorStore).load(file);
-            return;
+        File legacyFile = new File(LEGACY_SAVE_PATH);
+        if (!vectorStore.hasSnapshot(file) && legacyFile.exists()) {
+            log.info("convert legacy vector store {} to {}", LEGACY_SAVE_PATH, SAVE_PATH);
+            vectorStore.importJson(legacyFile);
+            vectorStore.save(file);
+            return Map.of("status", "CONVERTED", "documents", vectorStore.size());
         }
 
+        // 加载已有快照，按内容哈希增量入库：只向量化新增或修改的片段，删除已不存在的片段
         log.info("start add documents");
-        var markdownReader1 = new MarkdownDocumentReader(file1, MarkdownDocumentReaderConfig.builder()
-                .withAdditionalMetadata("title", "Spring AI Alibaba FAQ")
-                .withAdditionalMetadata("summary", "关于Spring AI Alibaba的常见问题和解答")
-                .build());
-        List<Document> documents = new ArrayList<>(markdownReader1.get());
-
-        var markdownReader2 = new MarkdownDocumentReader(file2, MarkdownDocumentReaderConfig.builder()
-                .withAdditionalMetadata("title", "Spring AI Alibaba Overview")
-                .withAdditionalMetadata("summary", "关于Spring AI Alibaba的概述")
-                .build());
-        documents.addAll(markdownReader2.get());
-
-        // 将文档添加到向量库中
-        vectorStore.add(documents);
-
-        // 持久化
-        ((SimpleVectorStore) vectorStore).save(file);
+        return ingestionPipeline.run(file);
+    }
+
+    @GetMapping(value = "/add/progress")
+    public Map<String, Object> addProgress() {
+        return ingestionPipeline.progress().toMap();
+    }
+
+    @GetMapping(value = "/stats")
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("documents", vectorStore.size());
+        stats.put("embeddingCache", embeddingModel.stats());
+        stats.put("answerCache", answerCache.stats());
+        stats.put("nodes", nodeExecutor.stats());
+        stats.put("webSearch", webSearchBulkhead.stats());
+        stats.put("webSearchCache", tavilyClient.stats());
+        stats.put("chatMemory", chatMemoryRepository.stats());
+        return stats;
     }
 
     @GetMapping(value = "/chat")
     public Map<String, Object> chat(@RequestParam(value = "query", defaultValue = "你好，我想知道一些关于大模型的知识",
-            required = false) String query) {
-        RunnableConfig runnableConfig = RunnableConfig.builder().threadId("001").build();
+            required = false) String query,
+            @RequestParam(value = "conversationId", required = false) String requestedConversationId) {
+        // 未携带会话 id 时每次请求使用新的会话，返回结果中的 conversation_id 可用于继续对话
+        String conversationId = Conversations.idOrNew(requestedConversationId);
+        // 相似问题已有评估通过的回答时直接返回，不再执行图；会话已有上文时回答可能依赖上文，不查也不写缓存
+        boolean cacheable = !Conversations.hasHistory(chatMemoryRepository, conversationId);
+        Optional<Map<String, Object>> cached = cacheable ? answerCache.lookup(query) : Optional.empty();
+        if (cached.isPresent()) {
+            return hit(query, cached.get(), conversationId);
+        }
+        return execute(query, conversationId, null, budgetRegistry.create(), cacheable);
+    }
+
+    /**
+     * 流式问答：以 SSE 推送 node_start、node_end、token 事件，最后推送 done 事件携带与 /chat 相同的结果
+     * <p>生成节点以流式调用大模型，首个 token 无需等待评分循环结束；评分不通过而重新生成时，
+     * 客户端会再次收到该节点的 node_start 事件，应丢弃之前收到的 token。</p>
+     */
+    @GetMapping(value = "/chat/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter chatStream(@RequestParam(value = "query", defaultValue = "你好，我想知道一些关于大模型的知识",
+            required = false) String query,
+            @RequestParam(value = "conversationId", required = false) String requestedConversationId) {
+        String conversationId = Conversations.idOrNew(requestedConversationId);
+        SseEmitter emitter = new SseEmitter(streamTimeout.toMillis());
+        RequestBudget budget = budgetRegistry.create();
+        // 超时或连接关闭后取消请求预算，图在下一个节点、下一次大模型调用或评分时结束，不必等到下一个事件
+        emitter.onTimeout(() -> budget.cancel("stream timeout"));
+        emitter.onError(e -> budget.cancel("client disconnected"));
+        emitter.onCompletion(() -> budget.cancel("stream closed"));
+        GraphEventListener listener = event -> {
+            try {
+                emitter.send(SseEmitter.event().name(event.type()).data(event, MediaType.APPLICATION_JSON));
+            } catch (IOException e) {
+                // 客户端已断开，抛出异常中止图执行
+                throw new UncheckedIOException(e);
+            } catch (IllegalStateException e) {
+                // 连接已经超时或关闭，同样视为断开
+                throw new UncheckedIOException(new IOException("SSE stream already closed", e));
+            }
+        };
+        streamExecutor.execute(() -> {
+            try {
+                boolean cacheable = !Conversations.hasHistory(chatMemoryRepository, conversationId);
+                Optional<Map<String, Object>> cached = cacheable ? answerCache.lookup(query) : Optional.empty();
+                listener.onEvent(GraphEvent.done(cached.isPresent() ? hit(query, cached.get(), conversationId)
+                        : execute(query, conversationId, listener, budget, cacheable)));
+                emitter.complete();
+            } catch (RuntimeException e) {
+                log.warn("Graph stream failed: {}", e.getMessage());
+                try {
+                    listener.onEvent(GraphEvent.error(e.getMessage()));
+                    emitter.complete();
+                } catch (UncheckedIOException disconnected) {
+                    emitter.completeWithError(e);
+                }
+            } finally {
+                // 命中缓存或执行前失败时预算未经 execute 移除
+                budgetRegistry.remove(budget);
+            }
+        });
+        return emitter;
+    }
+
+    /**
+     * 执行图，预算耗尽时以目前最好的回答结束
+     * @param conversationId 会话 id，各 ChatClient 的记忆按会话隔离
+     * @param listener 流式请求的事件监听器，非流式请求为 null
+     * @param budget 本次请求的预算，执行结束后从注册表中移除
+     * @param cacheable 回答是否可以写入语义缓存，会话已有上文时为 false
+     */
+    private Map<String, Object> execute(String query, String conversationId, GraphEventListener listener,
+            RequestBudget budget, boolean cacheable) {
+        // 图执行期间向量库有增删时回答基于旧文档，不写入缓存
+        long storeVersion = vectorStore.version();
+        RunnableConfig runnableConfig = RunnableConfig.builder().threadId(conversationId).build();
         Map<String, Object> objectMap = new HashMap<>();
         objectMap.put("question", query);
-        Optional<OverAllState> invoke = this.compiledGraph.invoke(objectMap, runnableConfig);
-        return invoke.map(OverAllState::data).orElse(new HashMap<>());
+        objectMap.put(Conversations.STATE_KEY, conversationId);
+        // 每次请求限定重试轮数、大模型调用次数、token 数与耗时
+        objectMap.put(BudgetRegistry.STATE_KEY, budget.id());
+        String streamId = listener == null ? null : graphEventRegistry.register(listener);
+        if (streamId != null) {
+            objectMap.put(GraphEventRegistry.STATE_KEY, streamId);
+        }
+        Map<String, Object> result;
+        try {
+            result = new HashMap<>(run(objectMap, runnableConfig, listener));
+        } catch (RuntimeException e) {
+            if (!isBudgetExceeded(e)) {
+                throw e;
+            }
+            // 节点执行途中预算耗尽
+            budget.exit();
+            result = new HashMap<>(objectMap);
+        } finally {
+            graphMetrics.recordRequest(budget);
+            budgetRegistry.remove(budget);
+            if (streamId != null) {
+                graphEventRegistry.remove(streamId);
+            }
+        }
+        result.remove(BudgetRegistry.STATE_KEY);
+        result.remove(GraphEventRegistry.STATE_KEY);
+        result.remove(ContextPacker.STATE_KEY);
+        result.remove(ContextPacker.FINGERPRINT_STATE_KEY);
+        // 路由结果与预取文档只供图内的边和节点使用
+        result.remove("route");
+        result.remove(PrefetchedDocumentRetriever.PREFETCHED_DOCUMENTS);
+
+        if (budget.exitReason() != null) {
+            // 以目前最好的回答结束，回答未必通过评估，不写入缓存
+            if (budget.bestAnswer() != null) {
+                result.put("generation", budget.bestAnswer());
+            }
+            result.put("budget_exhausted", budget.exitReason());
+        } else if (cacheable) {
+            answerCache.put(query, result, storeVersion);
+        }
+        result.put("budget", budget.toMap());
+        return result;
+    }
+
+    /**
+     * 命中缓存的回答带上本次请求的会话 id，与执行图的结果一致；图没有执行，这一轮问答由这里写入会话记忆
+     */
+    private Map<String, Object> hit(String query, Map<String, Object> cached, String conversationId) {
+        Conversations.remember(chatMemory, conversationId, query, (String) cached.get("generation"));
+        Map<String, Object> result = new LinkedHashMap<>(cached);
+        result.put(Conversations.STATE_KEY, conversationId);
+        return result;
+    }
+
+    /**
+     * 流式请求逐个节点消费图的输出并推送 node_end 事件，其余请求直接 invoke
+     * @return 图执行结束时的状态数据
+     */
+    @SneakyThrows
+    private Map<String, Object> run(Map<String, Object> inputs, RunnableConfig runnableConfig,
+            GraphEventListener listener) {
+        if (listener == null) {
+            return compiledGraph.invoke(inputs, runnableConfig).map(OverAllState::data).orElse(Map.of());
+        }
+        Map<String, Object> data = inputs;
+        for (NodeOutput output : compiledGraph.stream(inputs, runnableConfig)) {
+            data = output.state().data();
+            if (!StateGraph.START.equals(output.node()) && !StateGraph.END.equals(output.node())) {
+                listener.onEvent(GraphEvent.nodeEnd(output.node(), summary(data)));
+            }
+        }
+        return data;
+    }
+
+    /**
+     * node_end 事件只携带状态摘要，文档只给出数量
+     */
+    private static Map<String, Object> summary(Map<String, Object> data) {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        for (String key : List.of("route", "question", "generation")) {
+            if (data.get(key) != null) {
+                summary.put(key, data.get(key));
+            }
+        }
+        if (data.get("documents") instanceof List<?> documents) {
+            summary.put("documents", documents.size());
+        }
+        return summary;
+    }
+
+    private static boolean isBudgetExceeded(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof BudgetExceededException) {
+                return true;
+            }
+        }
+        return false;
     }
 }
\ No newline at end of file
@@ -1,17 +1,22 @@
 package com.ai.demo.edge;
 
+import com.ai.demo.budget.BudgetExceededException;
+import com.ai.demo.budget.BudgetRegistry;
+import com.ai.demo.budget.RequestBudget;
+import com.ai.demo.context.ContextPacker;
 import com.ai.demo.entity.GradeScore;
+import com.ai.demo.memory.Conversations;
 import com.alibaba.cloud.ai.graph.OverAllState;
 import com.alibaba.cloud.ai.graph.action.EdgeAction;
 import lombok.Builder;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
-import org.springframework.ai.document.Document;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
 
 @Component
 @Slf4j
@@ -21,56 +26,164 @@ public class GradeGenerationEdge implements EdgeAction {
 
     private final ChatClient answerGrader;
 
+    private final ChatClient combinedGrader;
+
+    private final BudgetRegistry budgetRegistry;
+
+    private final boolean combined;
+
+    private final double supportThreshold;
+
+    private final double coverageThreshold;
+
+    private final int minAnswerTokens;
+
+    /**
+     * @param mode combined（需要评估两项时合并为一次调用）/ separate（依次调用两个评分员）
+     * @param supportThreshold 回答词元出现在文档中的比例不低于该值时，本地判定为符合事实
+     * @param coverageThreshold 问题词元出现在回答中的比例不低于该值，且回答本地判定为符合事实时，本地判定为回应了问题
+     * @param minAnswerTokens 本地判定为回应了问题时，回答中至少要有多少个问题之外的词元
+     */
     public GradeGenerationEdge(@Qualifier("HallucinationChatClient") ChatClient hallucinationGrader,
-            @Qualifier("AnswerGraderChatClient") ChatClient answerGrader) {
+            @Qualifier("AnswerGraderChatClient") ChatClient answerGrader,
+            @Qualifier("CombinedGraderChatClient") ChatClient combinedGrader,
+            BudgetRegistry budgetRegistry,
+            @Value("${rag.grader.mode:combined}") String mode,
+            @Value("${rag.grader.support-threshold:0.8}") double supportThreshold,
+            @Value("${rag.grader.coverage-threshold:0.6}") double coverageThreshold,
+            @Value("${rag.grader.min-answer-tokens:10}") int minAnswerTokens) {
         this.hallucinationGrader = hallucinationGrader;
         this.answerGrader = answerGrader;
+        this.combinedGrader = combinedGrader;
+        this.budgetRegistry = budgetRegistry;
+        this.combined = "combined".equalsIgnoreCase(mode);
+        this.supportThreshold = supportThreshold;
+        this.coverageThreshold = coverageThreshold;
+        this.minAnswerTokens = minAnswerTokens;
     }
 
     /**
      * 评估生成质量
+     * <p>先做本地词元重合度预检，明显通过的项不再调用大模型；只在判定通过时走捷径，不会在本地判定失败。
+     * 两项都需要大模型评估且为 combined 模式时合并为一次调用。</p>
+     * <p>文档取自生成节点写入状态的上下文（{@link ContextPacker#STATE_KEY}），与生成时提示词中的上下文相同；
+     * 评分边不能写入状态，因此不在这里打包。</p>
+     * <p>每次评分算作自我纠正循环的一轮。请求预算（轮数、调用次数、token、截止时间）耗尽时不再重试，
+     * 以目前最好的回答结束。</p>
      * @param state 图状态
      * @return "hallucination" 如果生成的回答不符合事实，需要重试；
      * "unuseful" 如果生成的回答没有回应问题，需要重写问题；
-     * "useful" 如果生成的回答回应了问题。
+     * "useful" 如果生成的回答回应了问题；
+     * "exhausted" 如果请求预算已耗尽。
      */
     @Override
     public String apply(OverAllState state) {
         log.info("---------- 边：检查生成的回答是否符合事实 ----------");
         String question = state.value("question", String.class).orElse("");
         String generation = state.value("generation", String.class).orElse("");
-        List<Document> documents = state.value("documents", List.of());
+        String context = state.value(ContextPacker.STATE_KEY, String.class).orElse("");
+        RequestBudget budget = budgetRegistry.of(state);
+        Consumer<ChatClient.AdvisorSpec> advisors = RequestBudget.advise(budget).andThen(Conversations.advise(state));
+
+        if (budget != null && budget.isExhausted()) {
+            budget.offer(generation, false);
+            return exhausted(budget);
+        }
+
+        double support = LexicalSupport.support(generation, List.of(context));
+        double coverage = LexicalSupport.coverage(question, generation);
+        boolean grounded = support >= supportThreshold;
+        boolean answered = answeredLocally(question, generation, grounded, coverage);
+        log.info("本地预检: 事实支持度 {}, 问题覆盖率 {}", "%.2f".formatted(support), "%.2f".formatted(coverage));
+
+        try {
+            if (combined && !grounded && !answered) {
+                GradeScore gradeScore = combinedGrader.prompt()
+                        .user(u -> u.param("documents", context)
+                                .param("question", question)
+                                .param("generation", generation))
+                        .advisors(advisors)
+                        .call()
+                        .entity(GradeScore.class);
+
+                assert gradeScore != null;
+                grounded = "yes".equals(gradeScore.groundedScore());
+                answered = "yes".equals(gradeScore.answerScore());
+            } else {
+                if (!grounded) {
+                    grounded = gradeHallucination(context, generation, advisors);
+                }
+                // 不符合事实时无需再评估是否回应了问题
+                if (grounded && !answered) {
+                    answered = gradeAnswer(question, generation, advisors);
+                }
+            }
+        } catch (BudgetExceededException e) {
+            // 评分途中预算耗尽，回答未经评估
+            budget.offer(generation, false);
+            return exhausted(budget);
+        }
+
+        if (!grounded) {
+            log.info("---------- 决策：生成的回答不符合事实，需要重试 ----------");
+            return retryOrExhausted(budget, generation, false, "hallucination");
+        }
+        log.info("---------- 决策：生成的回答符合事实 ----------");
+        if (answered) {
+            log.info("---------- 决策：生成的回答回应了问题 ----------");
+            return "useful";
+        }
+        log.info("---------- 决策：生成的回答没有回应问题 ----------");
+        return retryOrExhausted(budget, generation, true, "unuseful");
+    }
 
+    /**
+     * 问题覆盖率高只说明回答提到了问题中的词，复述问题的拒答（"我无法回答关于 X 的问题"）同样很高；
+     * 还要求回答本地判定为符合事实，并在问题之外有足够的内容，否则交给大模型评估
+     */
+    boolean answeredLocally(String question, String generation, boolean grounded, double coverage) {
+        return grounded && coverage >= coverageThreshold
+                && LexicalSupport.novelTokens(question, generation) >= minAnswerTokens;
+    }
+
+    /**
+     * 记录本轮回答，预算还有余量时按原决策重试
+     */
+    private String retryOrExhausted(RequestBudget budget, String generation, boolean grounded, String decision) {
+        if (budget == null) {
+            return decision;
+        }
+        budget.offer(generation, grounded);
+        return budget.completeIteration() ? exhausted(budget) : decision;
+    }
+
+    private String exhausted(RequestBudget budget) {
+        log.info("---------- 决策：请求预算已耗尽（{}），以目前最好的回答结束 ----------", budget.exit());
+        return "exhausted";
+    }
+
+    private boolean gradeHallucination(String context, String generation,
+            Consumer<ChatClient.AdvisorSpec> advisors) {
         GradeScore hallucinationGradeScore = hallucinationGrader.prompt()
-                .user(u -> u.param("documents", formatDocs(documents))
+                .user(u -> u.param("documents", context)
                         .param("generation", generation))
+                .advisors(advisors)
                 .call()
                 .entity(GradeScore.class);
 
         assert hallucinationGradeScore != null;
-        if (!"yes".equals(hallucinationGradeScore.binaryScore())) {
-            log.info("---------- 决策：生成的回答不符合事实，需要重试 ----------");
-            return "hallucination";
-        }
+        return "yes".equals(hallucinationGradeScore.binaryScore());
+    }
 
-        log.info("---------- 决策：生成的回答符合事实 ----------");
+    private boolean gradeAnswer(String question, String generation, Consumer<ChatClient.AdvisorSpec> advisors) {
         GradeScore answerGradeScore = answerGrader.prompt()
                 .user(u -> u.param("question", question)
                         .param("generation", generation))
+                .advisors(advisors)
                 .call()
                 .entity(GradeScore.class);
 
         assert answerGradeScore != null;
-        if ("yes".equals(answerGradeScore.binaryScore())) {
-            log.info("---------- 决策：生成的回答回应了问题 ----------");
-            return "useful";
-        }
-
-        log.info("---------- 决策：生成的回答没有回应问题 ----------");
-        return "unuseful";
-    }
-
-    private String formatDocs(List<Document> documents) {
-        return documents.stream().map(Document::getText).collect(Collectors.joining("\n\n"));
+        return "yes".equals(answerGradeScore.binaryScore());
     }
 }
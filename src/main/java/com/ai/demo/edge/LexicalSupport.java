@@ -0,0 +1,51 @@
+package com.ai.demo.edge;
+
+import com.ai.demo.retrieval.ChineseTokenizer;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 基于词元重合度的本地评分预检，只用于提前判定明显通过的情况
+ * <p>词元为中文二元组与英文单词（见 {@link ChineseTokenizer}）。</p>
+ */
+final class LexicalSupport {
+
+    private LexicalSupport() {
+    }
+
+    /**
+     * @return 回答中的词元有多大比例出现在文档中，回答为空时为 0
+     */
+    static double support(String generation, List<String> documents) {
+        Set<String> documentTokens = new HashSet<>();
+        documents.forEach(document -> documentTokens.addAll(ChineseTokenizer.tokenize(document)));
+        return overlap(generation, documentTokens);
+    }
+
+    /**
+     * @return 问题中的词元有多大比例出现在回答中，问题为空时为 0
+     */
+    static double coverage(String question, String generation) {
+        return overlap(question, new HashSet<>(ChineseTokenizer.tokenize(generation)));
+    }
+
+    /**
+     * @return 回答中不属于问题的词元数，只复述问题的回答很少
+     */
+    static int novelTokens(String question, String generation) {
+        Set<String> questionTokens = new HashSet<>(ChineseTokenizer.tokenize(question));
+        return (int) new HashSet<>(ChineseTokenizer.tokenize(generation)).stream()
+                .filter(token -> !questionTokens.contains(token))
+                .count();
+    }
+
+    private static double overlap(String text, Set<String> reference) {
+        Set<String> tokens = new HashSet<>(ChineseTokenizer.tokenize(text));
+        if (tokens.isEmpty()) {
+            return 0;
+        }
+        return (double) tokens.stream().filter(reference::contains).count() / tokens.size();
+    }
+}
@@ -1,11 +1,17 @@
 package com.ai.demo.edge;
 
+import com.ai.demo.budget.BudgetRegistry;
+import com.ai.demo.budget.RequestBudget;
 import com.ai.demo.entity.RouteQueryEntity;
+import com.ai.demo.memory.Conversations;
+import com.ai.demo.routing.LocalQuestionRouter;
+import com.ai.demo.routing.RouteDecision;
 import com.alibaba.cloud.ai.graph.OverAllState;
 import com.alibaba.cloud.ai.graph.action.EdgeAction;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 @Component
@@ -14,20 +20,57 @@ public class RouteQuestionEdge implements EdgeAction {
 
     private final ChatClient questionRouterChatClient;
 
-    public RouteQuestionEdge(@Qualifier("QuestionRouterChatClient") ChatClient questionRouterChatClient) {
+    private final LocalQuestionRouter localQuestionRouter;
+
+    private final BudgetRegistry budgetRegistry;
+
+    private final boolean localRouting;
+
+    public RouteQuestionEdge(@Qualifier("QuestionRouterChatClient") ChatClient questionRouterChatClient,
+            LocalQuestionRouter localQuestionRouter, BudgetRegistry budgetRegistry,
+            @Value("${rag.router.mode:local}") String mode) {
         this.questionRouterChatClient = questionRouterChatClient;
+        this.localQuestionRouter = localQuestionRouter;
+        this.budgetRegistry = budgetRegistry;
+        this.localRouting = "local".equalsIgnoreCase(mode);
     }
 
     @Override
     public String apply(OverAllState state) {
         log.info("---------- 边：路由问题 ----------");
+        return decide(state).dataSource();
+    }
 
+    /**
+     * 先用本地相似度路由，只有落在不确定区间时才调用大模型
+     * @param state 图状态，大模型路由计入请求预算并使用请求的会话
+     * @return 路由决策，交给大模型路由时 confident 为 false
+     */
+    public RouteDecision decide(OverAllState state) {
         String question = state.value("question", String.class).orElse("");
+        if (!localRouting) {
+            return new RouteDecision(routeWithLlm(question, state), true, 0, 0, "llm");
+        }
+        long start = System.nanoTime();
+        RouteDecision decision = localQuestionRouter.route(question);
+        long elapsed = (System.nanoTime() - start) / 1_000_000;
+        if (!decision.isUncertain()) {
+            log.info("本地路由到: {}, 得分 {}, {}, {} ms", decision.dataSource(),
+                    "%.3f".formatted(decision.score()), decision.reason(), elapsed);
+            return decision;
+        }
+        log.info("本地路由不确定, 得分 {}, {}, {} ms, 交给大模型路由", "%.3f".formatted(decision.score()),
+                decision.reason(), elapsed);
+        return decision.withLlmDataSource(routeWithLlm(question, state));
+    }
 
+    private String routeWithLlm(String question, OverAllState state) {
         // 决定数据源
         RouteQueryEntity response = questionRouterChatClient.prompt()
                 .user(u -> u.param("question", question))
                 .system(s -> s.param("knowledge_base", "关于Spring AI Alibaba的相关知识"))
+                .advisors(RequestBudget.advise(budgetRegistry.of(state)))
+                .advisors(Conversations.advise(state))
                 .call()
                 .entity(RouteQueryEntity.class);
 
@@ -1,4 +1,19 @@
 package com.ai.demo.entity;
 
-public record GradeScore(String binaryScore) {
+import com.fasterxml.jackson.annotation.JsonPropertyDescription;
+
+/**
+ * 评分结果
+ * @param binaryScore 单项评分使用的二分类分数
+ * @param groundedScore 合并评分使用：回答是否基于检索到的事实
+ * @param answerScore 合并评分使用：回答是否回应了问题
+ */
+public record GradeScore(
+        @JsonPropertyDescription("单项评分的结果，'yes' 或 'no'") String binaryScore,
+        @JsonPropertyDescription("合并评分时填写：回答是否基于/支持给出的事实，'yes' 或 'no'") String groundedScore,
+        @JsonPropertyDescription("合并评分时填写：回答是否回应/解决了问题，'yes' 或 'no'") String answerScore) {
+
+    public GradeScore(String binaryScore) {
+        this(binaryScore, null, null);
+    }
 }
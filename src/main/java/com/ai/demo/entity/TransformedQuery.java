@@ -0,0 +1,4 @@
+package com.ai.demo.entity;
+
+public record TransformedQuery(String query) {
+}
@@ -0,0 +1,90 @@
+package com.ai.demo.execution;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 用信号量限制并发数
+ * <p>虚拟线程按任务创建，线程池大小不再起限流作用，并发上限由许可数决定。等待许可超时后拒绝执行，
+ * 避免下游变慢时无限堆积请求。</p>
+ */
+public class Bulkhead {
+
+    private final String name;
+
+    private final int permits;
+
+    private final Semaphore semaphore;
+
+    private final long timeoutNanos;
+
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * @param name 名称，用于日志与统计
+     * @param permits 最大并发数
+     * @param acquireTimeout 等待许可的最长时间
+     */
+    public Bulkhead(String name, int permits, Duration acquireTimeout) {
+        if (permits <= 0) {
+            throw new IllegalArgumentException("permits must be positive: " + permits);
+        }
+        this.name = name;
+        this.permits = permits;
+        this.semaphore = new Semaphore(permits);
+        this.timeoutNanos = acquireTimeout.toNanos();
+    }
+
+    public <T> T call(Callable<T> task) throws Exception {
+        acquire();
+        try {
+            return task.call();
+        } finally {
+            semaphore.release();
+        }
+    }
+
+    public <T> T get(Supplier<T> task) {
+        acquire();
+        try {
+            return task.get();
+        } finally {
+            semaphore.release();
+        }
+    }
+
+    private void acquire() {
+        try {
+            if (!semaphore.tryAcquire(timeoutNanos, TimeUnit.NANOSECONDS)) {
+                rejected.increment();
+                throw new RejectedExecutionException("Bulkhead " + name + " is full (" + permits + " permits)");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for bulkhead " + name, e);
+        }
+    }
+
+    public String name() {
+        return name;
+    }
+
+    /**
+     * @return 当前并发数与拒绝次数
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("permits", permits);
+        stats.put("inFlight", permits - semaphore.availablePermits());
+        stats.put("waiting", semaphore.getQueueLength());
+        stats.put("rejected", rejected.sum());
+        return stats;
+    }
+}
@@ -0,0 +1,80 @@
+package com.ai.demo.execution;
+
+import com.alibaba.cloud.ai.graph.action.AsyncNodeAction;
+import com.alibaba.cloud.ai.graph.action.NodeAction;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * 图节点的执行方式
+ * <p>开启虚拟线程（spring.threads.virtual.enabled）时，每个节点在命名执行器 graphExecutor 的虚拟线程上执行，
+ * 阻塞的大模型与 HTTP 调用不再占用平台线程；每个节点各有一个 {@link Bulkhead} 限制同时执行的请求数。
+ * 关闭时与 {@link AsyncNodeAction#node_async} 相同，在调用方线程上同步执行。</p>
+ */
+@Component
+@Slf4j
+public class GraphNodeExecutor {
+
+    private final boolean virtualThreads;
+
+    private final ExecutorService executor;
+
+    private final int nodePermits;
+
+    private final Duration acquireTimeout;
+
+    private final Map<String, Bulkhead> bulkheads = new ConcurrentHashMap<>();
+
+    /**
+     * @param virtualThreads 是否使用虚拟线程执行节点
+     * @param executor 节点执行器
+     * @param nodePermits 每个节点的最大并发数
+     * @param acquireTimeout 等待并发许可的最长时间
+     */
+    public GraphNodeExecutor(@Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+            @Qualifier("graphExecutor") ExecutorService executor,
+            @Value("${rag.execution.node-permits:1000}") int nodePermits,
+            @Value("${rag.execution.acquire-timeout:30s}") Duration acquireTimeout) {
+        this.virtualThreads = virtualThreads;
+        this.executor = executor;
+        this.nodePermits = nodePermits;
+        this.acquireTimeout = acquireTimeout;
+        log.info("Graph nodes run on {}", virtualThreads ? "virtual threads, " + nodePermits + " permits per node"
+                : "the calling thread");
+    }
+
+    public AsyncNodeAction async(String node, NodeAction action) {
+        if (!virtualThreads) {
+            return AsyncNodeAction.node_async(action);
+        }
+        Bulkhead bulkhead = bulkheads.computeIfAbsent(node, name -> new Bulkhead(name, nodePermits, acquireTimeout));
+        return state -> CompletableFuture.supplyAsync(() -> {
+            try {
+                return bulkhead.call(() -> action.apply(state));
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    /**
+     * @return 各节点的并发统计
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new TreeMap<>();
+        bulkheads.forEach((node, bulkhead) -> stats.put(node, bulkhead.stats()));
+        return stats;
+    }
+}
@@ -0,0 +1,295 @@
+package com.ai.demo.ingest;
+
+import com.ai.demo.vectorstore.LocalVectorStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.ContentFormatter;
+import org.springframework.ai.document.DefaultContentFormatter;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.document.MetadataMode;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.reader.markdown.MarkdownDocumentReader;
+import org.springframework.ai.reader.markdown.config.MarkdownDocumentReaderConfig;
+import org.springframework.ai.transformer.splitter.TextSplitter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.core.io.support.ResourcePatternResolver;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 流式增量入库流水线：读取 → 切分 → 批量向量化 → 写入向量库
+ * <p>读取线程逐个文件读取并切分，切好的片段凑满一批后交给向量化线程池；在途批次数受信号量限制，
+ * 向量化跟不上时读取线程阻塞（背压），堆内存占用与文档总量无关。</p>
+ * <p>每个片段的元数据中记录源文件与片段内容哈希，片段 id 由源文件与内容哈希决定。
+ * 重新入库时切分结果与向量库中已有的片段比对：只向量化新增或修改的片段，并删除已经不存在的片段与源文件。
+ * 每隔若干批保存一次快照，进程中断后再次调用只会补齐尚未写入的片段。</p>
+ * <p>不含源文件信息的文档（旧版 JSON 转换而来）无法与切分结果比对，入库成功后一并删除，由重新切分的片段取代。</p>
+ */
+@Component
+@Slf4j
+public class IngestionPipeline {
+
+    static final String SOURCE = "source";
+
+    static final String CONTENT_HASH = "content_hash";
+
+    /**
+     * 源文件路径与内容哈希只用于增量比对，不参与向量化，避免影响相似度
+     */
+    private static final ContentFormatter EMBED_FORMATTER = DefaultContentFormatter.builder()
+            .withExcludedEmbedMetadataKeys(SOURCE, CONTENT_HASH)
+            .build();
+
+    private final LocalVectorStore vectorStore;
+
+    private final EmbeddingModel embeddingModel;
+
+    private final TextSplitter textSplitter;
+
+    private final ResourcePatternResolver resourceResolver = new PathMatchingResourcePatternResolver();
+
+    private final String location;
+
+    private final int batchSize;
+
+    private final int concurrency;
+
+    private final int saveBatches;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private final IngestionProgress progress = new IngestionProgress();
+
+    public IngestionPipeline(LocalVectorStore vectorStore, EmbeddingModel embeddingModel, TextSplitter textSplitter,
+            @Value("${rag.ingest.location:classpath:documents/*.md}") String location,
+            @Value("${rag.ingest.batch-size:64}") int batchSize,
+            @Value("${rag.ingest.concurrency:4}") int concurrency,
+            @Value("${rag.ingest.save-batches:50}") int saveBatches) {
+        Assert.isTrue(batchSize > 0, "batchSize must be positive");
+        Assert.isTrue(concurrency > 0, "concurrency must be positive");
+        Assert.isTrue(saveBatches > 0, "saveBatches must be positive");
+        this.vectorStore = vectorStore;
+        this.embeddingModel = embeddingModel;
+        this.textSplitter = textSplitter;
+        this.location = location;
+        this.batchSize = batchSize;
+        this.concurrency = concurrency;
+        this.saveBatches = saveBatches;
+    }
+
+    public IngestionProgress progress() {
+        return progress;
+    }
+
+    /**
+     * 执行增量入库，同一时间只允许一次入库，重复调用直接返回当前进度
+     * @param snapshot 向量库快照文件，向量库为空且快照存在时先加载
+     * @return 入库进度
+     */
+    public Map<String, Object> run(File snapshot) {
+        if (!running.compareAndSet(false, true)) {
+            log.info("Ingestion already running: {}", progress);
+            return progress.toMap();
+        }
+        try {
+            if (vectorStore.size() == 0 && vectorStore.hasSnapshot(snapshot)) {
+                vectorStore.load(snapshot);
+            }
+            ingest(snapshot);
+            return progress.toMap();
+        } catch (IOException e) {
+            progress.fail(e);
+            throw new UncheckedIOException("Failed to ingest documents from " + location, e);
+        } catch (RuntimeException e) {
+            progress.fail(e);
+            throw e;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private void ingest(File snapshot) throws IOException {
+        Resource[] resources = resourceResolver.getResources(location);
+        String root = rootUri();
+        List<String> unsourced = new ArrayList<>();
+        Map<String, Set<String>> stored = storedSources(unsourced);
+        progress.start(resources.length);
+        log.info("Start ingesting {} files from {}, {} sources already indexed", resources.length, location,
+                stored.size());
+
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Semaphore inFlight = new Semaphore(concurrency * 2);
+        long submitted = 0;
+        boolean changed = false;
+        try (ExecutorService executor = Executors.newFixedThreadPool(concurrency,
+                new CustomizableThreadFactory("ingest-embed-"))) {
+            List<Document> batch = new ArrayList<>(batchSize);
+            for (Resource resource : resources) {
+                if (failure.get() != null) {
+                    break;
+                }
+                String source = sourceOf(resource, root);
+                Set<String> previousIds = stored.getOrDefault(source, Set.of());
+                stored.remove(source);
+                Set<String> currentIds = new HashSet<>();
+                for (Document chunk : split(resource, source)) {
+                    currentIds.add(chunk.getId());
+                    if (previousIds.contains(chunk.getId())) {
+                        // 内容未变的片段沿用已有向量
+                        progress.chunkSkipped();
+                        continue;
+                    }
+                    changed = true;
+                    batch.add(chunk);
+                    if (batch.size() == batchSize) {
+                        submit(executor, inFlight, batch, failure);
+                        batch = new ArrayList<>(batchSize);
+                        if (++submitted % saveBatches == 0) {
+                            vectorStore.save(snapshot);
+                        }
+                    }
+                }
+                List<String> vanished = previousIds.stream().filter(id -> !currentIds.contains(id)).toList();
+                if (!vanished.isEmpty()) {
+                    vectorStore.delete(vanished);
+                    progress.chunksDeleted(vanished.size());
+                    changed = true;
+                }
+                progress.fileDone();
+            }
+            if (!batch.isEmpty() && failure.get() == null) {
+                submit(executor, inFlight, batch, failure);
+            }
+        }
+
+        // 目录中已经不存在的源文件
+        if (failure.get() == null) {
+            for (Map.Entry<String, Set<String>> removed : stored.entrySet()) {
+                log.info("Source {} removed, deleting {} chunks", removed.getKey(), removed.getValue().size());
+                vectorStore.delete(List.copyOf(removed.getValue()));
+                progress.chunksDeleted(removed.getValue().size());
+                changed = true;
+            }
+            if (!unsourced.isEmpty()) {
+                log.info("Deleting {} legacy chunks without source metadata", unsourced.size());
+                vectorStore.delete(unsourced);
+                progress.chunksDeleted(unsourced.size());
+                changed = true;
+            }
+        }
+        if (changed || !vectorStore.hasSnapshot(snapshot)) {
+            // 失败时也保存已写入的部分，下次调用只补齐剩余片段
+            vectorStore.save(snapshot);
+        }
+        if (failure.get() != null) {
+            throw new IllegalStateException("Ingestion failed, progress saved for resume: " + progress,
+                    failure.get());
+        }
+        progress.complete();
+        log.info("Ingestion completed: {}, {} ms", progress, progress.toMap().get("elapsedMillis"));
+    }
+
+    private void submit(ExecutorService executor, Semaphore inFlight, List<Document> batch,
+            AtomicReference<Throwable> failure) {
+        inFlight.acquireUninterruptibly();
+        executor.execute(() -> {
+            try {
+                if (failure.get() != null) {
+                    return;
+                }
+                List<float[]> embeddings = embeddingModel.embed(batch.stream()
+                        .map(document -> document.getFormattedContent(MetadataMode.EMBED))
+                        .toList());
+                vectorStore.add(batch, embeddings);
+                progress.batchDone(batch.size());
+                log.info("Ingested batch of {} chunks, {}", batch.size(), progress);
+            } catch (Throwable e) {
+                failure.compareAndSet(null, e);
+                log.error("Failed to ingest batch of {} chunks", batch.size(), e);
+            } finally {
+                inFlight.release();
+            }
+        });
+    }
+
+    /**
+     * 从向量库元数据中汇总每个源文件已有的片段 id
+     * @param unsourced 收集不含源文件信息的文档 id（如旧版导入的数据），这些文档不参与比对
+     */
+    private Map<String, Set<String>> storedSources(List<String> unsourced) {
+        Map<String, Set<String>> sources = new HashMap<>();
+        vectorStore.forEachDocument(document -> {
+            Object source = document.getMetadata().get(SOURCE);
+            if (source != null) {
+                sources.computeIfAbsent(source.toString(), key -> new HashSet<>()).add(document.getId());
+            } else {
+                unsourced.add(document.getId());
+            }
+        });
+        return sources;
+    }
+
+    private List<Document> split(Resource resource, String source) {
+        String title = source.replaceFirst("\\.md$", "");
+        MarkdownDocumentReader reader = new MarkdownDocumentReader(resource, MarkdownDocumentReaderConfig.builder()
+                .withAdditionalMetadata("title", title)
+                .build());
+        List<Document> chunks = textSplitter.apply(reader.get());
+        List<Document> result = new ArrayList<>(chunks.size());
+        Map<String, Integer> occurrences = new HashMap<>();
+        for (Document chunk : chunks) {
+            String contentHash = ContentHash.of(chunk.getText());
+            // 同一文件内完全相同的片段用出现次序区分
+            int occurrence = occurrences.merge(contentHash, 1, Integer::sum);
+            Map<String, Object> metadata = new HashMap<>(chunk.getMetadata());
+            metadata.put(SOURCE, source);
+            metadata.put(CONTENT_HASH, contentHash);
+            Document document = Document.builder()
+                    .id(UUID.nameUUIDFromBytes((source + "#" + contentHash + "#" + occurrence)
+                            .getBytes(StandardCharsets.UTF_8)).toString())
+                    .text(chunk.getText())
+                    .metadata(metadata)
+                    .build();
+            document.setContentFormatter(EMBED_FORMATTER);
+            result.add(document);
+        }
+        return result;
+    }
+
+    /**
+     * 通配符之前的目录，用于计算源文件的相对路径
+     */
+    private String rootUri() throws IOException {
+        int wildcard = location.indexOf('*');
+        String root = wildcard < 0 ? location : location.substring(0, location.lastIndexOf('/', wildcard) + 1);
+        return resourceResolver.getResource(root).getURI().toString();
+    }
+
+    private static String sourceOf(Resource resource, String root) {
+        try {
+            String uri = resource.getURI().toString();
+            return uri.startsWith(root) ? uri.substring(root.length()) : resource.getFilename();
+        } catch (IOException e) {
+            return resource.getFilename();
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.ai.demo.ingest;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 入库进度，供日志与 /graph/add/progress 查询，各计数器可被多个线程并发更新
+ */
+public class IngestionProgress {
+
+    public enum Status {
+        IDLE, RUNNING, COMPLETED, FAILED
+    }
+
+    private volatile Status status = Status.IDLE;
+
+    private volatile String error;
+
+    private volatile long startNanos;
+
+    private volatile long endNanos;
+
+    private final AtomicInteger filesTotal = new AtomicInteger();
+
+    private final AtomicInteger filesDone = new AtomicInteger();
+
+    private final AtomicLong chunks = new AtomicLong();
+
+    private final AtomicLong chunksSkipped = new AtomicLong();
+
+    private final AtomicLong chunksDeleted = new AtomicLong();
+
+    private final AtomicLong batches = new AtomicLong();
+
+    void start(int filesTotal) {
+        this.status = Status.RUNNING;
+        this.error = null;
+        this.startNanos = System.nanoTime();
+        this.endNanos = 0;
+        this.filesTotal.set(filesTotal);
+        this.filesDone.set(0);
+        this.chunks.set(0);
+        this.chunksSkipped.set(0);
+        this.chunksDeleted.set(0);
+        this.batches.set(0);
+    }
+
+    void fileDone() {
+        filesDone.incrementAndGet();
+    }
+
+    void chunkSkipped() {
+        chunksSkipped.incrementAndGet();
+    }
+
+    void chunksDeleted(int count) {
+        chunksDeleted.addAndGet(count);
+    }
+
+    void batchDone(int chunkCount) {
+        chunks.addAndGet(chunkCount);
+        batches.incrementAndGet();
+    }
+
+    void complete() {
+        status = Status.COMPLETED;
+        endNanos = System.nanoTime();
+    }
+
+    void fail(Throwable e) {
+        status = Status.FAILED;
+        error = e.getMessage();
+        endNanos = System.nanoTime();
+    }
+
+    public Status status() {
+        return status;
+    }
+
+    public Map<String, Object> toMap() {
+        long elapsedNanos = status == Status.IDLE ? 0 : (endNanos != 0 ? endNanos : System.nanoTime()) - startNanos;
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("status", status);
+        map.put("filesTotal", filesTotal.get());
+        map.put("filesDone", filesDone.get());
+        map.put("chunks", chunks.get());
+        map.put("chunksSkipped", chunksSkipped.get());
+        map.put("chunksDeleted", chunksDeleted.get());
+        map.put("batches", batches.get());
+        map.put("elapsedMillis", elapsedNanos / 1_000_000);
+        if (error != null) {
+            map.put("error", error);
+        }
+        return map;
+    }
+
+    @Override
+    public String toString() {
+        return "files " + filesDone.get() + "/" + filesTotal.get() + ", chunks embedded " + chunks.get()
+                + ", unchanged " + chunksSkipped.get() + ", deleted " + chunksDeleted.get() + ", batches " + batches.get();
+    }
+}
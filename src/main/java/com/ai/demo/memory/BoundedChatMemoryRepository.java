@@ -0,0 +1,334 @@
+package com.ai.demo.memory;
+
+import com.ai.demo.ingest.ContentHash;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.memory.ChatMemoryRepository;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * 有界的 ChatMemoryRepository：限制会话数与估算字节数，闲置会话过期
+ * <ul>
+ *     <li>按估算字节数加权，由 Caffeine 的 W-TinyLFU 淘汰，偶尔出现的会话不会挤掉活跃会话</li>
+ *     <li>超过最大会话数时淘汰最冷的会话</li>
+ *     <li>闲置超过 idleTtl 的会话过期</li>
+ *     <li>配置了溢出目录时，被淘汰或过期的会话写入磁盘，会话再次出现时按需读回；磁盘上超过保留期的会话被删除</li>
+ * </ul>
+ * <p>只保存用户、助手与系统消息的文本，与 MessageChatMemoryAdvisor 写入的内容一致。</p>
+ * <p>作为 {@link MeterBinder} 由 Spring Boot 注册 Micrometer 指标：rag.memory.sessions、rag.memory.bytes 两个 gauge，
+ * 以及 rag.memory.evictions、expirations、spills、reloads 四个累计计数。</p>
+ */
+@Slf4j
+public class BoundedChatMemoryRepository implements ChatMemoryRepository, MeterBinder {
+
+    /**
+     * 每个会话与每条消息的固定开销估算，包括对象头、列表与元数据
+     */
+    private static final int SESSION_OVERHEAD = 128;
+
+    private static final int MESSAGE_OVERHEAD = 96;
+
+    /**
+     * 每溢出多少个会话清理一次磁盘
+     */
+    private static final int PURGE_INTERVAL = 256;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final Cache<String, List<Message>> sessions;
+
+    private final int maxSessions;
+
+    private final Path spillDirectory;
+
+    private final Duration spillTtl;
+
+    private final LongAdder evictions = new LongAdder();
+
+    private final LongAdder expirations = new LongAdder();
+
+    private final LongAdder spills = new LongAdder();
+
+    private final LongAdder reloads = new LongAdder();
+
+    /**
+     * @param maxSessions 内存中的最大会话数
+     * @param maxBytes 内存中会话的估算总字节数上限
+     * @param idleTtl 会话闲置多久后过期
+     * @param spillDirectory 溢出目录，为 null 时被淘汰的会话直接丢弃
+     * @param spillTtl 溢出到磁盘的会话保留多久
+     */
+    public BoundedChatMemoryRepository(int maxSessions, long maxBytes, Duration idleTtl, Path spillDirectory,
+            Duration spillTtl) {
+        if (maxSessions <= 0 || maxBytes <= 0) {
+            throw new IllegalArgumentException("maxSessions and maxBytes must be positive");
+        }
+        this.maxSessions = maxSessions;
+        this.spillDirectory = spillDirectory;
+        this.spillTtl = spillTtl;
+        this.sessions = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher(BoundedChatMemoryRepository::weigh)
+                .expireAfterAccess(idleTtl)
+                // 在淘汰的原子操作内同步写盘，会话被读回前一定已经落盘
+                .evictionListener((String conversationId, List<Message> messages, RemovalCause cause) -> {
+                    if (cause == RemovalCause.EXPIRED) {
+                        expirations.increment();
+                    } else {
+                        evictions.increment();
+                    }
+                    if (conversationId != null && messages != null) {
+                        spill(conversationId, messages);
+                    }
+                })
+                .build();
+        if (spillDirectory != null) {
+            try {
+                Files.createDirectories(spillDirectory);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to create chat memory spill directory " + spillDirectory, e);
+            }
+            purgeSpilled();
+        }
+    }
+
+    @Override
+    public List<String> findConversationIds() {
+        Set<String> ids = new LinkedHashSet<>(sessions.asMap().keySet());
+        if (spillDirectory != null) {
+            try (Stream<Path> files = Files.list(spillDirectory)) {
+                files.filter(file -> file.toString().endsWith(".json"))
+                        .map(this::readSpilled)
+                        .filter(Objects::nonNull)
+                        .forEach(spilled -> ids.add(spilled.conversationId()));
+            } catch (IOException e) {
+                log.warn("Failed to list chat memory spill directory {}: {}", spillDirectory, e.getMessage());
+            }
+        }
+        return new ArrayList<>(ids);
+    }
+
+    @Override
+    public List<Message> findByConversationId(String conversationId) {
+        if (spillDirectory == null) {
+            List<Message> messages = sessions.getIfPresent(conversationId);
+            return messages != null ? messages : List.of();
+        }
+        List<Message> messages = sessions.get(conversationId, this::reload);
+        if (messages == null) {
+            return List.of();
+        }
+        // 读回的会话同样计入会话数上限
+        enforceSessionLimit();
+        return messages;
+    }
+
+    @Override
+    public void saveAll(String conversationId, List<Message> messages) {
+        sessions.put(conversationId, List.copyOf(messages));
+        enforceSessionLimit();
+    }
+
+    @Override
+    public void deleteByConversationId(String conversationId) {
+        sessions.invalidate(conversationId);
+        if (spillDirectory != null) {
+            try {
+                Files.deleteIfExists(spillFile(conversationId));
+            } catch (IOException e) {
+                log.warn("Failed to delete spilled conversation {}: {}", conversationId, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * @return 常驻会话数、估算字节数与淘汰、溢出统计
+     */
+    public Map<String, Object> stats() {
+        sessions.cleanUp();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("residentSessions", sessions.estimatedSize());
+        stats.put("residentBytes", residentBytes());
+        stats.put("maxSessions", maxSessions);
+        stats.put("evictions", evictions.sum());
+        stats.put("expirations", expirations.sum());
+        stats.put("spills", spills.sum());
+        stats.put("reloads", reloads.sum());
+        return stats;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("rag.memory.sessions", sessions, Cache::estimatedSize)
+                .description("Conversations resident in memory")
+                .register(registry);
+        Gauge.builder("rag.memory.bytes", this, BoundedChatMemoryRepository::residentBytes)
+                .description("Estimated size of the conversations resident in memory")
+                .baseUnit("bytes")
+                .register(registry);
+        counter(registry, "rag.memory.evictions", evictions, "Conversations evicted by the size limits");
+        counter(registry, "rag.memory.expirations", expirations, "Conversations expired after idling");
+        counter(registry, "rag.memory.spills", spills, "Conversations spilled to disk");
+        counter(registry, "rag.memory.reloads", reloads, "Conversations reloaded from disk");
+    }
+
+    private static void counter(MeterRegistry registry, String name, LongAdder adder, String description) {
+        FunctionCounter.builder(name, adder, LongAdder::sum).description(description).register(registry);
+    }
+
+    private long residentBytes() {
+        return sessions.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0)).orElse(0L);
+    }
+
+    /**
+     * 字节数上限由 Caffeine 负责，会话数上限在写入后检查，超出时淘汰最冷的会话
+     */
+    private void enforceSessionLimit() {
+        long excess = sessions.estimatedSize() - maxSessions;
+        if (excess <= 0) {
+            return;
+        }
+        sessions.policy().eviction().ifPresent(eviction -> eviction.coldest((int) Math.min(excess, Integer.MAX_VALUE))
+                .forEach((conversationId, messages) -> {
+                    // 只在会话未被并发更新时移除
+                    if (sessions.asMap().remove(conversationId, messages)) {
+                        evictions.increment();
+                        spill(conversationId, messages);
+                    }
+                }));
+    }
+
+    /**
+     * 估算会话占用的堆内存：字符按 2 字节计，加上固定开销
+     */
+    static int weigh(String conversationId, List<Message> messages) {
+        long bytes = SESSION_OVERHEAD + 2L * conversationId.length();
+        for (Message message : messages) {
+            String text = message.getText();
+            bytes += MESSAGE_OVERHEAD + (text == null ? 0 : 2L * text.length());
+        }
+        return (int) Math.min(bytes, Integer.MAX_VALUE);
+    }
+
+    private void spill(String conversationId, List<Message> messages) {
+        if (spillDirectory == null) {
+            return;
+        }
+        List<SpilledMessage> spilledMessages = messages.stream()
+                .filter(message -> message.getMessageType() != MessageType.TOOL)
+                .map(message -> new SpilledMessage(message.getMessageType(), message.getText()))
+                .toList();
+        Path file = spillFile(conversationId);
+        try {
+            // 先写临时文件再替换，读回时不会读到写了一半的文件
+            Path temp = Files.createTempFile(spillDirectory, "spill", ".tmp");
+            objectMapper.writeValue(temp.toFile(), new SpilledConversation(conversationId, spilledMessages));
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            spills.increment();
+        } catch (IOException e) {
+            log.warn("Failed to spill conversation {} to {}: {}", conversationId, file, e.getMessage());
+            return;
+        }
+        if (spills.sum() % PURGE_INTERVAL == 0) {
+            purgeSpilled();
+        }
+    }
+
+    /**
+     * 会话不在内存中时从磁盘读回，读回后删除磁盘文件
+     * @return 读回的消息，磁盘上没有时为 null
+     */
+    private List<Message> reload(String conversationId) {
+        Path file = spillFile(conversationId);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        SpilledConversation spilled = readSpilled(file);
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Failed to delete spilled conversation {}: {}", file, e.getMessage());
+        }
+        if (spilled == null || !conversationId.equals(spilled.conversationId())) {
+            return null;
+        }
+        reloads.increment();
+        return spilled.messages().stream().map(BoundedChatMemoryRepository::toMessage).toList();
+    }
+
+    private SpilledConversation readSpilled(Path file) {
+        try {
+            return objectMapper.readValue(file.toFile(), SpilledConversation.class);
+        } catch (IOException e) {
+            log.warn("Failed to read spilled conversation {}: {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 删除超过保留期的溢出文件
+     */
+    private void purgeSpilled() {
+        FileTime cutoff = FileTime.from(Instant.now().minus(spillTtl));
+        try (Stream<Path> files = Files.list(spillDirectory)) {
+            files.forEach(file -> {
+                try {
+                    if (Files.getLastModifiedTime(file).compareTo(cutoff) < 0) {
+                        Files.deleteIfExists(file);
+                    }
+                } catch (IOException e) {
+                    log.debug("Failed to purge spilled conversation {}: {}", file, e.getMessage());
+                }
+            });
+        } catch (IOException e) {
+            log.warn("Failed to purge chat memory spill directory {}: {}", spillDirectory, e.getMessage());
+        }
+    }
+
+    private Path spillFile(String conversationId) {
+        return spillDirectory.resolve(ContentHash.of(conversationId) + ".json");
+    }
+
+    private static Message toMessage(SpilledMessage message) {
+        return switch (message.type()) {
+            case ASSISTANT -> new AssistantMessage(message.text());
+            case SYSTEM -> new SystemMessage(message.text());
+            default -> new UserMessage(message.text());
+        };
+    }
+
+    record SpilledMessage(MessageType type, String text) {
+    }
+
+    record SpilledConversation(String conversationId, List<SpilledMessage> messages) {
+    }
+}
@@ -0,0 +1,57 @@
+package com.ai.demo.memory;
+
+import org.springframework.ai.chat.client.ChatClientRequest;
+import org.springframework.ai.chat.client.ChatClientResponse;
+import org.springframework.ai.chat.client.advisor.api.Advisor;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisor;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisorChain;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisor;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisorChain;
+import org.springframework.ai.chat.memory.ChatMemory;
+import reactor.core.publisher.Flux;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 为会话 id 加上 ChatClient 用途前缀，如 {@code QuestionRouter:<conversationId>}
+ * <p>同一会话在路由、生成、评分等 ChatClient 中各有独立的记忆窗口，不同会话之间互不可见。
+ * 必须排在记忆 advisor 之前。</p>
+ */
+public class ConversationScopeAdvisor implements CallAdvisor, StreamAdvisor {
+
+    private final String scope;
+
+    public ConversationScopeAdvisor(String scope) {
+        this.scope = scope;
+    }
+
+    @Override
+    public ChatClientResponse adviseCall(ChatClientRequest chatClientRequest, CallAdvisorChain callAdvisorChain) {
+        return callAdvisorChain.nextCall(scoped(chatClientRequest));
+    }
+
+    @Override
+    public Flux<ChatClientResponse> adviseStream(ChatClientRequest chatClientRequest,
+            StreamAdvisorChain streamAdvisorChain) {
+        return streamAdvisorChain.nextStream(scoped(chatClientRequest));
+    }
+
+    private ChatClientRequest scoped(ChatClientRequest request) {
+        Object conversationId = request.context()
+                .getOrDefault(ChatMemory.CONVERSATION_ID, ChatMemory.DEFAULT_CONVERSATION_ID);
+        Map<String, Object> context = new HashMap<>(request.context());
+        context.put(ChatMemory.CONVERSATION_ID, scope + ":" + conversationId);
+        return request.mutate().context(context).build();
+    }
+
+    @Override
+    public String getName() {
+        return "ConversationScopeAdvisor";
+    }
+
+    @Override
+    public int getOrder() {
+        return Advisor.DEFAULT_CHAT_MEMORY_PRECEDENCE_ORDER - 1;
+    }
+}
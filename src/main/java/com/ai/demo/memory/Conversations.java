@@ -0,0 +1,81 @@
+package com.ai.demo.memory;
+
+import com.alibaba.cloud.ai.graph.OverAllState;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.memory.ChatMemoryRepository;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import org.springframework.util.StringUtils;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * 在图状态与 advisor 之间传递会话 id
+ * <p>控制器把请求参数 conversationId 写入状态键 {@value #STATE_KEY}，节点与边调用 ChatClient 时通过
+ * {@link #advise} 作为 {@link ChatMemory#CONVERSATION_ID} 传给 advisor，
+ * 再由 {@link ConversationScopeAdvisor} 按 ChatClient 的用途加上前缀。</p>
+ */
+public final class Conversations {
+
+    public static final String STATE_KEY = "conversation_id";
+
+    /**
+     * 检索增强生成节点的记忆作用域
+     */
+    public static final String RETRIEVAL_GENERATION_SCOPE = "PrebuiltSpringRAG";
+
+    /**
+     * 网络搜索与重写问题之后生成节点的记忆作用域
+     */
+    public static final String GENERATION_SCOPE = "AdaptiveRag";
+
+    private Conversations() {
+    }
+
+    /**
+     * @return 状态中的会话 id，没有时为 {@link ChatMemory#DEFAULT_CONVERSATION_ID}
+     */
+    public static String of(OverAllState state) {
+        return state.value(STATE_KEY, ChatMemory.DEFAULT_CONVERSATION_ID);
+    }
+
+    /**
+     * 请求没有携带会话 id 时生成新的 id，匿名请求之间不共享记忆窗口，也不会因为别人的上文绕过语义缓存
+     * @param requested 请求参数中的会话 id，可以为空
+     * @return 请求的会话 id，为空时返回随机生成的 id
+     */
+    public static String idOrNew(String requested) {
+        return StringUtils.hasText(requested) ? requested : UUID.randomUUID().toString();
+    }
+
+    /**
+     * 每轮问答都会写入两个生成作用域之一，任一作用域有记录即说明会话已有上文
+     * @return 会话是否已有问答记录，有记录时回答可能依赖上文
+     */
+    public static boolean hasHistory(ChatMemoryRepository repository, String conversationId) {
+        return List.of(RETRIEVAL_GENERATION_SCOPE, GENERATION_SCOPE).stream()
+                .anyMatch(scope -> !repository.findByConversationId(scope + ":" + conversationId).isEmpty());
+    }
+
+    /**
+     * 未执行图就得到回答时（如命中语义缓存）把这一轮问答写入两个生成作用域，后续追问仍能看到上文
+     * @param chatMemory 各 ChatClient 共用的记忆
+     * @param question 用户问题
+     * @param answer 回答
+     */
+    public static void remember(ChatMemory chatMemory, String conversationId, String question, String answer) {
+        for (String scope : List.of(RETRIEVAL_GENERATION_SCOPE, GENERATION_SCOPE)) {
+            chatMemory.add(scope + ":" + conversationId,
+                    List.of(new UserMessage(question), new AssistantMessage(answer)));
+        }
+    }
+
+    public static Consumer<ChatClient.AdvisorSpec> advise(OverAllState state) {
+        String conversationId = of(state);
+        return advisors -> advisors.param(ChatMemory.CONVERSATION_ID, conversationId);
+    }
+}
@@ -0,0 +1,74 @@
+package com.ai.demo.memory;
+
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.messages.Message;
+
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * 按会话 id 分段加锁的 ChatMemory
+ * <p>消息窗口的写入是“读出历史、追加、截断、写回”，同一会话的并发请求交错执行会丢失消息。
+ * 会话 id 按哈希映射到固定数量的锁上：同一会话串行，不同会话大多落在不同的锁上，互不等待；
+ * 存储本身使用并发的 ChatMemoryRepository。</p>
+ */
+public class StripedChatMemory implements ChatMemory {
+
+    private final ChatMemory delegate;
+
+    private final ReentrantLock[] stripes;
+
+    /**
+     * @param delegate 实际的记忆实现
+     * @param stripes 锁的数量，向上取整为 2 的幂
+     */
+    public StripedChatMemory(ChatMemory delegate, int stripes) {
+        if (stripes <= 0) {
+            throw new IllegalArgumentException("stripes must be positive: " + stripes);
+        }
+        this.delegate = delegate;
+        this.stripes = new ReentrantLock[stripes == 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1];
+        for (int i = 0; i < this.stripes.length; i++) {
+            this.stripes[i] = new ReentrantLock();
+        }
+    }
+
+    @Override
+    public void add(String conversationId, List<Message> messages) {
+        locked(conversationId, () -> {
+            delegate.add(conversationId, messages);
+            return null;
+        });
+    }
+
+    @Override
+    public List<Message> get(String conversationId) {
+        return locked(conversationId, () -> delegate.get(conversationId));
+    }
+
+    @Override
+    public void clear(String conversationId) {
+        locked(conversationId, () -> {
+            delegate.clear(conversationId);
+            return null;
+        });
+    }
+
+    private <T> T locked(String conversationId, Supplier<T> action) {
+        ReentrantLock lock = stripeOf(conversationId);
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    ReentrantLock stripeOf(String conversationId) {
+        int hash = conversationId.hashCode();
+        // 高位扰动，避免相近的 id 落在同一把锁上
+        hash ^= hash >>> 16;
+        return stripes[hash & (stripes.length - 1)];
+    }
+}
@@ -0,0 +1,128 @@
+package com.ai.demo.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.ai.chat.client.ChatClientRequest;
+import org.springframework.ai.chat.client.ChatClientResponse;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisor;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisorChain;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisor;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisorChain;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.core.Ordered;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.SignalType;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 按 ChatClient 记录大模型调用的耗时与 token 数
+ * <ul>
+ *     <li>rag.llm.calls：调用耗时，标签 client、outcome（success / error，流式调用另有 cancelled）</li>
+ *     <li>rag.llm.tokens：每次调用的 token 数，标签 client、type（prompt / completion）</li>
+ * </ul>
+ * <p>排在 advisor 链的最内层，只计模型本身的耗时，不含检索增强、记忆等 advisor 的耗时；
+ * 被请求预算拒绝的调用不会到达这里。流式调用取最后一段响应中的用量，模型不在流式响应中返回用量时不记录 token 数。</p>
+ */
+public class ChatClientMetricsAdvisor implements CallAdvisor, StreamAdvisor {
+
+    private final String client;
+
+    private final MeterRegistry registry;
+
+    /**
+     * @param client ChatClient 名称，作为 client 标签
+     * @param registry 指标注册表
+     */
+    public ChatClientMetricsAdvisor(String client, MeterRegistry registry) {
+        this.client = client;
+        this.registry = registry;
+    }
+
+    @Override
+    public ChatClientResponse adviseCall(ChatClientRequest chatClientRequest, CallAdvisorChain callAdvisorChain) {
+        Timer.Sample sample = Timer.start(registry);
+        String outcome = "error";
+        try {
+            ChatClientResponse response = callAdvisorChain.nextCall(chatClientRequest);
+            outcome = "success";
+            recordTokens(response);
+            return response;
+        } finally {
+            sample.stop(timer(outcome));
+        }
+    }
+
+    @Override
+    public Flux<ChatClientResponse> adviseStream(ChatClientRequest chatClientRequest,
+            StreamAdvisorChain streamAdvisorChain) {
+        return Flux.defer(() -> {
+            Timer.Sample sample = Timer.start(registry);
+            AtomicReference<ChatClientResponse> last = new AtomicReference<>();
+            return streamAdvisorChain.nextStream(chatClientRequest)
+                    .doOnNext(last::set)
+                    .doFinally(signal -> {
+                        // 客户端断开导致的取消记为 cancelled
+                        sample.stop(timer(switch (signal) {
+                            case ON_ERROR -> "error";
+                            case CANCEL -> "cancelled";
+                            default -> "success";
+                        }));
+                        if (signal == SignalType.ON_COMPLETE && last.get() != null) {
+                            recordTokens(last.get());
+                        }
+                    });
+        });
+    }
+
+    private void recordTokens(ChatClientResponse response) {
+        Usage usage = response.chatResponse() == null ? null : usage(response.chatResponse());
+        if (usage == null) {
+            return;
+        }
+        if (usage.getPromptTokens() != null) {
+            tokens("prompt").record(usage.getPromptTokens());
+        }
+        if (usage.getCompletionTokens() != null) {
+            tokens("completion").record(usage.getCompletionTokens());
+        }
+    }
+
+    private static Usage usage(ChatResponse chatResponse) {
+        ChatResponseMetadata metadata = chatResponse.getMetadata();
+        return metadata == null ? null : metadata.getUsage();
+    }
+
+    private Timer timer(String outcome) {
+        return Timer.builder("rag.llm.calls")
+                .tag("client", client)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    private DistributionSummary tokens(String type) {
+        return DistributionSummary.builder("rag.llm.tokens")
+                .baseUnit("tokens")
+                .tag("client", client)
+                .tag("type", type)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    @Override
+    public String getName() {
+        return "ChatClientMetricsAdvisor";
+    }
+
+    /**
+     * 紧挨着实际调用模型的 advisor
+     */
+    @Override
+    public int getOrder() {
+        return Ordered.LOWEST_PRECEDENCE - 1;
+    }
+}
@@ -0,0 +1,93 @@
+package com.ai.demo.metrics;
+
+import com.ai.demo.budget.RequestBudget;
+import com.alibaba.cloud.ai.graph.action.EdgeAction;
+import com.alibaba.cloud.ai.graph.action.NodeAction;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * 图执行的 Micrometer 指标
+ * <ul>
+ *     <li>rag.graph.node：每个节点的耗时，标签 node、outcome（success / error）</li>
+ *     <li>rag.graph.edge：每条条件边的耗时，标签 edge、outcome</li>
+ *     <li>rag.graph.edge.decisions：条件边的决策次数，标签 edge、decision，即路由结果与评分结果</li>
+ *     <li>rag.request.iterations / llm.calls / tokens：每次请求的自我纠正轮数、大模型调用次数与 token 数，
+ *     标签 outcome（completed / exhausted）</li>
+ * </ul>
+ * <p>大模型调用的耗时与 token 数见 {@link ChatClientMetricsAdvisor}。</p>
+ */
+@Component
+public class GraphMetrics {
+
+    private final MeterRegistry registry;
+
+    public GraphMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * @return 记录耗时的节点
+     */
+    public NodeAction node(String node, NodeAction action) {
+        return state -> {
+            Timer.Sample sample = Timer.start(registry);
+            String outcome = "error";
+            try {
+                Map<String, Object> result = action.apply(state);
+                outcome = "success";
+                return result;
+            } finally {
+                sample.stop(timer("rag.graph.node", "node", node, outcome));
+            }
+        };
+    }
+
+    /**
+     * @return 记录耗时与决策的条件边
+     */
+    public EdgeAction edge(String edge, EdgeAction action) {
+        return state -> {
+            Timer.Sample sample = Timer.start(registry);
+            String outcome = "error";
+            try {
+                String decision = action.apply(state);
+                outcome = "success";
+                registry.counter("rag.graph.edge.decisions", "edge", edge, "decision", decision).increment();
+                return decision;
+            } finally {
+                sample.stop(timer("rag.graph.edge", "edge", edge, outcome));
+            }
+        };
+    }
+
+    /**
+     * 请求结束时记录预算的使用情况
+     */
+    public void recordRequest(RequestBudget budget) {
+        String outcome = budget.exitReason() == null ? "completed" : "exhausted";
+        summary("rag.request.iterations", "iterations", outcome).record(budget.iterations());
+        summary("rag.request.llm.calls", "calls", outcome).record(budget.llmCalls());
+        summary("rag.request.tokens", "tokens", outcome).record(budget.tokens());
+    }
+
+    private Timer timer(String name, String key, String value, String outcome) {
+        return Timer.builder(name)
+                .tag(key, value)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    private DistributionSummary summary(String name, String unit, String outcome) {
+        return DistributionSummary.builder(name)
+                .baseUnit(unit)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+}
@@ -1,37 +1,62 @@
 package com.ai.demo.node;
 
+import com.ai.demo.budget.BudgetRegistry;
+import com.ai.demo.budget.RequestBudget;
+import com.ai.demo.context.ContextPacker;
+import com.ai.demo.memory.Conversations;
+import com.ai.demo.stream.GraphEventRegistry;
+import com.ai.demo.stream.StreamingChat;
 import com.alibaba.cloud.ai.graph.OverAllState;
 import com.alibaba.cloud.ai.graph.action.NodeAction;
 import lombok.Builder;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.messages.AbstractMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
 import org.springframework.ai.document.Document;
 
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.Optional;
 
 @Builder
+@Slf4j
 public class GenerationNode implements NodeAction {
 
     private final ChatClient chatClient;
 
+    private final BudgetRegistry budgetRegistry;
+
+    private final GraphEventRegistry graphEventRegistry;
+
+    private final ContextPacker contextPacker;
+
     @Override
     public Map<String, Object> apply(OverAllState state) {
+        RequestBudget budget = budgetRegistry.of(state);
+        if (budget != null && budget.isExhausted()) {
+            // 预算耗尽，保留已有的回答，由评分边结束执行
+            log.info("预算已耗尽（{}），跳过生成", budget.exhaustedReason());
+            return Map.of();
+        }
         String query = state.value("question", "");
         List<Document> documents = state.value("documents", List.of());
+        // 按 token 预算打包上下文，重试时问题与文档不变则复用
+        ContextPacker.PackedContext context = contextPacker.of(state, query, documents);
 
-        String generation = chatClient.prompt()
+        // 流式请求逐段推送 token
+        ChatResponse response = StreamingChat.chatResponse(chatClient.prompt()
                 .user(u -> u.param("question", query)
-                        .param("context", documents
-                                .stream()
-                                .map(Document::getText)
-                                .collect(Collectors.joining("\n\n"))))
-                .call()
-                .content();
+                        .param("context", context.text()))
+                .advisors(RequestBudget.advise(budget))
+                .advisors(Conversations.advise(state)), graphEventRegistry.of(state));
+        String generation = Optional.ofNullable(response).map(ChatResponse::getResult).map(Generation::getOutput)
+                .map(AbstractMessage::getText).orElse("");
 
         // 更新状态
-        HashMap<String, Object> resultMap = new HashMap<>();
+        HashMap<String, Object> resultMap = new HashMap<>(context.toState());
         resultMap.put("generation", generation);
 
         return resultMap;
@@ -1,13 +1,19 @@
 package com.ai.demo.node;
 
+import com.ai.demo.budget.BudgetRegistry;
+import com.ai.demo.budget.RequestBudget;
+import com.ai.demo.context.ContextPacker;
+import com.ai.demo.memory.ConversationScopeAdvisor;
+import com.ai.demo.memory.Conversations;
+import com.ai.demo.retrieval.PrefetchedDocumentRetriever;
+import com.ai.demo.stream.GraphEventRegistry;
+import com.ai.demo.stream.StreamingChat;
 import com.alibaba.cloud.ai.graph.OverAllState;
 import com.alibaba.cloud.ai.graph.action.NodeAction;
 import lombok.Builder;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
-import org.springframework.ai.chat.client.advisor.MessageChatMemoryAdvisor;
 import org.springframework.ai.chat.client.advisor.api.BaseChatMemoryAdvisor;
-import org.springframework.ai.chat.memory.ChatMemory;
-import org.springframework.ai.chat.memory.MessageWindowChatMemory;
 import org.springframework.ai.chat.messages.AbstractMessage;
 import org.springframework.ai.chat.model.ChatResponse;
 import org.springframework.ai.chat.model.Generation;
@@ -20,9 +26,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
-import static org.springframework.ai.chat.memory.ChatMemory.CONVERSATION_ID;
-
 @Builder
+@Slf4j
 public class RetrieveNode implements NodeAction {
 
     private final DocumentRetriever documentRetriever;
@@ -31,16 +36,29 @@ public class RetrieveNode implements NodeAction {
 
     private final RetrievalAugmentationAdvisor retrievalAugmentationAdvisor;
 
-    private final ChatMemory chatMemory = MessageWindowChatMemory.builder()
-            .maxMessages(10)
-            .build();
+    private final BudgetRegistry budgetRegistry;
+
+    private final GraphEventRegistry graphEventRegistry;
 
-    private final BaseChatMemoryAdvisor chatMemoryAdvisor = MessageChatMemoryAdvisor.builder(chatMemory)
-            .build();
+    /**
+     * 基于共享 ChatMemory 的记忆 advisor，会话 id 取自图状态
+     */
+    private final BaseChatMemoryAdvisor chatMemoryAdvisor;
+
+    private final ConversationScopeAdvisor conversationScopeAdvisor = new ConversationScopeAdvisor(
+            Conversations.RETRIEVAL_GENERATION_SCOPE);
 
     @Override
     public Map<String, Object> apply(OverAllState state) throws Exception {
+        RequestBudget budget = budgetRegistry.of(state);
+        if (budget != null && budget.isExhausted()) {
+            // 预算耗尽，保留已有的回答，由评分边结束执行
+            log.info("预算已耗尽（{}），跳过检索生成", budget.exhaustedReason());
+            return Map.of();
+        }
         String query = state.value("question", "");
+        // 推测执行时检索已与路由并行完成
+        List<Document> prefetched = state.value("prefetched_documents", List.of());
 
         // 检查 advisor 是否为空
         if (retrievalAugmentationAdvisor == null) {
@@ -53,27 +71,32 @@ public class RetrieveNode implements NodeAction {
 //                .build());
 
         // other:
-        ChatResponse response = chatClient.prompt()
-                .advisors(retrievalAugmentationAdvisor)
-                .advisors(chatMemoryAdvisor, retrievalAugmentationAdvisor)
-                .advisors(advisors -> advisors.param(CONVERSATION_ID,
-                        "PrebuiltSpringRAG"))
-                .user(query)
-                .call()
-                .chatResponse();
+        // 流式请求逐段推送 token
+        ChatResponse response = StreamingChat.chatResponse(chatClient.prompt()
+                .advisors(conversationScopeAdvisor, chatMemoryAdvisor, retrievalAugmentationAdvisor)
+                .advisors(advisors -> {
+                    if (!prefetched.isEmpty()) {
+                        advisors.param(PrefetchedDocumentRetriever.PREFETCHED_DOCUMENTS, prefetched);
+                    }
+                })
+                .advisors(RequestBudget.advise(budget))
+                .advisors(Conversations.advise(state))
+                .user(query), graphEventRegistry.of(state));
 
         // 结果
         String generation = Optional.ofNullable(response).map(ChatResponse::getResult).map(Generation::getOutput).map(AbstractMessage::getText).orElse("");
-        System.out.println("Generation: " + generation);
+        log.debug("Generation: {}", generation);
 
         // 获取检索结果
         assert response != null;
-        List<Document> retrievedDocuments = response.getMetadata().get("rag_document_context");
+        List<Document> retrievedDocuments = Optional.<List<Document>>ofNullable(
+                response.getMetadata().get("rag_document_context")).orElse(List.of());
 
-        System.out.println("Documents: " + retrievedDocuments);
+        log.debug("Documents: {}", retrievedDocuments);
 
         // 更新状态
-        HashMap<String, Object> resultMap = new HashMap<>();
+        // advisor 已经按 token 预算打包文档，写入与提示词相同的上下文供评分边使用
+        HashMap<String, Object> resultMap = new HashMap<>(ContextPacker.packed(query, retrievedDocuments).toState());
         resultMap.put("question", query);
         resultMap.put("documents", retrievedDocuments);
         resultMap.put("generation", generation);
@@ -0,0 +1,101 @@
+package com.ai.demo.node;
+
+import com.ai.demo.edge.RouteQuestionEdge;
+import com.ai.demo.routing.RouteDecision;
+import com.ai.demo.tool.WebSearchTool;
+import com.alibaba.cloud.ai.graph.OverAllState;
+import com.alibaba.cloud.ai.graph.action.NodeAction;
+import lombok.Builder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.rag.Query;
+import org.springframework.ai.rag.retrieval.search.DocumentRetriever;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.stream.Stream;
+
+/**
+ * 推测执行的路由节点：路由的同时预先检索向量库，并可预先执行网络搜索
+ * <p>路由选中的分支使用预取结果，另一分支的结果被丢弃；路由把握不大（交给大模型决定）且两路结果都有时合并使用。
+ * 预取结果写入 prefetched_documents，后续节点据此跳过检索或搜索。</p>
+ */
+@Builder
+@Slf4j
+public class RouteQuestionNode implements NodeAction {
+
+    private final RouteQuestionEdge routeQuestionEdge;
+
+    private final DocumentRetriever documentRetriever;
+
+    /**
+     * 为 null 时不预先执行网络搜索
+     */
+    private final WebSearchTool webSearchTool;
+
+    private final Executor executor;
+
+    @Override
+    public Map<String, Object> apply(OverAllState state) {
+        log.info("---------- 节点：路由问题，同时预取检索结果 ----------");
+        String question = state.value("question", "");
+
+        CompletableFuture<List<Document>> retrieval = CompletableFuture
+                .supplyAsync(() -> documentRetriever.retrieve(new Query(question)), executor);
+        CompletableFuture<List<Document>> webSearch = webSearchTool == null ? null : CompletableFuture
+                .supplyAsync(() -> WebSearchNode.toDocuments(webSearchTool.search(question)), executor);
+
+        RouteDecision decision = routeQuestionEdge.decide(state);
+        boolean vectorstore = RouteDecision.VECTORSTORE.equals(decision.dataSource());
+        // 把握不大且两路都有预取时合并使用
+        boolean merge = !decision.confident() && webSearch != null;
+        List<Document> vectorDocuments = vectorstore || merge ? join(retrieval, "retrieval") : null;
+        List<Document> webDocuments = !vectorstore || merge ? join(webSearch, "web search") : null;
+
+        List<Document> prefetched;
+        if (merge && vectorDocuments != null && webDocuments != null) {
+            Map<String, Document> merged = new LinkedHashMap<>();
+            Stream.concat(vectorDocuments.stream(), webDocuments.stream())
+                    .forEach(document -> merged.putIfAbsent(document.getId(), document));
+            prefetched = new ArrayList<>(merged.values());
+        } else {
+            prefetched = vectorstore ? vectorDocuments : webDocuments;
+        }
+        // 未选中分支的结果直接丢弃，已经发出的请求无法撤回，只是不再等待
+        if (vectorDocuments == null) {
+            retrieval.cancel(false);
+        }
+        if (webSearch != null && webDocuments == null) {
+            webSearch.cancel(false);
+        }
+        log.info("路由到: {}, 把握: {}, 预取文档数: {}", decision.dataSource(), decision.confident(),
+                prefetched == null ? "无" : prefetched.size());
+
+        HashMap<String, Object> resultMap = new HashMap<>();
+        resultMap.put("route", decision.dataSource());
+        if (prefetched != null) {
+            resultMap.put("prefetched_documents", prefetched);
+        }
+        return resultMap;
+    }
+
+    /**
+     * 预取失败不影响主流程，后续节点会自行检索或搜索
+     */
+    private static List<Document> join(CompletableFuture<List<Document>> future, String name) {
+        if (future == null) {
+            return null;
+        }
+        try {
+            return future.join();
+        } catch (RuntimeException e) {
+            log.warn("Speculative {} failed, falling back to the regular node: {}", name, e.getMessage());
+            return null;
+        }
+    }
+}
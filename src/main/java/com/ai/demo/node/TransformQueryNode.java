@@ -1,5 +1,8 @@
 package com.ai.demo.node;
 
+import com.ai.demo.budget.BudgetRegistry;
+import com.ai.demo.budget.RequestBudget;
+import com.ai.demo.memory.Conversations;
 import com.alibaba.cloud.ai.graph.OverAllState;
 import com.alibaba.cloud.ai.graph.action.NodeAction;
 import lombok.Builder;
@@ -15,11 +18,21 @@ public class TransformQueryNode implements NodeAction {
 
     private final ChatClient chatClient;
 
+    private final BudgetRegistry budgetRegistry;
+
     @Override
     public Map<String, Object> apply(OverAllState state) {
+        RequestBudget budget = budgetRegistry.of(state);
+        if (budget != null && budget.isExhausted()) {
+            // 预算耗尽，保留已有的回答，由评分边结束执行
+            log.info("预算已耗尽（{}），跳过重写问题", budget.exhaustedReason());
+            return Map.of();
+        }
         String question = state.value("question", String.class).orElse("");
         String betterQuestion = chatClient.prompt()
                 .user(u -> u.param("question", question))
+                .advisors(RequestBudget.advise(budget))
+                .advisors(Conversations.advise(state))
                 .call()
                 .content();
         log.info("重写后的问题: {}", betterQuestion);
@@ -1,5 +1,8 @@
 package com.ai.demo.node;
 
+import com.ai.demo.budget.BudgetRegistry;
+import com.ai.demo.budget.RequestBudget;
+import com.ai.demo.memory.Conversations;
 import com.ai.demo.tool.WebSearchTool;
 import com.alibaba.cloud.ai.graph.OverAllState;
 import com.alibaba.cloud.ai.graph.action.NodeAction;
@@ -12,34 +15,68 @@ import java.time.LocalDate;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+/**
+ * 网络搜索节点
+ * <p>direct 模式下直接用问题（可能已被 transform_query 重写）调用搜索工具，搜索结果直接转为文档，不调用大模型；
+ * 只有问题需要拆分为多个子查询时，才交给大模型决定如何调用搜索工具。llm 模式下每次都由大模型调用搜索工具。</p>
+ */
 @Builder
 @Slf4j
 public class WebSearchNode implements NodeAction {
 
+    /**
+     * 多个问句，或对比、并列多个对象的问题，需要拆分为多个子查询
+     */
+    private static final Pattern COMPOUND = Pattern.compile(
+            "[?？].+[?？]|对比|比较|区别|差异|异同|分别|以及|\\bvs\\b|\\bversus\\b|\\bcompare|\\bdifference",
+            Pattern.CASE_INSENSITIVE);
+
     private final ChatClient chatClient;
 
+    private final WebSearchTool webSearchTool;
+
+    private final BudgetRegistry budgetRegistry;
+
+    /**
+     * direct（直接调用搜索工具，需要拆分问题时才调用大模型）/ llm（每次由大模型调用搜索工具）
+     */
+    @Builder.Default
+    private final String mode = "direct";
+
     @Override
     public Map<String, Object> apply(OverAllState state) {
         String query = state.value("question", "");
-        WebSearchTool.TavilyResponse response = chatClient.prompt()
-                .system(s -> s.param("date", LocalDate.now().toString())).user(u -> u.param("question", query)).call()
-                .entity(WebSearchTool.TavilyResponse.class);
+        List<Document> prefetched = state.value("prefetched_documents", List.of());
+        if (!prefetched.isEmpty()) {
+            // 路由时已经推测执行过网络搜索
+            log.info("WebSearchNode uses {} prefetched documents", prefetched.size());
+            HashMap<String, Object> resultMap = new HashMap<>();
+            resultMap.put("question", query);
+            resultMap.put("documents", prefetched);
+            return resultMap;
+        }
 
+        WebSearchTool.TavilyResponse response;
+        if ("direct".equalsIgnoreCase(mode) && !needsDecomposition(query)) {
+            log.info("WebSearchNode searches directly: {}", query);
+            response = webSearchTool.search(query);
+        } else {
+            response = chatClient.prompt()
+                    .system(s -> s.param("date", LocalDate.now().toString())).user(u -> u.param("question", query))
+                    .advisors(RequestBudget.advise(budgetRegistry.of(state)))
+                    .advisors(Conversations.advise(state)).call()
+                    .entity(WebSearchTool.TavilyResponse.class);
+        }
 
         assert response != null;
         log.debug("WebSearchNode response: {}", response);
 
         // 获取内容并转为文档对象
-        List<Document> documents = response.getResults().stream()
-                .map(result -> new Document(result.getContent(),
-                        Map.of("origin", result.getUrl(),
-                                "title", result.getTitle())))
-                .collect(Collectors.toList());
-        documents.addFirst(new Document(response.getAnswer(),
-                Map.of("origin", "Web Search Answer", "title", "Web Search Answer")));
+        List<Document> documents = toDocuments(response);
 
         // 更新状态
         HashMap<String, Object> resultMap = new HashMap<>();
@@ -47,4 +84,28 @@ public class WebSearchNode implements NodeAction {
         resultMap.put("documents", documents);
         return resultMap;
     }
+
+    /**
+     * @return 问题包含多个问句或要对比多个对象时为 true，此时由大模型拆分为多次搜索
+     */
+    static boolean needsDecomposition(String question) {
+        return COMPOUND.matcher(question).find();
+    }
+
+    /**
+     * 搜索结果转为文档对象，有摘要回答时放在最前
+     */
+    static List<Document> toDocuments(WebSearchTool.TavilyResponse response) {
+        List<Document> documents = Stream.ofNullable(response.getResults())
+                .flatMap(List::stream)
+                .map(result -> new Document(result.getContent(),
+                        Map.of("origin", result.getUrl(),
+                                "title", result.getTitle())))
+                .collect(Collectors.toList());
+        if (response.getAnswer() != null && !response.getAnswer().isBlank()) {
+            documents.addFirst(new Document(response.getAnswer(),
+                    Map.of("origin", "Web Search Answer", "title", "Web Search Answer")));
+        }
+        return documents;
+    }
 }
@@ -0,0 +1,184 @@
+package com.ai.demo.retrieval;
+
+import com.ai.demo.entity.TransformedQuery;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.rag.Query;
+import org.springframework.ai.rag.preretrieval.query.transformation.QueryTransformer;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 自适应查询转换器：先用本地规则判断需要哪些转换，再决定调用方式
+ * <ul>
+ *     <li>压缩：只有存在对话历史时才需要</li>
+ *     <li>翻译：问题已经是中文时不需要</li>
+ *     <li>重写：按配置开启</li>
+ * </ul>
+ * <p>不需要转换时直接返回原问题；只需要一项时调用对应的转换器；需要多项时合并为一次结构化调用，
+ * 而不是依次调用三个转换器。问题较短、没有历史的常见情况下，检索前的大模型调用从三次降到一次或零次。
+ * <p>推测执行时文档已按原问题预取：只差重写一项时跳过转换直接使用预取文档，省下一次调用，代价是检索用的是未重写的问题；
+ * 需要压缩或翻译时原问题不适合检索，丢弃预取文档，按转换后的问题重新检索。</p>
+ */
+@Slf4j
+public class AdaptiveQueryTransformer implements QueryTransformer {
+
+    private final QueryTransformer compression;
+
+    private final QueryTransformer translation;
+
+    private final QueryTransformer rewrite;
+
+    private final ChatClient fusedChatClient;
+
+    private final boolean rewriteEnabled;
+
+    /**
+     * @param compression 压缩查询转换器
+     * @param translation 翻译查询转换器，目标语言为中文
+     * @param rewrite 重写查询转换器
+     * @param fusedChatClient 需要多项转换时使用的 ChatClient
+     * @param rewriteEnabled 是否重写问题
+     */
+    public AdaptiveQueryTransformer(QueryTransformer compression, QueryTransformer translation,
+            QueryTransformer rewrite, ChatClient fusedChatClient, boolean rewriteEnabled) {
+        this.compression = compression;
+        this.translation = translation;
+        this.rewrite = rewrite;
+        this.fusedChatClient = fusedChatClient;
+        this.rewriteEnabled = rewriteEnabled;
+    }
+
+    @Override
+    public Query transform(Query query) {
+        List<Message> history = conversationHistory(query);
+        boolean compress = !history.isEmpty();
+        boolean translate = !isChinese(query.text());
+        if (PrefetchedDocumentRetriever.prefetched(query) != null) {
+            if (!compress && !translate) {
+                // 文档已经按原问题预取，重写后的问题不会再用于检索
+                return query;
+            }
+            log.info("Prefetched documents discarded, query [{}] needs compress={}, translate={}", query.text(),
+                    compress, translate);
+            query = PrefetchedDocumentRetriever.withoutPrefetched(query);
+        }
+
+        List<QueryTransformer> needed = new ArrayList<>(3);
+        if (compress) {
+            needed.add(compression);
+        }
+        if (translate) {
+            needed.add(translation);
+        }
+        if (rewriteEnabled) {
+            needed.add(rewrite);
+        }
+        log.info("Query transforms for [{}]: compress={}, translate={}, rewrite={}", query.text(), compress,
+                translate, rewriteEnabled);
+
+        if (needed.isEmpty()) {
+            return query;
+        }
+        if (needed.size() == 1) {
+            return needed.getFirst().transform(query);
+        }
+        return fused(query, history, compress, translate);
+    }
+
+    /**
+     * 一次调用完成多项转换
+     */
+    private Query fused(Query query, List<Message> history, boolean compress, boolean translate) {
+        List<String> tasks = new ArrayList<>(3);
+        if (compress) {
+            tasks.add("结合对话历史，把问题改写为不依赖上下文、语义完整的独立问题");
+        }
+        if (translate) {
+            tasks.add("把问题翻译为中文，API 名、配置项、代码等专有名词保持原样");
+        }
+        if (rewriteEnabled) {
+            tasks.add("去除无关信息、消除歧义，使用更具体的关键词，使其更适合检索");
+        }
+        StringBuilder steps = new StringBuilder();
+        for (int i = 0; i < tasks.size(); i++) {
+            steps.append(i + 1).append(". ").append(tasks.get(i)).append('\n');
+        }
+
+        TransformedQuery transformed = fusedChatClient.prompt()
+                .user(u -> u.text("""
+                                依次完成以下处理：
+                                {steps}
+                                对话历史:
+                                {history}
+
+                                用户问题:
+                                {question}
+                                """)
+                        .param("steps", steps.toString())
+                        .param("history", formatHistory(history))
+                        .param("question", query.text()))
+                .call()
+                .entity(TransformedQuery.class);
+
+        if (transformed == null || !StringUtils.hasText(transformed.query())) {
+            log.warn("Query transformation result is empty, using the original query");
+            return query;
+        }
+        return query.mutate().text(transformed.query()).build();
+    }
+
+    /**
+     * 检索增强 advisor 传入的历史包含系统提示词与当前问题本身，只保留之前轮次的用户与助手消息
+     */
+    private static List<Message> conversationHistory(Query query) {
+        List<Message> messages = query.history().stream()
+                .filter(message -> message.getMessageType() == MessageType.USER
+                        || message.getMessageType() == MessageType.ASSISTANT)
+                .collect(Collectors.toCollection(ArrayList::new));
+        if (!messages.isEmpty() && messages.getLast().getMessageType() == MessageType.USER
+                && query.text().equals(messages.getLast().getText())) {
+            messages.removeLast();
+        }
+        return messages;
+    }
+
+    private static String formatHistory(List<Message> history) {
+        if (history.isEmpty()) {
+            return "无";
+        }
+        return history.stream()
+                .map(message -> message.getMessageType().getValue() + ": " + message.getText())
+                .collect(Collectors.joining("\n"));
+    }
+
+    /**
+     * 汉字数不少于英文单词数即视为中文，夹杂 API 名、配置项的中文问题不会被误判为英文
+     */
+    static boolean isChinese(String text) {
+        int han = 0;
+        int words = 0;
+        boolean inWord = false;
+        for (int i = 0; i < text.length(); ) {
+            int c = text.codePointAt(i);
+            if (Character.UnicodeScript.of(c) == Character.UnicodeScript.HAN) {
+                han++;
+                inWord = false;
+            } else if (Character.isLetter(c)) {
+                if (!inWord) {
+                    words++;
+                }
+                inWord = true;
+            } else if (!Character.isDigit(c) && c != '.' && c != '-' && c != '_') {
+                inWord = false;
+            }
+            i += Character.charCount(c);
+        }
+        return han > 0 ? han >= words : words == 0;
+    }
+}
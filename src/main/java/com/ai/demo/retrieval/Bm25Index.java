@@ -0,0 +1,113 @@
+package com.ai.demo.retrieval;
+
+import org.springframework.ai.document.Document;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * 只读的内存倒排索引，按 BM25 打分
+ * <p>每个词的倒排表保存为两个 int 数组（文档序号、词频），构建后不再修改；
+ * 向量库内容变化时整体重建，查询无需加锁。</p>
+ */
+public final class Bm25Index {
+
+    private static final float K1 = 1.2f;
+
+    private static final float B = 0.75f;
+
+    private final List<Document> documents;
+
+    private final int[] lengths;
+
+    private final float averageLength;
+
+    private final Map<String, Postings> postings;
+
+    private Bm25Index(List<Document> documents, int[] lengths, Map<String, Postings> postings) {
+        this.documents = documents;
+        this.lengths = lengths;
+        this.averageLength = documents.isEmpty() ? 0 : (float) Arrays.stream(lengths).average().orElse(0);
+        this.postings = postings;
+    }
+
+    public static Bm25Index build(List<Document> documents) {
+        int[] lengths = new int[documents.size()];
+        Map<String, List<int[]>> building = new HashMap<>();
+        for (int doc = 0; doc < documents.size(); doc++) {
+            List<String> tokens = ChineseTokenizer.tokenize(documents.get(doc).getText());
+            lengths[doc] = tokens.size();
+            Map<String, Integer> frequencies = new HashMap<>();
+            tokens.forEach(token -> frequencies.merge(token, 1, Integer::sum));
+            int ordinal = doc;
+            frequencies.forEach((token, frequency) ->
+                    building.computeIfAbsent(token, key -> new ArrayList<>()).add(new int[]{ordinal, frequency}));
+        }
+        Map<String, Postings> postings = new HashMap<>(building.size() * 2);
+        building.forEach((token, entries) -> {
+            int[] docs = new int[entries.size()];
+            int[] frequencies = new int[entries.size()];
+            for (int i = 0; i < entries.size(); i++) {
+                docs[i] = entries.get(i)[0];
+                frequencies[i] = entries.get(i)[1];
+            }
+            postings.put(token, new Postings(docs, frequencies));
+        });
+        return new Bm25Index(List.copyOf(documents), lengths, postings);
+    }
+
+    public int size() {
+        return documents.size();
+    }
+
+    /**
+     * @param query 查询文本
+     * @param topK 返回的最大文档数
+     * @return 按 BM25 分数降序排列的文档，分数写入 {@link Document#getScore()}，不含零分文档
+     */
+    public List<Document> search(String query, int topK) {
+        if (documents.isEmpty() || topK <= 0) {
+            return List.of();
+        }
+        float[] scores = new float[documents.size()];
+        // 查询中重复的词只计一次
+        for (String token : new LinkedHashSet<>(ChineseTokenizer.tokenize(query))) {
+            Postings posting = postings.get(token);
+            if (posting == null) {
+                continue;
+            }
+            float idf = (float) Math.log(1 + (documents.size() - posting.docs.length + 0.5)
+                    / (posting.docs.length + 0.5));
+            for (int i = 0; i < posting.docs.length; i++) {
+                int doc = posting.docs[i];
+                float tf = posting.frequencies[i];
+                float norm = K1 * (1 - B + B * lengths[doc] / averageLength);
+                scores[doc] += idf * tf * (K1 + 1) / (tf + norm);
+            }
+        }
+
+        PriorityQueue<Integer> top = new PriorityQueue<>(topK + 1, (a, b) -> Float.compare(scores[a], scores[b]));
+        for (int doc = 0; doc < scores.length; doc++) {
+            if (scores[doc] > 0) {
+                top.add(doc);
+                if (top.size() > topK) {
+                    top.poll();
+                }
+            }
+        }
+        List<Document> result = new ArrayList<>(top.size());
+        while (!top.isEmpty()) {
+            int doc = top.poll();
+            result.add(documents.get(doc).mutate().score((double) scores[doc]).build());
+        }
+        return result.reversed();
+    }
+
+    private record Postings(int[] docs, int[] frequencies) {
+    }
+}
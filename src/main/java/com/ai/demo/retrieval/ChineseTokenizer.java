@@ -0,0 +1,83 @@
+package com.ai.demo.retrieval;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 面向中英文混排文本的轻量分词器，不依赖词典
+ * <p>连续的汉字（及其他 CJK 字符）切成相邻二元组，单个汉字保留为一元；
+ * 连续的字母、数字以及 {@code . _ - :} 组成的标识符（如 {@code spring.ai.openai.api-key}）整体作为一个词，
+ * 同时按分隔符拆出各段，使完整的 API 名与其中的单词都能命中。英文统一转小写。</p>
+ */
+public final class ChineseTokenizer {
+
+    private ChineseTokenizer() {
+    }
+
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            int c = text.codePointAt(i);
+            if (isCjk(c)) {
+                int start = i;
+                while (i < length && isCjk(text.codePointAt(i))) {
+                    i += Character.charCount(text.codePointAt(i));
+                }
+                cjkTokens(text.substring(start, i), tokens);
+            } else if (Character.isLetterOrDigit(c)) {
+                int start = i;
+                while (i < length && isWordPart(text.codePointAt(i))) {
+                    i += Character.charCount(text.codePointAt(i));
+                }
+                wordTokens(text.substring(start, i), tokens);
+            } else {
+                i += Character.charCount(c);
+            }
+        }
+        return tokens;
+    }
+
+    private static void cjkTokens(String run, List<String> tokens) {
+        int[] codePoints = run.codePoints().toArray();
+        if (codePoints.length == 1) {
+            tokens.add(run);
+            return;
+        }
+        for (int j = 0; j + 1 < codePoints.length; j++) {
+            tokens.add(new String(codePoints, j, 2));
+        }
+    }
+
+    private static void wordTokens(String word, List<String> tokens) {
+        // 去掉句末标点，如 “见 application.yaml.” 中的最后一个点
+        int end = word.length();
+        while (end > 0 && !Character.isLetterOrDigit(word.charAt(end - 1))) {
+            end--;
+        }
+        String token = word.substring(0, end).toLowerCase();
+        tokens.add(token);
+        String[] parts = token.split("[._\\-:]+");
+        if (parts.length > 1) {
+            for (String part : parts) {
+                if (!part.isEmpty()) {
+                    tokens.add(part);
+                }
+            }
+        }
+    }
+
+    private static boolean isWordPart(int c) {
+        return !isCjk(c) && (Character.isLetterOrDigit(c) || c == '.' || c == '_' || c == '-' || c == ':');
+    }
+
+    private static boolean isCjk(int c) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(c);
+        return script == Character.UnicodeScript.HAN || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA || script == Character.UnicodeScript.HANGUL;
+    }
+}
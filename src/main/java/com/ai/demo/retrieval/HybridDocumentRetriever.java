@@ -0,0 +1,119 @@
+package com.ai.demo.retrieval;
+
+import com.ai.demo.vectorstore.LocalVectorStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.rag.Query;
+import org.springframework.ai.rag.retrieval.search.DocumentRetriever;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * 混合检索器：向量检索 + BM25 关键词检索，结果用倒数排名融合合并
+ * <p>向量检索擅长语义相近的表述，但容易漏掉 API 名、配置项这类需要精确匹配的词；
+ * BM25 倒排索引按中文二元组与完整标识符匹配，正好补上这部分。两路检索并行执行，
+ * 各取若干候选后按 RRF 融合取 topK。</p>
+ * <p>倒排索引根据向量库中的文档在首次检索时构建，向量库版本号变化（入库、删除、加载快照）后重建。</p>
+ */
+@Slf4j
+public class HybridDocumentRetriever implements DocumentRetriever, RankedRetriever {
+
+    private final LocalVectorStore vectorStore;
+
+    private final Executor executor;
+
+    private final int topK;
+
+    private final int candidates;
+
+    private final double similarityThreshold;
+
+    private final int rrfK;
+
+    private volatile IndexSnapshot index = new IndexSnapshot(-1, Bm25Index.build(List.of()));
+
+    /**
+     * @param vectorStore 向量库，同时作为倒排索引的文档来源
+     * @param executor 执行向量检索的线程池
+     * @param topK 融合后返回的文档数
+     * @param candidates 每路检索取的候选数
+     * @param similarityThreshold 向量检索的最低相似度
+     * @param rrfK RRF 平滑常数
+     */
+    public HybridDocumentRetriever(LocalVectorStore vectorStore, Executor executor, int topK, int candidates,
+            double similarityThreshold, int rrfK) {
+        Assert.isTrue(topK > 0, "topK must be positive");
+        Assert.isTrue(candidates >= topK, "candidates must not be less than topK");
+        Assert.isTrue(rrfK > 0, "rrfK must be positive");
+        this.vectorStore = vectorStore;
+        this.executor = executor;
+        this.topK = topK;
+        this.candidates = candidates;
+        this.similarityThreshold = similarityThreshold;
+        this.rrfK = rrfK;
+    }
+
+    @Override
+    public List<Document> retrieve(Query query) {
+        Assert.notNull(query, "query cannot be null");
+        long start = System.nanoTime();
+        SearchRequest request = searchRequest(query);
+        CompletableFuture<List<Document>> vectorResults = CompletableFuture
+                .supplyAsync(() -> vectorStore.similaritySearch(request), executor);
+        List<Document> keywordResults = currentIndex().search(query.text(), candidates);
+
+        List<Document> fused = ReciprocalRankFusion.fuse(List.of(vectorResults.join(), keywordResults), rrfK, topK);
+        log.info("Hybrid retrieval for [{}]: {} vector + {} keyword candidates -> {} documents in {} ms",
+                query.text(), vectorResults.join().size(), keywordResults.size(), fused.size(),
+                (System.nanoTime() - start) / 1_000_000);
+        return fused;
+    }
+
+    /**
+     * 查询向量已经算好时不再需要把向量检索放到其他线程，两路检索依次执行
+     * @return 向量检索与关键词检索两路候选
+     */
+    @Override
+    public List<List<Document>> rank(Query query, float[] embedding) {
+        return List.of(vectorStore.similaritySearch(searchRequest(query), embedding),
+                currentIndex().search(query.text(), candidates));
+    }
+
+    private SearchRequest searchRequest(Query query) {
+        return SearchRequest.builder()
+                .query(query.text())
+                .topK(candidates)
+                .similarityThreshold(similarityThreshold)
+                .build();
+    }
+
+    private Bm25Index currentIndex() {
+        IndexSnapshot snapshot = index;
+        long version = vectorStore.version();
+        if (snapshot.version() == version) {
+            return snapshot.index();
+        }
+        synchronized (this) {
+            snapshot = index;
+            version = vectorStore.version();
+            if (snapshot.version() != version) {
+                long start = System.nanoTime();
+                List<Document> documents = new ArrayList<>(vectorStore.size());
+                vectorStore.forEachDocument(documents::add);
+                snapshot = new IndexSnapshot(version, Bm25Index.build(documents));
+                index = snapshot;
+                log.info("Built BM25 index over {} documents in {} ms", documents.size(),
+                        (System.nanoTime() - start) / 1_000_000);
+            }
+            return snapshot.index();
+        }
+    }
+
+    private record IndexSnapshot(long version, Bm25Index index) {
+    }
+}
@@ -0,0 +1,199 @@
+package com.ai.demo.retrieval;
+
+import com.ai.demo.vectorstore.LocalVectorStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.rag.Query;
+import org.springframework.ai.rag.postretrieval.document.DocumentPostProcessor;
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 本地重排序：检索多取若干候选，在 CPU 上重新打分后保留 keepK 个
+ * <ul>
+ *     <li>相关度 = 向量相似度与 BM25 分数（均按候选内最大值归一化）的加权和</li>
+ *     <li>按 MMR 依次选取：相关度减去与已选文档的最大相似度，避免选入内容重复的片段</li>
+ * </ul>
+ * <p>文档向量直接读取向量库中已存储的向量，查询向量由带缓存的词嵌入模型提供（检索时已经算过），不产生网络调用。
+ * 不在向量库中的文档（如网络搜索结果）只按 BM25 打分，文档间相似度改用词元 Jaccard 重合度。</p>
+ */
+@Slf4j
+public class LocalReranker implements DocumentPostProcessor {
+
+    private final LocalVectorStore vectorStore;
+
+    private final EmbeddingModel embeddingModel;
+
+    private final int keepK;
+
+    private final double embeddingWeight;
+
+    private final double mmrLambda;
+
+    /**
+     * @param vectorStore 向量库，提供文档向量
+     * @param embeddingModel 词嵌入模型，提供查询向量
+     * @param keepK 重排序后保留的文档数
+     * @param embeddingWeight 相关度中向量相似度的权重，其余为 BM25 的权重
+     * @param mmrLambda MMR 中相关度的权重，越小越偏向多样性
+     */
+    public LocalReranker(LocalVectorStore vectorStore, EmbeddingModel embeddingModel, int keepK,
+            double embeddingWeight, double mmrLambda) {
+        Assert.isTrue(keepK > 0, "keepK must be positive");
+        Assert.isTrue(embeddingWeight >= 0 && embeddingWeight <= 1, "embeddingWeight must be between 0 and 1");
+        Assert.isTrue(mmrLambda >= 0 && mmrLambda <= 1, "mmrLambda must be between 0 and 1");
+        this.vectorStore = vectorStore;
+        this.embeddingModel = embeddingModel;
+        this.keepK = keepK;
+        this.embeddingWeight = embeddingWeight;
+        this.mmrLambda = mmrLambda;
+    }
+
+    @Override
+    public List<Document> process(Query query, List<Document> documents) {
+        if (documents.size() <= 1) {
+            return documents;
+        }
+        long start = System.nanoTime();
+        Map<String, float[]> embeddings = vectorStore.embeddings(documents.stream().map(Document::getId).toList());
+        float[] queryEmbedding = embeddings.isEmpty() ? null : normalize(embeddingModel.embed(query.text()));
+        List<Document> reranked = rerank(query.text(), documents, queryEmbedding, embeddings);
+        log.info("Reranked {} candidates for [{}] -> {} documents in {} ms", documents.size(), query.text(),
+                reranked.size(), (System.nanoTime() - start) / 1_000_000);
+        return reranked;
+    }
+
+    /**
+     * @param queryEmbedding 归一化后的查询向量，为 null 时只按 BM25 打分
+     * @param embeddings 文档 id 到归一化向量的映射
+     * @return 按 MMR 选取顺序排列的文档；{@link Document#getScore()} 写入由选取名次换算的分数（首个为 1，依次递减），
+     * 下游按分数排序（如 ContextPacker）时仍保持 MMR 的顺序，不会把为多样性后选的文档重新排回前面
+     */
+    List<Document> rerank(String query, List<Document> documents, float[] queryEmbedding,
+            Map<String, float[]> embeddings) {
+        int n = documents.size();
+        double[] relevance = relevance(query, documents, queryEmbedding, embeddings);
+        List<Set<String>> tokens = documents.stream()
+                .map(document -> (Set<String>) new HashSet<>(ChineseTokenizer.tokenize(document.getText())))
+                .toList();
+
+        List<Integer> selected = new ArrayList<>(Math.min(keepK, n));
+        // 每个候选与已选文档的最大相似度
+        double[] redundancy = new double[n];
+        boolean[] taken = new boolean[n];
+        while (selected.size() < Math.min(keepK, n)) {
+            int best = -1;
+            double bestScore = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < n; i++) {
+                if (taken[i]) {
+                    continue;
+                }
+                double score = mmrLambda * relevance[i] - (1 - mmrLambda) * redundancy[i];
+                if (score > bestScore) {
+                    best = i;
+                    bestScore = score;
+                }
+            }
+            taken[best] = true;
+            selected.add(best);
+            for (int i = 0; i < n; i++) {
+                if (!taken[i]) {
+                    redundancy[i] = Math.max(redundancy[i],
+                            similarity(documents.get(i), documents.get(best), tokens.get(i), tokens.get(best),
+                                    embeddings));
+                }
+            }
+        }
+        List<Document> reranked = new ArrayList<>(selected.size());
+        for (int rank = 0; rank < selected.size(); rank++) {
+            double score = 1.0 - (double) rank / selected.size();
+            reranked.add(documents.get(selected.get(rank)).mutate().score(score).build());
+        }
+        return reranked;
+    }
+
+    /**
+     * 向量相似度与 BM25 分数分别按候选内最大值归一化后加权
+     */
+    private double[] relevance(String query, List<Document> documents, float[] queryEmbedding,
+            Map<String, float[]> embeddings) {
+        int n = documents.size();
+        double[] vector = new double[n];
+        if (queryEmbedding != null) {
+            for (int i = 0; i < n; i++) {
+                float[] embedding = embeddings.get(documents.get(i).getId());
+                vector[i] = embedding == null ? 0 : Math.max(0, dot(queryEmbedding, embedding));
+            }
+        }
+        // 在候选集合内建索引，IDF 反映词在候选中的区分度
+        Map<String, Double> bm25Scores = new HashMap<>();
+        Bm25Index.build(documents).search(query, n)
+                .forEach(document -> bm25Scores.put(document.getId(), document.getScore()));
+        double[] keyword = new double[n];
+        for (int i = 0; i < n; i++) {
+            keyword[i] = bm25Scores.getOrDefault(documents.get(i).getId(), 0.0);
+        }
+        normalizeByMax(vector);
+        normalizeByMax(keyword);
+
+        double weight = queryEmbedding == null ? 0 : embeddingWeight;
+        double[] relevance = new double[n];
+        for (int i = 0; i < n; i++) {
+            relevance[i] = weight * vector[i] + (1 - weight) * keyword[i];
+        }
+        return relevance;
+    }
+
+    private static double similarity(Document a, Document b, Set<String> aTokens, Set<String> bTokens,
+            Map<String, float[]> embeddings) {
+        float[] aEmbedding = embeddings.get(a.getId());
+        float[] bEmbedding = embeddings.get(b.getId());
+        if (aEmbedding != null && bEmbedding != null) {
+            return Math.max(0, dot(aEmbedding, bEmbedding));
+        }
+        if (aTokens.isEmpty() || bTokens.isEmpty()) {
+            return 0;
+        }
+        long intersection = aTokens.stream().filter(bTokens::contains).count();
+        return (double) intersection / (aTokens.size() + bTokens.size() - intersection);
+    }
+
+    private static void normalizeByMax(double[] values) {
+        double max = 0;
+        for (double value : values) {
+            max = Math.max(max, value);
+        }
+        if (max > 0) {
+            for (int i = 0; i < values.length; i++) {
+                values[i] /= max;
+            }
+        }
+    }
+
+    private static double dot(float[] a, float[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    static float[] normalize(float[] vector) {
+        double norm = Math.sqrt(dot(vector, vector));
+        if (norm == 0) {
+            return vector;
+        }
+        float[] normalized = new float[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = (float) (vector[i] / norm);
+        }
+        return normalized;
+    }
+}
@@ -0,0 +1,91 @@
+package com.ai.demo.retrieval;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.rag.Query;
+import org.springframework.ai.rag.preretrieval.query.expansion.QueryExpander;
+import org.springframework.ai.rag.retrieval.search.DocumentRetriever;
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * 多查询检索器：把问题扩展为多个子查询，合并各子查询的检索结果
+ * <p>原问题与扩展出的子查询在一次向量化请求中批量计算向量，随后各子查询在虚拟线程上并发检索，
+ * 所有结果按倒数排名融合并按文档 id 去重。召回率提高，而耗时只比单次检索多一次扩展调用。</p>
+ */
+@Slf4j
+public class MultiQueryDocumentRetriever implements DocumentRetriever {
+
+    private final QueryExpander queryExpander;
+
+    private final EmbeddingModel embeddingModel;
+
+    private final RankedRetriever retriever;
+
+    private final Executor executor;
+
+    private final int topK;
+
+    private final int rrfK;
+
+    /**
+     * @param queryExpander 查询扩展器
+     * @param embeddingModel 批量计算子查询向量的模型
+     * @param retriever 使用子查询向量检索的检索器
+     * @param executor 并发检索子查询的线程池
+     * @param topK 融合后返回的文档数
+     * @param rrfK RRF 平滑常数
+     */
+    public MultiQueryDocumentRetriever(QueryExpander queryExpander, EmbeddingModel embeddingModel,
+            RankedRetriever retriever, Executor executor, int topK, int rrfK) {
+        Assert.isTrue(topK > 0, "topK must be positive");
+        Assert.isTrue(rrfK > 0, "rrfK must be positive");
+        this.queryExpander = queryExpander;
+        this.embeddingModel = embeddingModel;
+        this.retriever = retriever;
+        this.executor = executor;
+        this.topK = topK;
+        this.rrfK = rrfK;
+    }
+
+    @Override
+    public List<Document> retrieve(Query query) {
+        Assert.notNull(query, "query cannot be null");
+        long start = System.nanoTime();
+        List<Query> queries = expand(query);
+        List<float[]> embeddings = embeddingModel.embed(queries.stream().map(Query::text).toList());
+
+        List<CompletableFuture<List<List<Document>>>> futures = new ArrayList<>(queries.size());
+        for (int i = 0; i < queries.size(); i++) {
+            Query subQuery = queries.get(i);
+            float[] embedding = embeddings.get(i);
+            futures.add(CompletableFuture.supplyAsync(() -> retriever.rank(subQuery, embedding), executor));
+        }
+        List<List<Document>> rankings = new ArrayList<>();
+        futures.forEach(future -> rankings.addAll(future.join()));
+
+        List<Document> fused = ReciprocalRankFusion.fuse(rankings, rrfK, topK);
+        log.info("Multi-query retrieval for [{}]: {} queries, {} rankings -> {} documents in {} ms", query.text(),
+                queries.size(), rankings.size(), fused.size(), (System.nanoTime() - start) / 1_000_000);
+        return fused;
+    }
+
+    /**
+     * 原问题始终参与检索并排在最前，扩展结果中重复的查询只保留一个
+     */
+    private List<Query> expand(Query query) {
+        List<Query> queries = new ArrayList<>();
+        queries.add(query);
+        for (Query expanded : queryExpander.expand(query)) {
+            if (queries.stream().noneMatch(existing -> existing.text().equals(expanded.text()))) {
+                queries.add(expanded);
+            }
+        }
+        return queries;
+    }
+}
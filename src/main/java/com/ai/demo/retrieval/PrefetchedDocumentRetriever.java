@@ -0,0 +1,52 @@
+package com.ai.demo.retrieval;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.rag.Query;
+import org.springframework.ai.rag.retrieval.search.DocumentRetriever;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 优先使用预取文档的检索器
+ * <p>推测执行时检索已经与问题路由并行完成，预取结果通过 advisor 参数 {@link #PREFETCHED_DOCUMENTS}
+ * 进入查询上下文；存在预取结果时直接返回，否则交给实际的检索器。</p>
+ */
+public class PrefetchedDocumentRetriever implements DocumentRetriever {
+
+    /**
+     * advisor 参数名，值为 {@code List<Document>}
+     */
+    public static final String PREFETCHED_DOCUMENTS = "prefetched_documents";
+
+    private final DocumentRetriever delegate;
+
+    public PrefetchedDocumentRetriever(DocumentRetriever delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public List<Document> retrieve(Query query) {
+        List<Document> prefetched = prefetched(query);
+        return prefetched != null ? prefetched : delegate.retrieve(query);
+    }
+
+    /**
+     * @return 查询上下文中的预取文档，不存在时为 null
+     */
+    @SuppressWarnings("unchecked")
+    public static List<Document> prefetched(Query query) {
+        Object documents = query.context().get(PREFETCHED_DOCUMENTS);
+        return documents instanceof List<?> list ? (List<Document>) list : null;
+    }
+
+    /**
+     * @return 去掉预取文档的查询，用于预取结果与转换后的问题不再对应时
+     */
+    public static Query withoutPrefetched(Query query) {
+        Map<String, Object> context = new HashMap<>(query.context());
+        context.remove(PREFETCHED_DOCUMENTS);
+        return query.mutate().context(context).build();
+    }
+}
@@ -0,0 +1,21 @@
+package com.ai.demo.retrieval;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.rag.Query;
+
+import java.util.List;
+
+/**
+ * 使用预先计算好的查询向量检索，返回一路或多路各自按相关度降序排列的结果
+ * <p>多查询检索先把所有子查询一次性向量化，再并发调用本接口，最后把各路结果统一做倒数排名融合。</p>
+ */
+@FunctionalInterface
+public interface RankedRetriever {
+
+    /**
+     * @param query 查询
+     * @param embedding 查询向量
+     * @return 各路检索结果，每路按相关度降序排列
+     */
+    List<List<Document>> rank(Query query, float[] embedding);
+}
@@ -0,0 +1,49 @@
+package com.ai.demo.retrieval;
+
+import org.springframework.ai.document.Document;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 倒数排名融合（Reciprocal Rank Fusion）
+ * <p>文档的融合分数为其在各路结果中 {@code 1 / (k + 排名)} 之和，排名从 1 开始。
+ * 只依赖排名而不依赖各路分数的量纲，适合合并 BM25 分数与余弦相似度这类不可直接比较的结果。</p>
+ */
+public final class ReciprocalRankFusion {
+
+    /**
+     * 常用的平滑常数，越大则排名靠后的文档与靠前文档的分数差距越小
+     */
+    public static final int DEFAULT_K = 60;
+
+    private ReciprocalRankFusion() {
+    }
+
+    /**
+     * @param rankings 各路检索结果，每路按相关度降序排列
+     * @param k 平滑常数
+     * @param topK 返回的最大文档数
+     * @return 按融合分数降序排列、按 id 去重的文档，融合分数写入 {@link Document#getScore()}，
+     * 同一文档保留最先出现的那一路中的内容与元数据
+     */
+    public static List<Document> fuse(List<List<Document>> rankings, int k, int topK) {
+        Map<String, Document> documents = new LinkedHashMap<>();
+        Map<String, Double> scores = new LinkedHashMap<>();
+        for (List<Document> ranking : rankings) {
+            for (int rank = 0; rank < ranking.size(); rank++) {
+                Document document = ranking.get(rank);
+                documents.putIfAbsent(document.getId(), document);
+                scores.merge(document.getId(), 1.0 / (k + rank + 1), Double::sum);
+            }
+        }
+        List<Document> fused = new ArrayList<>(documents.size());
+        documents.forEach((id, document) -> fused.add(document.mutate().score(scores.get(id)).build()));
+        // 稳定排序，同分时保持先出现的文档在前
+        fused.sort(Comparator.comparingDouble(Document::getScore).reversed());
+        return fused.size() > topK ? List.copyOf(fused.subList(0, topK)) : fused;
+    }
+}
@@ -0,0 +1,106 @@
+package com.ai.demo.routing;
+
+import com.ai.demo.vectorstore.LocalVectorStore;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 本地问题路由：不调用大模型，根据问题与知识库的相似度决定检索向量库还是网络搜索
+ * <p>综合得分 = 问题与知识库最近邻片段的平均相似度 + 知识库关键词加分 - 时效性关键词减分。
+ * 得分不低于 vectorstore 阈值走向量库，不高于 web_search 阈值走网络搜索，落在两者之间的不确定区间
+ * 或向量库为空时返回不确定，由调用方交给大模型路由。</p>
+ */
+@Component
+public class LocalQuestionRouter {
+
+    private final EmbeddingModel embeddingModel;
+
+    private final LocalVectorStore vectorStore;
+
+    private final int neighbours;
+
+    private final double vectorstoreThreshold;
+
+    private final double webSearchThreshold;
+
+    private final double keywordWeight;
+
+    private final List<String> knowledgeKeywords;
+
+    private final List<String> recencyKeywords;
+
+    /**
+     * @param neighbours 参与平均的最近邻片段数
+     * @param vectorstoreThreshold 综合得分不低于该值时走向量库
+     * @param webSearchThreshold 综合得分不高于该值时走网络搜索
+     * @param keywordWeight 命中知识库关键词的加分与命中时效性关键词的减分
+     * @param knowledgeKeywords 知识库主题关键词
+     * @param recencyKeywords 需要实时信息的关键词
+     */
+    public LocalQuestionRouter(EmbeddingModel embeddingModel, LocalVectorStore vectorStore,
+            @Value("${rag.router.neighbours:3}") int neighbours,
+            @Value("${rag.router.vectorstore-threshold:0.55}") double vectorstoreThreshold,
+            @Value("${rag.router.web-search-threshold:0.35}") double webSearchThreshold,
+            @Value("${rag.router.keyword-weight:0.1}") double keywordWeight,
+            @Value("${rag.router.knowledge-keywords:spring ai,alibaba,graph}") List<String> knowledgeKeywords,
+            @Value("${rag.router.recency-keywords:最新,今天,实时,新闻,天气,股价}") List<String> recencyKeywords) {
+        Assert.isTrue(neighbours > 0, "neighbours must be positive");
+        Assert.isTrue(webSearchThreshold <= vectorstoreThreshold,
+                "webSearchThreshold must not exceed vectorstoreThreshold");
+        this.embeddingModel = embeddingModel;
+        this.vectorStore = vectorStore;
+        this.neighbours = neighbours;
+        this.vectorstoreThreshold = vectorstoreThreshold;
+        this.webSearchThreshold = webSearchThreshold;
+        this.keywordWeight = keywordWeight;
+        this.knowledgeKeywords = lowerCase(knowledgeKeywords);
+        this.recencyKeywords = lowerCase(recencyKeywords);
+    }
+
+    public RouteDecision route(String question) {
+        if (vectorStore.size() == 0) {
+            return new RouteDecision(null, false, 0, 0, "empty vector store");
+        }
+        float[] embedding = embeddingModel.embed(question);
+        List<Document> nearest = vectorStore.similaritySearch(SearchRequest.builder()
+                .query(question)
+                .topK(neighbours)
+                .similarityThresholdAll()
+                .build(), embedding);
+        double similarity = nearest.stream().mapToDouble(Document::getScore).average().orElse(0);
+
+        String text = question.toLowerCase(Locale.ROOT);
+        String knowledge = firstMatch(text, knowledgeKeywords);
+        String recency = firstMatch(text, recencyKeywords);
+        double score = similarity + (knowledge != null ? keywordWeight : 0) - (recency != null ? keywordWeight : 0);
+        String reason = "similarity=%.3f, knowledgeKeyword=%s, recencyKeyword=%s".formatted(similarity, knowledge,
+                recency);
+
+        if (score >= vectorstoreThreshold) {
+            return new RouteDecision(RouteDecision.VECTORSTORE, true, score, similarity, reason);
+        }
+        if (score <= webSearchThreshold) {
+            return new RouteDecision(RouteDecision.WEB_SEARCH, true, score, similarity, reason);
+        }
+        return new RouteDecision(null, false, score, similarity, reason);
+    }
+
+    private static String firstMatch(String text, List<String> keywords) {
+        return keywords.stream().filter(text::contains).findFirst().orElse(null);
+    }
+
+    private static List<String> lowerCase(List<String> keywords) {
+        return keywords.stream()
+                .map(String::strip)
+                .filter(keyword -> !keyword.isEmpty())
+                .map(keyword -> keyword.toLowerCase(Locale.ROOT))
+                .toList();
+    }
+}
@@ -0,0 +1,27 @@
+package com.ai.demo.routing;
+
+/**
+ * 本地路由结果
+ * @param dataSource vectorstore / web_search，落在不确定区间时为 null，需要交给大模型路由
+ * @param confident 是否由本地得分直接决定；交给大模型路由的结果为 false
+ * @param score 综合得分：知识库最近邻相似度加上关键词调整
+ * @param similarity 问题与知识库最近邻片段的平均相似度
+ * @param reason 决策依据，用于日志
+ */
+public record RouteDecision(String dataSource, boolean confident, double score, double similarity, String reason) {
+
+    public static final String VECTORSTORE = "vectorstore";
+
+    public static final String WEB_SEARCH = "web_search";
+
+    public boolean isUncertain() {
+        return dataSource == null;
+    }
+
+    /**
+     * @return 采用大模型路由结果后的决策，保留本地得分供日志与合并检索结果使用
+     */
+    public RouteDecision withLlmDataSource(String llmDataSource) {
+        return new RouteDecision(llmDataSource, false, score, similarity, reason);
+    }
+}
@@ -0,0 +1,40 @@
+package com.ai.demo.stream;
+
+/**
+ * 图执行过程中推送给客户端的事件
+ * @param type 事件类型，同时作为 SSE 事件名
+ * @param node 节点名，token 事件为 null
+ * @param data 事件内容：token 事件为文本片段，node_end 为节点执行后的状态摘要，done 为最终结果
+ */
+public record GraphEvent(String type, String node, Object data) {
+
+    public static final String NODE_START = "node_start";
+
+    public static final String NODE_END = "node_end";
+
+    public static final String TOKEN = "token";
+
+    public static final String DONE = "done";
+
+    public static final String ERROR = "error";
+
+    public static GraphEvent nodeStart(String node) {
+        return new GraphEvent(NODE_START, node, null);
+    }
+
+    public static GraphEvent nodeEnd(String node, Object summary) {
+        return new GraphEvent(NODE_END, node, summary);
+    }
+
+    public static GraphEvent token(String text) {
+        return new GraphEvent(TOKEN, null, text);
+    }
+
+    public static GraphEvent done(Object result) {
+        return new GraphEvent(DONE, null, result);
+    }
+
+    public static GraphEvent error(String message) {
+        return new GraphEvent(ERROR, null, message);
+    }
+}
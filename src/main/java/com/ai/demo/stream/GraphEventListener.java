@@ -0,0 +1,10 @@
+package com.ai.demo.stream;
+
+/**
+ * 接收图执行事件，实现可以抛出运行时异常中止图执行（如客户端已断开）
+ */
+@FunctionalInterface
+public interface GraphEventListener {
+
+    void onEvent(GraphEvent event);
+}
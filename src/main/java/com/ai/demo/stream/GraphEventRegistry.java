@@ -0,0 +1,41 @@
+package com.ai.demo.stream;
+
+import com.alibaba.cloud.ai.graph.OverAllState;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 流式请求的事件监听器登记表
+ * <p>与 {@link com.ai.demo.budget.BudgetRegistry} 相同，图状态只保存监听器 id（状态键 {@value #STATE_KEY}），
+ * 节点通过 {@link #of} 取回监听器；非流式请求没有监听器，节点照常阻塞调用大模型。</p>
+ */
+@Component
+public class GraphEventRegistry {
+
+    public static final String STATE_KEY = "stream_id";
+
+    private final Map<String, GraphEventListener> listeners = new ConcurrentHashMap<>();
+
+    /**
+     * @return 监听器 id，执行结束后必须调用 {@link #remove}
+     */
+    public String register(GraphEventListener listener) {
+        String id = UUID.randomUUID().toString();
+        listeners.put(id, listener);
+        return id;
+    }
+
+    /**
+     * @return 状态对应的监听器，非流式请求为 null
+     */
+    public GraphEventListener of(OverAllState state) {
+        return state.value(STATE_KEY, String.class).map(listeners::get).orElse(null);
+    }
+
+    public void remove(String id) {
+        listeners.remove(id);
+    }
+}
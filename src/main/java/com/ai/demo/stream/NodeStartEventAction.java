@@ -0,0 +1,34 @@
+package com.ai.demo.stream;
+
+import com.alibaba.cloud.ai.graph.OverAllState;
+import com.alibaba.cloud.ai.graph.action.NodeAction;
+
+import java.util.Map;
+
+/**
+ * 节点开始执行时推送 node_start 事件
+ * <p>图的流式输出只在节点结束后产生，开始事件需要在节点内部发出；node_end 事件由调用方根据流式输出推送。</p>
+ */
+public class NodeStartEventAction implements NodeAction {
+
+    private final String node;
+
+    private final NodeAction delegate;
+
+    private final GraphEventRegistry registry;
+
+    public NodeStartEventAction(String node, NodeAction delegate, GraphEventRegistry registry) {
+        this.node = node;
+        this.delegate = delegate;
+        this.registry = registry;
+    }
+
+    @Override
+    public Map<String, Object> apply(OverAllState state) throws Exception {
+        GraphEventListener listener = registry.of(state);
+        if (listener != null) {
+            listener.onEvent(GraphEvent.nodeStart(node));
+        }
+        return delegate.apply(state);
+    }
+}
@@ -0,0 +1,52 @@
+package com.ai.demo.stream;
+
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.messages.AbstractMessage;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 有监听器时以流式调用大模型并逐段推送 token，否则阻塞调用
+ * <p>两种方式都返回完整的 {@link ChatResponse}，节点写入状态的内容不变。</p>
+ */
+public final class StreamingChat {
+
+    private StreamingChat() {
+    }
+
+    /**
+     * @param request 已设置好提示词与 advisor 的请求
+     * @param listener 事件监听器，为 null 时阻塞调用
+     * @return 完整回答；流式调用时元数据取自最后一段响应（检索增强 advisor 在每段响应中都写入检索到的文档）
+     */
+    public static ChatResponse chatResponse(ChatClient.ChatClientRequestSpec request, GraphEventListener listener) {
+        if (listener == null) {
+            return request.call().chatResponse();
+        }
+        StringBuilder text = new StringBuilder();
+        AtomicReference<ChatResponse> last = new AtomicReference<>();
+        request.stream()
+                .chatResponse()
+                .doOnNext(response -> {
+                    last.set(response);
+                    String token = Optional.ofNullable(response.getResult())
+                            .map(Generation::getOutput)
+                            .map(AbstractMessage::getText)
+                            .orElse("");
+                    if (!token.isEmpty()) {
+                        text.append(token);
+                        listener.onEvent(GraphEvent.token(token));
+                    }
+                })
+                .blockLast();
+        ChatResponseMetadata metadata = last.get() != null ? last.get().getMetadata()
+                : ChatResponseMetadata.builder().build();
+        return new ChatResponse(List.of(new Generation(new AssistantMessage(text.toString()))), metadata);
+    }
+}
@@ -0,0 +1,119 @@
+package com.ai.demo.tool;
+
+import com.ai.demo.tool.WebSearchTool.TavilyRequest;
+import com.ai.demo.tool.WebSearchTool.TavilyResponse;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.JdkClientHttpConnector;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 非阻塞的 Tavily 搜索客户端：连接与读取超时、TTL 缓存、合并相同的进行中请求
+ * <p>缓存键为归一化后的请求：查询语句去掉首尾空白、合并连续空白并转为小写，其余搜索参数原样参与比较。
+ * 同一个键只有一个进行中的请求，其余调用方等待同一个结果；请求失败时不缓存，下次调用重新请求。</p>
+ */
+@Component
+@Slf4j
+public class TavilyClient {
+
+    private final WebClient webClient;
+
+    private final Duration readTimeout;
+
+    private final AsyncCache<TavilyRequest, TavilyResponse> cache;
+
+    private final LongAdder requests = new LongAdder();
+
+    /**
+     * @param webClientBuilder WebClient 构建器
+     * @param baseUrl Tavily 接口地址
+     * @param apiKey Tavily API key
+     * @param connectTimeout 连接超时
+     * @param readTimeout 从发出请求到收到完整响应的超时
+     * @param cacheTtl 搜索结果缓存时间，为 0 时只合并进行中的请求
+     * @param cacheMaxEntries 最大缓存条目数
+     */
+    public TavilyClient(WebClient.Builder webClientBuilder,
+            @Value("${tavily.base-url}") String baseUrl,
+            @Value("${tavily.api-key}") String apiKey,
+            @Value("${tavily.connect-timeout:5s}") Duration connectTimeout,
+            @Value("${tavily.read-timeout:15s}") Duration readTimeout,
+            @Value("${tavily.cache.ttl:10m}") Duration cacheTtl,
+            @Value("${tavily.cache.max-entries:1000}") long cacheMaxEntries) {
+        this.webClient = webClientBuilder
+                .baseUrl(baseUrl)
+                .clientConnector(new JdkClientHttpConnector(HttpClient.newBuilder()
+                        .connectTimeout(connectTimeout)
+                        .build()))
+                .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .defaultHeader(HttpHeaders.AUTHORIZATION, "Bearer " + apiKey)
+                .build();
+        this.readTimeout = readTimeout;
+        this.cache = Caffeine.newBuilder()
+                .expireAfterWrite(cacheTtl)
+                .maximumSize(cacheMaxEntries)
+                .recordStats()
+                .buildAsync();
+    }
+
+    /**
+     * @param request 搜索请求
+     * @return 搜索结果；命中缓存或已有相同的进行中请求时不会发出新请求
+     */
+    public Mono<TavilyResponse> search(TavilyRequest request) {
+        CompletableFuture<TavilyResponse> future = cache.get(normalize(request), (key, executor) -> {
+            requests.increment();
+            log.info("Sending request to Tavily API for query: {}", request.getQuery());
+            return post(request).toFuture();
+        });
+        // 多个调用方共享同一个请求，某个调用方取消订阅时不取消请求本身
+        return Mono.fromFuture(future, true);
+    }
+
+    private Mono<TavilyResponse> post(TavilyRequest request) {
+        return webClient.post()
+                .uri(uriBuilder -> uriBuilder.path("/search").build())
+                .bodyValue(request)
+                .retrieve()
+                .bodyToMono(TavilyResponse.class)
+                .timeout(readTimeout);
+    }
+
+    /**
+     * @return 缓存键：查询语句归一化后的请求副本
+     */
+    static TavilyRequest normalize(TavilyRequest request) {
+        String query = request.getQuery() == null ? ""
+                : request.getQuery().strip().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+        return request.toBuilder().query(query).build();
+    }
+
+    /**
+     * @return 实际发出的请求数与缓存命中统计，合并到进行中请求的调用也计为命中
+     */
+    public Map<String, Object> stats() {
+        CacheStats stats = cache.synchronous().stats();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("requests", requests.sum());
+        result.put("hits", stats.hitCount());
+        result.put("misses", stats.missCount());
+        result.put("hitRate", stats.hitRate());
+        result.put("entries", cache.synchronous().estimatedSize());
+        return result;
+    }
+}
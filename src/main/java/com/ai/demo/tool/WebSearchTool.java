@@ -1,5 +1,6 @@
 package com.ai.demo.tool;
 
+import com.ai.demo.execution.Bulkhead;
 import com.fasterxml.jackson.annotation.JsonClassDescription;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
@@ -16,11 +17,8 @@ import lombok.NoArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.tool.annotation.Tool;
 import org.springframework.ai.tool.annotation.ToolParam;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
-import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Mono;
 
 import java.io.IOException;
@@ -32,16 +30,17 @@ import java.util.List;
 @Slf4j
 public class WebSearchTool {
 
-    private final WebClient webClient;
+    private final TavilyClient tavilyClient;
 
-    public WebSearchTool(WebClient.Builder webClientBuilder,
-                         @Value("${tavily.base-url}") String baseUrl,
-                         @Value("${tavily.api-key}") String apiKey) {
-        this.webClient = webClientBuilder
-                .baseUrl(baseUrl)
-                .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
-                .defaultHeader(HttpHeaders.AUTHORIZATION, "Bearer " + apiKey)
-                .build();
+    /**
+     * 限制同时进行的搜索请求数，阻塞等待响应的线程为虚拟线程时线程数不再是上限
+     */
+    private final Bulkhead bulkhead;
+
+    public WebSearchTool(TavilyClient tavilyClient,
+                         @Qualifier("webSearchBulkhead") Bulkhead bulkhead) {
+        this.tavilyClient = tavilyClient;
+        this.bulkhead = bulkhead;
     }
 
     /**
@@ -52,6 +51,26 @@ public class WebSearchTool {
      */
     @Tool(description = "使用 Tavily API 进行网络搜索")
     public TavilyResponse search(@ToolParam(description = "search query to look up") String query) {
+        try {
+            TavilyResponse response = bulkhead.get(() -> searchAsync(query).block());
+
+            log.info("Received response from Tavily API for query: {}", query);
+            return response;
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("Error occurred while calling Tavily API: {}", e.getMessage(), e);
+            throw new RuntimeException("Failed to fetch search results from Tavily API", e);
+        }
+    }
+
+    /**
+     * 非阻塞的网络搜索，相同的查询命中缓存或合并到进行中的请求
+     *
+     * @param query 搜索语句
+     * @return 搜索结果
+     */
+    public Mono<TavilyResponse> searchAsync(String query) {
 
         TavilyRequest request = TavilyRequest.builder()
                 .query(query)
@@ -85,27 +104,14 @@ public class WebSearchTool {
                 requestWithApiKey.getQuery(), requestWithApiKey.getSearchDepth(), requestWithApiKey.getTopic(),
                 requestWithApiKey.getDays(), requestWithApiKey.getMaxResults());
 
-        try {
-            TavilyResponse response = webClient.post()
-                    .uri(uriBuilder -> uriBuilder.path("/search").build())
-                    .bodyValue(requestWithApiKey)
-                    .retrieve()
-                    .bodyToMono(TavilyResponse.class)
-                    .block();
-
-            log.info("Received response from Tavily API for query: {}", requestWithApiKey.getQuery());
-            return response;
-        } catch (Exception e) {
-            log.error("Error occurred while calling Tavily API: {}", e.getMessage(), e);
-            throw new RuntimeException("Failed to fetch search results from Tavily API", e);
-        }
+        return tavilyClient.search(requestWithApiKey);
     }
 
     /**
      * Request object for the Tavily API.
      */
     @Data
-    @Builder
+    @Builder(toBuilder = true)
     @NoArgsConstructor
     @AllArgsConstructor
     @JsonClassDescription("Request object for the Tavily API")
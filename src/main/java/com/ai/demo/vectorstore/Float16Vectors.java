@@ -0,0 +1,102 @@
+package com.ai.demo.vectorstore;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * 半精度浮点（IEEE 754 binary16）存储的向量
+ */
+final class Float16Vectors extends QuantizedVectors {
+
+    private final int dimensions;
+
+    private short[][] pages = new short[0][];
+
+    private int size;
+
+    private Float16Vectors(int dimensions) {
+        this.dimensions = dimensions;
+    }
+
+    static Float16Vectors build(int dimensions, int count, Source source) {
+        Float16Vectors vectors = new Float16Vectors(dimensions);
+        float[] row = new float[dimensions];
+        for (int node = 0; node < count; node++) {
+            source.copy(node, row);
+            vectors.append(row);
+        }
+        return vectors;
+    }
+
+    static Float16Vectors read(int dimensions, int count, MappedRegion region) {
+        Float16Vectors vectors = new Float16Vectors(dimensions);
+        long position = 0;
+        while (vectors.size < count) {
+            int rows = Math.min(ROWS_PER_PAGE, count - vectors.size);
+            byte[] bytes = new byte[rows * dimensions * Short.BYTES];
+            region.get(position, bytes, 0, bytes.length);
+            ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asShortBuffer()
+                    .get(vectors.newPage(), 0, rows * dimensions);
+            position += bytes.length;
+            vectors.size += rows;
+        }
+        return vectors;
+    }
+
+    @Override
+    VectorEncoding encoding() {
+        return VectorEncoding.FLOAT16;
+    }
+
+    @Override
+    int size() {
+        return size;
+    }
+
+    @Override
+    void append(float[] vector) {
+        if (size == pages.length * ROWS_PER_PAGE) {
+            newPage();
+        }
+        short[] page = pages[size / ROWS_PER_PAGE];
+        int offset = (size % ROWS_PER_PAGE) * dimensions;
+        for (int i = 0; i < dimensions; i++) {
+            page[offset + i] = Float.floatToFloat16(vector[i]);
+        }
+        size++;
+    }
+
+    @Override
+    VectorScorer scorer(float[] query, SimilarityKernel kernel) {
+        // JDK 21 的 Vector API 没有半精度类型，逐元素解码后做标量累加
+        return node -> {
+            short[] page = pages[node / ROWS_PER_PAGE];
+            int offset = (node % ROWS_PER_PAGE) * dimensions;
+            float sum = 0;
+            for (int i = 0; i < dimensions; i++) {
+                sum += query[i] * Float.float16ToFloat(page[offset + i]);
+            }
+            return sum;
+        };
+    }
+
+    @Override
+    long bytes() {
+        return (long) pages.length * ROWS_PER_PAGE * dimensions * Short.BYTES;
+    }
+
+    @Override
+    void writeTo(VectorSnapshot.ChannelWriter writer) throws IOException {
+        for (int node = 0; node < size; node += ROWS_PER_PAGE) {
+            writer.putShorts(pages[node / ROWS_PER_PAGE], 0, Math.min(ROWS_PER_PAGE, size - node) * dimensions);
+        }
+    }
+
+    private short[] newPage() {
+        pages = Arrays.copyOf(pages, pages.length + 1);
+        pages[pages.length - 1] = new short[ROWS_PER_PAGE * dimensions];
+        return pages[pages.length - 1];
+    }
+}
@@ -0,0 +1,50 @@
+package com.ai.demo.vectorstore;
+
+import java.util.Arrays;
+
+/**
+ * 堆内可追加的向量集合
+ */
+final class HeapVectorValues implements VectorValues {
+
+    private final int dimensions;
+
+    private float[][] rows = new float[16][];
+
+    private int size;
+
+    HeapVectorValues(int dimensions) {
+        this.dimensions = dimensions;
+    }
+
+    void append(float[] vector) {
+        if (size == rows.length) {
+            rows = Arrays.copyOf(rows, rows.length * 2);
+        }
+        rows[size++] = vector;
+    }
+
+    float[] row(int ord) {
+        return rows[ord];
+    }
+
+    @Override
+    public int dimensions() {
+        return dimensions;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void copy(int ord, float[] dst) {
+        System.arraycopy(rows[ord], 0, dst, 0, dimensions);
+    }
+
+    @Override
+    public float dot(SimilarityKernel kernel, float[] query, int ord, float[] scratch) {
+        return kernel.dot(query, rows[ord], 0, dimensions);
+    }
+}
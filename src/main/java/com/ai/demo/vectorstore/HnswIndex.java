@@ -0,0 +1,524 @@
+package com.ai.demo.vectorstore;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.IntPredicate;
+
+/**
+ * HNSW（Hierarchical Navigable Small World）近似最近邻图索引
+ * <p>向量写入前做 L2 归一化，余弦相似度退化为点积，点积由可替换的 {@link SimilarityKernel} 计算；删除采用墓碑标记，被删除的节点仍参与图导航但不会出现在结果中。</p>
+ * <p>向量可以来自只读的基础集合（如内存映射的快照文件），新写入的节点追加在堆内；
+ * 启用量化后查询在量化向量上遍历图，再用 float32 原始向量对候选重打分。
+ * 索引本身不是线程安全的：写操作需要外部互斥，只读查询可以并发执行。
+ * 查询使用的访问集合与行缓冲区取自索引内的对象池，查询结束后归还；查询运行在虚拟线程上时，线程本地缓存无法复用。</p>
+ */
+public class HnswIndex {
+
+    private static final int[] NO_LINKS = new int[0];
+
+    private static final Comparator<Neighbor> BEST_FIRST = Comparator.comparingDouble(Neighbor::score).reversed();
+
+    private static final Comparator<Neighbor> WORST_FIRST = Comparator.comparingDouble(Neighbor::score);
+
+    private final int dimensions;
+
+    private final int m;
+
+    private final int maxM0;
+
+    private final int efConstruction;
+
+    private final double levelMultiplier;
+
+    private final Random random;
+
+    private final SimilarityKernel kernel;
+
+    private final VectorValues base;
+
+    private final HeapVectorValues tail;
+
+    private final float[] nodeScratch;
+
+    private final float[] candidateScratch;
+
+    /**
+     * 写操作使用的临时空间，写操作由外部互斥
+     */
+    private final Scratch writeScratch;
+
+    /**
+     * 查询使用的临时空间，池大小随并发查询数的峰值增长
+     */
+    private final ConcurrentLinkedQueue<Scratch> scratchPool = new ConcurrentLinkedQueue<>();
+
+    private QuantizedVectors quantized;
+
+    private int rescoreMultiplier = 1;
+
+    /**
+     * links[node][level] 为该节点在对应层的邻居序号
+     */
+    private int[][][] links;
+
+    private final BitSet deleted;
+
+    private int size;
+
+    private int deletedCount;
+
+    private int entryPoint = -1;
+
+    private int maxLevel = -1;
+
+    public HnswIndex(int dimensions, int m, int efConstruction, long seed) {
+        this(dimensions, m, efConstruction, seed, SimilarityKernel.auto());
+    }
+
+    public HnswIndex(int dimensions, int m, int efConstruction, long seed, SimilarityKernel kernel) {
+        this(new HeapVectorValues(dimensions), m, efConstruction, new int[16][][], new BitSet(), -1, -1, seed, kernel);
+    }
+
+    /**
+     * 基于已有向量集合与图结构恢复索引（用于加载快照）
+     */
+    HnswIndex(VectorValues base, int m, int efConstruction, int[][][] links, BitSet deleted,
+            int entryPoint, int maxLevel, long seed, SimilarityKernel kernel) {
+        if (base.dimensions() <= 0) {
+            throw new IllegalArgumentException("dimensions must be positive");
+        }
+        if (m < 2) {
+            throw new IllegalArgumentException("m must be at least 2");
+        }
+        this.dimensions = base.dimensions();
+        this.m = m;
+        this.maxM0 = m * 2;
+        this.efConstruction = Math.max(efConstruction, m);
+        this.levelMultiplier = 1 / Math.log(m);
+        this.random = new Random(seed);
+        this.kernel = kernel;
+        this.base = base;
+        this.tail = new HeapVectorValues(dimensions);
+        this.nodeScratch = new float[dimensions];
+        this.candidateScratch = new float[dimensions];
+        this.writeScratch = new Scratch(dimensions);
+        this.size = base.size();
+        this.links = links.length > size ? links : Arrays.copyOf(links, Math.max(16, size * 2));
+        this.deleted = deleted;
+        this.deletedCount = deleted.cardinality();
+        this.entryPoint = entryPoint;
+        this.maxLevel = maxLevel;
+    }
+
+    /**
+     * 插入一个向量
+     * @param vector 原始向量，内部会复制并归一化
+     * @return 分配的节点序号
+     */
+    public int add(float[] vector) {
+        if (vector.length != dimensions) {
+            throw new IllegalArgumentException("Expected " + dimensions + " dimensions but got " + vector.length);
+        }
+        int node = size;
+        ensureCapacity(node + 1);
+        float[] normalized = kernel.normalize(vector.clone());
+        tail.append(normalized);
+        if (quantized != null) {
+            quantized.append(normalized);
+        }
+
+        int level = randomLevel();
+        links[node] = new int[level + 1][];
+        Arrays.fill(links[node], NO_LINKS);
+        size++;
+
+        if (entryPoint < 0) {
+            entryPoint = node;
+            maxLevel = level;
+            return node;
+        }
+
+        // 建图始终使用精确相似度，保证图质量不受量化误差影响
+        float[] row = writeScratch.row;
+        VectorScorer scorer = n -> similarity(normalized, n, row);
+        int current = entryPoint;
+        for (int l = maxLevel; l > level; l--) {
+            current = greedyClosest(scorer, current, l);
+        }
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            List<Neighbor> candidates = sortedBestFirst(searchLayer(scorer, current, efConstruction, l, n -> true,
+                    writeScratch.visited));
+            int[] selected = selectNeighbors(candidates, m);
+            links[node][l] = selected;
+            int maxConnections = l == 0 ? maxM0 : m;
+            for (int neighbor : selected) {
+                connect(neighbor, node, l, maxConnections);
+            }
+            current = candidates.getFirst().node();
+        }
+
+        if (level > maxLevel) {
+            maxLevel = level;
+            entryPoint = node;
+        }
+        return node;
+    }
+
+    /**
+     * 标记删除节点
+     * @param node 节点序号
+     */
+    public void markDeleted(int node) {
+        if (node >= 0 && node < size && !deleted.get(node)) {
+            deleted.set(node);
+            deletedCount++;
+        }
+    }
+
+    public boolean isDeleted(int node) {
+        return deleted.get(node);
+    }
+
+    /**
+     * 近似 top-k 查询
+     * @param query 查询向量，内部会复制并归一化
+     * @param k 返回数量
+     * @param ef 查询时的候选队列长度，越大召回越高
+     * @param accept 额外的节点过滤条件（如元数据过滤）
+     * @return 按相似度降序排列的结果
+     */
+    public List<Neighbor> search(float[] query, int k, int ef, IntPredicate accept) {
+        if (entryPoint < 0 || k <= 0) {
+            return List.of();
+        }
+        float[] normalized = kernel.normalize(query.clone());
+        Scratch scratch = acquireScratch();
+        try {
+            float[] row = scratch.row;
+            VectorScorer scorer = quantized != null ? quantized.scorer(normalized, kernel)
+                    : n -> similarity(normalized, n, row);
+            int current = entryPoint;
+            for (int l = maxLevel; l > 0; l--) {
+                current = greedyClosest(scorer, current, l);
+            }
+            IntPredicate live = n -> !deleted.get(n) && accept.test(n);
+            int candidates = quantized != null ? Math.max(ef, k * rescoreMultiplier) : Math.max(ef, k);
+            List<Neighbor> results = sortedBestFirst(searchLayer(scorer, current, candidates, 0, live,
+                    scratch.visited));
+            if (quantized != null) {
+                results = rescore(normalized, results, row);
+            }
+            return results.size() > k ? List.copyOf(results.subList(0, k)) : results;
+        } finally {
+            scratchPool.offer(scratch);
+        }
+    }
+
+    /**
+     * 精确暴力 top-k 查询，用于评估近似查询的召回率
+     */
+    public List<Neighbor> exactSearch(float[] query, int k, IntPredicate accept) {
+        float[] normalized = kernel.normalize(query.clone());
+        float[] row = new float[dimensions];
+        PriorityQueue<Neighbor> results = new PriorityQueue<>(WORST_FIRST);
+        for (int node = 0; node < size; node++) {
+            if (deleted.get(node) || !accept.test(node)) {
+                continue;
+            }
+            results.add(new Neighbor(node, similarity(normalized, node, row)));
+            if (results.size() > k) {
+                results.poll();
+            }
+        }
+        return sortedBestFirst(results);
+    }
+
+    /**
+     * 启用量化检索
+     * @param quantized 与当前所有节点一一对应的量化向量
+     * @param rescoreMultiplier 参与 float32 重打分的候选数为 topK 的倍数
+     */
+    void quantize(QuantizedVectors quantized, int rescoreMultiplier) {
+        if (quantized.size() != size) {
+            throw new IllegalArgumentException("Quantized vectors do not match index size");
+        }
+        this.quantized = quantized;
+        this.rescoreMultiplier = Math.max(1, rescoreMultiplier);
+    }
+
+    /**
+     * 以当前所有节点的向量构建量化数据
+     */
+    QuantizedVectors buildQuantized(VectorEncoding encoding) {
+        return QuantizedVectors.build(encoding, dimensions, size, this::copyVector);
+    }
+
+    QuantizedVectors quantized() {
+        return quantized;
+    }
+
+    public int dimensions() {
+        return dimensions;
+    }
+
+    /**
+     * @return 已分配的节点数（含已删除节点）
+     */
+    public int size() {
+        return size;
+    }
+
+    public int liveCount() {
+        return size - deletedCount;
+    }
+
+    public int deletedCount() {
+        return deletedCount;
+    }
+
+    public int m() {
+        return m;
+    }
+
+    public int efConstruction() {
+        return efConstruction;
+    }
+
+    int entryPoint() {
+        return entryPoint;
+    }
+
+    int maxLevel() {
+        return maxLevel;
+    }
+
+    /**
+     * @return 节点各层邻居（内部数组，调用方不得修改）
+     */
+    int[][] links(int node) {
+        return links[node];
+    }
+
+    BitSet deleted() {
+        return (BitSet) deleted.clone();
+    }
+
+    /**
+     * 将归一化后的向量复制到 dst
+     */
+    public void copyVector(int node, float[] dst) {
+        if (node < base.size()) {
+            base.copy(node, dst);
+        } else {
+            tail.copy(node - base.size(), dst);
+        }
+    }
+
+    private List<Neighbor> rescore(float[] query, List<Neighbor> candidates, float[] row) {
+        List<Neighbor> rescored = new ArrayList<>(candidates.size());
+        for (Neighbor candidate : candidates) {
+            rescored.add(new Neighbor(candidate.node(), similarity(query, candidate.node(), row)));
+        }
+        rescored.sort(BEST_FIRST);
+        return rescored;
+    }
+
+    /**
+     * @param row 长度为 dimensions 的缓冲区，内存映射的向量先复制到这里再计算
+     */
+    private float similarity(float[] query, int node, float[] row) {
+        return node < base.size() ? base.dot(kernel, query, node, row)
+                : tail.dot(kernel, query, node - base.size(), row);
+    }
+
+    private Scratch acquireScratch() {
+        Scratch scratch = scratchPool.poll();
+        return scratch != null ? scratch : new Scratch(dimensions);
+    }
+
+    private float[] vectorOf(int node, float[] scratch) {
+        if (node < base.size()) {
+            base.copy(node, scratch);
+            return scratch;
+        }
+        return tail.row(node - base.size());
+    }
+
+    private int greedyClosest(VectorScorer scorer, int entry, int level) {
+        int current = entry;
+        float best = scorer.score(current);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int neighbor : links[current][level]) {
+                float score = scorer.score(neighbor);
+                if (score > best) {
+                    best = score;
+                    current = neighbor;
+                    changed = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    private PriorityQueue<Neighbor> searchLayer(VectorScorer scorer, int entry, int ef, int level, IntPredicate accept,
+            VisitedSet visited) {
+        visited.reset(size);
+
+        PriorityQueue<Neighbor> candidates = new PriorityQueue<>(BEST_FIRST);
+        PriorityQueue<Neighbor> results = new PriorityQueue<>(WORST_FIRST);
+
+        Neighbor start = new Neighbor(entry, scorer.score(entry));
+        visited.add(entry);
+        candidates.add(start);
+        if (accept.test(entry)) {
+            results.add(start);
+        }
+
+        while (!candidates.isEmpty()) {
+            Neighbor candidate = candidates.poll();
+            if (results.size() >= ef && candidate.score() < results.peek().score()) {
+                break;
+            }
+            for (int neighbor : links[candidate.node()][level]) {
+                if (!visited.add(neighbor)) {
+                    continue;
+                }
+                float score = scorer.score(neighbor);
+                if (results.size() < ef || score > results.peek().score()) {
+                    Neighbor next = new Neighbor(neighbor, score);
+                    candidates.add(next);
+                    if (accept.test(neighbor)) {
+                        results.add(next);
+                        if (results.size() > ef) {
+                            results.poll();
+                        }
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * 启发式邻居选择：优先保留彼此分散的候选，避免邻居聚集在同一方向，不足时用被裁剪的候选补齐
+     */
+    private int[] selectNeighbors(List<Neighbor> candidatesBestFirst, int maxConnections) {
+        if (candidatesBestFirst.size() <= maxConnections) {
+            return candidatesBestFirst.stream().mapToInt(Neighbor::node).toArray();
+        }
+        List<Neighbor> selected = new ArrayList<>(maxConnections);
+        List<Neighbor> pruned = new ArrayList<>();
+        for (Neighbor candidate : candidatesBestFirst) {
+            if (selected.size() >= maxConnections) {
+                break;
+            }
+            boolean diverse = true;
+            float[] candidateVector = vectorOf(candidate.node(), candidateScratch);
+            for (Neighbor kept : selected) {
+                if (similarity(candidateVector, kept.node(), writeScratch.row) > candidate.score()) {
+                    diverse = false;
+                    break;
+                }
+            }
+            if (diverse) {
+                selected.add(candidate);
+            } else {
+                pruned.add(candidate);
+            }
+        }
+        for (int i = 0; i < pruned.size() && selected.size() < maxConnections; i++) {
+            selected.add(pruned.get(i));
+        }
+        return selected.stream().mapToInt(Neighbor::node).toArray();
+    }
+
+    private void connect(int node, int newNeighbor, int level, int maxConnections) {
+        int[] current = links[node][level];
+        int[] extended = Arrays.copyOf(current, current.length + 1);
+        extended[current.length] = newNeighbor;
+        if (extended.length <= maxConnections) {
+            links[node][level] = extended;
+            return;
+        }
+        float[] nodeVector = vectorOf(node, nodeScratch);
+        List<Neighbor> candidates = new ArrayList<>(extended.length);
+        for (int neighbor : extended) {
+            candidates.add(new Neighbor(neighbor, similarity(nodeVector, neighbor, writeScratch.row)));
+        }
+        candidates.sort(BEST_FIRST);
+        links[node][level] = selectNeighbors(candidates, maxConnections);
+    }
+
+    private int randomLevel() {
+        return (int) (-Math.log(1 - random.nextDouble()) * levelMultiplier);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > links.length) {
+            links = Arrays.copyOf(links, Math.max(capacity, links.length * 2));
+        }
+    }
+
+    private static List<Neighbor> sortedBestFirst(PriorityQueue<Neighbor> queue) {
+        List<Neighbor> list = new ArrayList<>(queue);
+        list.sort(BEST_FIRST);
+        return list;
+    }
+
+    /**
+     * 查询结果：节点序号与余弦相似度
+     */
+    public record Neighbor(int node, float score) {
+    }
+
+    /**
+     * 一次查询或写操作的临时空间：访问集合与行缓冲区
+     */
+    private static final class Scratch {
+
+        private final VisitedSet visited = new VisitedSet();
+
+        private final float[] row;
+
+        Scratch(int dimensions) {
+            this.row = new float[dimensions];
+        }
+    }
+
+    /**
+     * 基于纪元戳的访问集合，随临时空间复用，避免每次查询分配位图
+     */
+    private static final class VisitedSet {
+
+        private int[] marks = new int[0];
+
+        private int epoch;
+
+        void reset(int capacity) {
+            if (marks.length < capacity) {
+                marks = new int[Math.max(capacity, marks.length * 2)];
+            }
+            epoch++;
+            if (epoch == 0) {
+                Arrays.fill(marks, 0);
+                epoch = 1;
+            }
+        }
+
+        boolean add(int node) {
+            if (marks[node] == epoch) {
+                return false;
+            }
+            marks[node] = epoch;
+            return true;
+        }
+    }
+}
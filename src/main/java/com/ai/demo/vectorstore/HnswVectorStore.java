@@ -0,0 +1,559 @@
+package com.ai.demo.vectorstore;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.document.MetadataMode;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.observation.conventions.VectorStoreProvider;
+import org.springframework.ai.observation.conventions.VectorStoreSimilarityMetric;
+import org.springframework.ai.vectorstore.AbstractVectorStoreBuilder;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.ai.vectorstore.filter.FilterExpressionConverter;
+import org.springframework.ai.vectorstore.filter.converter.SimpleVectorStoreFilterExpressionConverter;
+import org.springframework.ai.vectorstore.observation.AbstractObservationVectorStore;
+import org.springframework.ai.vectorstore.observation.VectorStoreObservationContext;
+import org.springframework.expression.Expression;
+import org.springframework.expression.ExpressionParser;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
+import org.springframework.util.Assert;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collection;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * 基于进程内 HNSW 图索引的向量库，可直接替换 {@link org.springframework.ai.vectorstore.SimpleVectorStore}
+ * <p>查询复杂度随语料规模亚线性增长；支持增量新增/删除。持久化采用内存映射的二进制快照（见 {@link VectorSnapshot}），
+ * 加载后向量留在堆外，快照之后新增的文档追加在堆内，下次保存时合并。</p>
+ * <p>可选 INT8/FLOAT16 量化：图遍历在紧凑的量化向量上进行，再取 topK 的若干倍候选用 float32 原始向量重打分，
+ * 以较小的召回损失换取更低的内存带宽占用。</p>
+ */
+@Slf4j
+public class HnswVectorStore extends AbstractObservationVectorStore implements LocalVectorStore {
+
+    /**
+     * 墓碑节点超过该比例时，保存前先压缩重建索引
+     */
+    private static final double COMPACTION_RATIO = 0.25;
+
+    private static final long SEED = 42L;
+
+    private final int m;
+
+    private final int efConstruction;
+
+    private final int efSearch;
+
+    private final VectorEncoding encoding;
+
+    private final int rescoreMultiplier;
+
+    private final SimilarityKernel kernel;
+
+    private final ExpressionParser expressionParser = new SpelExpressionParser();
+
+    private final FilterExpressionConverter filterExpressionConverter = new SimpleVectorStoreFilterExpressionConverter();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<String, Integer> ordinals = new HashMap<>();
+
+    /**
+     * 快照之后写入的文档，下标为 节点序号 - 快照节点数，已删除的位置为 null
+     */
+    private final List<StoredDocument> documents = new ArrayList<>();
+
+    private HnswIndex index;
+
+    private VectorSnapshot snapshot;
+
+    private long modifications;
+
+    protected HnswVectorStore(HnswVectorStoreBuilder builder) {
+        super(builder);
+        this.m = builder.m;
+        this.efConstruction = builder.efConstruction;
+        this.efSearch = builder.efSearch;
+        this.encoding = builder.encoding;
+        this.rescoreMultiplier = builder.rescoreMultiplier;
+        this.kernel = builder.kernel;
+        log.info("Using {} similarity kernel", kernel.name());
+    }
+
+    public static HnswVectorStoreBuilder builder(EmbeddingModel embeddingModel) {
+        return new HnswVectorStoreBuilder(embeddingModel);
+    }
+
+    @Override
+    public void doAdd(List<Document> documents) {
+        Objects.requireNonNull(documents, "Documents list cannot be null");
+        if (documents.isEmpty()) {
+            return;
+        }
+        List<float[]> embeddings = new ArrayList<>(documents.size());
+        for (List<Document> batch : this.batchingStrategy.batch(documents)) {
+            log.info("Calling EmbeddingModel for {} documents", batch.size());
+            embeddings.addAll(this.embeddingModel.embed(batch.stream()
+                    .map(document -> document.getFormattedContent(MetadataMode.EMBED))
+                    .toList()));
+        }
+        add(documents, embeddings);
+    }
+
+    @Override
+    public void add(List<Document> documents, List<float[]> embeddings) {
+        Assert.isTrue(documents.size() == embeddings.size(), "Documents and embeddings must have the same size");
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < documents.size(); i++) {
+                Document document = documents.get(i);
+                float[] embedding = embeddings.get(i);
+                if (index == null) {
+                    index = new HnswIndex(embedding.length, m, efConstruction, SEED, kernel);
+                }
+                remove(document.getId());
+                int ordinal = index.add(embedding);
+                this.documents.add(new StoredDocument(document.getId(), document.getText(),
+                        new HashMap<>(document.getMetadata())));
+                ordinals.put(document.getId(), ordinal);
+            }
+            if (index.quantized() == null) {
+                quantize(null);
+            }
+            modifications++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void doDelete(List<String> idList) {
+        lock.writeLock().lock();
+        try {
+            idList.forEach(this::remove);
+            modifications++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void doDelete(Filter.Expression filterExpression) {
+        Predicate<Map<String, Object>> predicate = filterPredicate(filterExpression);
+        lock.writeLock().lock();
+        try {
+            List<String> matched = ordinals.values().stream()
+                    .map(this::document)
+                    .filter(document -> predicate.test(document.metadata()))
+                    .map(StoredDocument::id)
+                    .toList();
+            matched.forEach(this::remove);
+            modifications++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Document> doSimilaritySearch(SearchRequest request) {
+        return similaritySearch(request, this.embeddingModel.embed(request.getQuery()));
+    }
+
+    @Override
+    public List<Document> similaritySearch(SearchRequest request, float[] queryEmbedding) {
+        Predicate<Map<String, Object>> filter = request.hasFilterExpression()
+                ? filterPredicate(request.getFilterExpression()) : metadata -> true;
+
+        lock.readLock().lock();
+        try {
+            if (index == null) {
+                return List.of();
+            }
+            return index.search(queryEmbedding, request.getTopK(), Math.max(efSearch, request.getTopK()),
+                            node -> filter.test(document(node).metadata()))
+                    .stream()
+                    .filter(neighbor -> neighbor.score() >= request.getSimilarityThreshold())
+                    .map(neighbor -> document(neighbor.node()).toDocument(neighbor.score()))
+                    .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public VectorStoreObservationContext.Builder createObservationContextBuilder(String operationName) {
+        return VectorStoreObservationContext.builder(VectorStoreProvider.SIMPLE.value(), operationName)
+                .dimensions(index != null ? index.dimensions() : this.embeddingModel.dimensions())
+                .collectionName("hnsw-index")
+                .similarityMetric(VectorStoreSimilarityMetric.COSINE.value());
+    }
+
+    @Override
+    public void forEach(BiConsumer<Document, float[]> consumer) {
+        lock.readLock().lock();
+        try {
+            if (index == null) {
+                return;
+            }
+            for (int node : ordinals.values()) {
+                float[] vector = new float[index.dimensions()];
+                index.copyVector(node, vector);
+                consumer.accept(document(node).toDocument(), vector);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void forEachDocument(Consumer<Document> consumer) {
+        lock.readLock().lock();
+        try {
+            for (int node : ordinals.values()) {
+                consumer.accept(document(node).toDocument());
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Map<String, float[]> embeddings(Collection<String> ids) {
+        lock.readLock().lock();
+        try {
+            Map<String, float[]> embeddings = new HashMap<>();
+            if (index == null) {
+                return embeddings;
+            }
+            for (String id : ids) {
+                Integer node = ordinals.get(id);
+                if (node != null) {
+                    float[] vector = new float[index.dimensions()];
+                    index.copyVector(node, vector);
+                    embeddings.put(id, vector);
+                }
+            }
+            return embeddings;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return ordinals.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public long version() {
+        lock.readLock().lock();
+        try {
+            return modifications;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 以精确暴力检索为基准，评估近似检索的平均召回率
+     * @param queries 查询向量
+     * @param k topK
+     * @return recall@k，取值 0~1
+     */
+    public double recallAtK(List<float[]> queries, int k) {
+        lock.readLock().lock();
+        try {
+            if (index == null || queries.isEmpty()) {
+                return 1.0;
+            }
+            double total = 0;
+            for (float[] query : queries) {
+                Set<Integer> expected = new HashSet<>();
+                index.exactSearch(query, k, node -> true).forEach(neighbor -> expected.add(neighbor.node()));
+                if (expected.isEmpty()) {
+                    total += 1.0;
+                    continue;
+                }
+                long hits = index.search(query, k, Math.max(efSearch, k), node -> true).stream()
+                        .filter(neighbor -> expected.contains(neighbor.node()))
+                        .count();
+                total += (double) hits / expected.size();
+            }
+            return total / queries.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean hasSnapshot(File file) {
+        return file.exists();
+    }
+
+    /**
+     * 保存为二进制快照，并重新映射该快照，使快照之后堆内新增的向量转移到堆外
+     * @param file 目标文件
+     */
+    @Override
+    public void save(File file) {
+        lock.readLock().lock();
+        try {
+            if (index == null) {
+                log.info("Vector store is empty, skip saving to {}", file);
+                return;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (index.deletedCount() > index.size() * COMPACTION_RATIO) {
+            compact();
+        }
+
+        long savedModifications;
+        lock.readLock().lock();
+        try {
+            // 保存时基于全部向量重新训练量化参数，修正增量写入带来的取值范围偏差
+            QuantizedVectors quantized = encoding == VectorEncoding.FLOAT32 ? null : index.buildQuantized(encoding);
+            VectorSnapshot.write(file.toPath(), index, this::document, quantized);
+            savedModifications = modifications;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to save vector store to " + file, e);
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        lock.writeLock().lock();
+        try {
+            // 保存期间没有新的写入时才切换到新快照，否则保留堆内数据等待下次保存
+            if (modifications == savedModifications) {
+                open(file);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 通过内存映射加载二进制快照，替换当前内容
+     * @param file 快照文件
+     */
+    @Override
+    public void load(File file) {
+        long start = System.nanoTime();
+        lock.writeLock().lock();
+        try {
+            open(file);
+            modifications++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Loaded {} documents from snapshot {} in {} ms", size(), file, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * 清空全部文档，如加载快照时对应的文件不存在（保存时为空）
+     */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            index = null;
+            snapshot = null;
+            documents.clear();
+            ordinals.clear();
+            modifications++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void open(File file) {
+        try {
+            VectorSnapshot opened = VectorSnapshot.open(file.toPath(), SEED, kernel);
+            snapshot = opened;
+            index = opened.index();
+            documents.clear();
+            ordinals.clear();
+            for (int node = 0; node < opened.count(); node++) {
+                if (!index.isDeleted(node)) {
+                    ordinals.put(opened.id(node), node);
+                }
+            }
+            quantize(opened.quantized());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to load vector store from " + file, e);
+        }
+    }
+
+    /**
+     * 仅保留有效节点重建索引，清除墓碑
+     */
+    private void compact() {
+        lock.writeLock().lock();
+        try {
+            HnswIndex compacted = new HnswIndex(index.dimensions(), m, efConstruction, SEED, kernel);
+            List<StoredDocument> live = new ArrayList<>(ordinals.size());
+            Map<String, Integer> compactedOrdinals = new HashMap<>();
+            float[] vector = new float[index.dimensions()];
+            for (int node = 0; node < index.size(); node++) {
+                if (index.isDeleted(node)) {
+                    continue;
+                }
+                index.copyVector(node, vector);
+                StoredDocument document = document(node);
+                compactedOrdinals.put(document.id(), compacted.add(vector));
+                live.add(document);
+            }
+            log.info("Compacted HNSW index from {} to {} nodes", index.size(), compacted.size());
+            index = compacted;
+            snapshot = null;
+            documents.clear();
+            documents.addAll(live);
+            ordinals.clear();
+            ordinals.putAll(compactedOrdinals);
+            quantize(null);
+            modifications++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 为当前索引启用量化检索，优先复用快照中编码一致的量化数据
+     */
+    private void quantize(QuantizedVectors stored) {
+        if (encoding == VectorEncoding.FLOAT32 || index == null || index.size() == 0) {
+            return;
+        }
+        QuantizedVectors quantized = stored != null && stored.encoding() == encoding
+                ? stored : index.buildQuantized(encoding);
+        index.quantize(quantized, rescoreMultiplier);
+        log.info("Quantized {} vectors as {}, {} KB on heap", quantized.size(), encoding, quantized.bytes() / 1024);
+    }
+
+    private StoredDocument document(int node) {
+        int snapshotCount = snapshot != null ? snapshot.count() : 0;
+        if (node >= snapshotCount) {
+            return documents.get(node - snapshotCount);
+        }
+        return index.isDeleted(node) ? null : snapshot.document(node);
+    }
+
+    private void remove(String id) {
+        Integer ordinal = ordinals.remove(id);
+        if (ordinal != null) {
+            index.markDeleted(ordinal);
+            int snapshotCount = snapshot != null ? snapshot.count() : 0;
+            if (ordinal >= snapshotCount) {
+                documents.set(ordinal - snapshotCount, null);
+            }
+        }
+    }
+
+    private Predicate<Map<String, Object>> filterPredicate(Filter.Expression filterExpression) {
+        Expression expression = expressionParser.parseExpression(
+                filterExpressionConverter.convertExpression(filterExpression));
+        return metadata -> {
+            StandardEvaluationContext context = new StandardEvaluationContext();
+            context.setVariable("metadata", metadata);
+            return Boolean.TRUE.equals(expression.getValue(context, Boolean.class));
+        };
+    }
+
+    public static final class HnswVectorStoreBuilder extends AbstractVectorStoreBuilder<HnswVectorStoreBuilder> {
+
+        private int m = 16;
+
+        private int efConstruction = 200;
+
+        private int efSearch = 64;
+
+        private VectorEncoding encoding = VectorEncoding.FLOAT32;
+
+        private int rescoreMultiplier = 4;
+
+        private SimilarityKernel kernel = SimilarityKernel.auto();
+
+        private HnswVectorStoreBuilder(EmbeddingModel embeddingModel) {
+            super(embeddingModel);
+        }
+
+        /**
+         * @param m 每个节点在上层的最大邻居数（第 0 层为 2m）
+         */
+        public HnswVectorStoreBuilder m(int m) {
+            Assert.isTrue(m >= 2, "m must be at least 2");
+            this.m = m;
+            return this;
+        }
+
+        /**
+         * @param efConstruction 建图时的候选队列长度
+         */
+        public HnswVectorStoreBuilder efConstruction(int efConstruction) {
+            Assert.isTrue(efConstruction > 0, "efConstruction must be positive");
+            this.efConstruction = efConstruction;
+            return this;
+        }
+
+        /**
+         * @param efSearch 查询时的候选队列长度，实际取值不小于 topK
+         */
+        public HnswVectorStoreBuilder efSearch(int efSearch) {
+            Assert.isTrue(efSearch > 0, "efSearch must be positive");
+            this.efSearch = efSearch;
+            return this;
+        }
+
+        /**
+         * @param encoding 图遍历使用的向量编码，FLOAT32 表示不量化
+         */
+        public HnswVectorStoreBuilder encoding(VectorEncoding encoding) {
+            Assert.notNull(encoding, "encoding must not be null");
+            this.encoding = encoding;
+            return this;
+        }
+
+        /**
+         * @param rescoreMultiplier 量化检索时取 topK 的多少倍候选做 float32 重打分
+         */
+        public HnswVectorStoreBuilder rescoreMultiplier(int rescoreMultiplier) {
+            Assert.isTrue(rescoreMultiplier >= 1, "rescoreMultiplier must be at least 1");
+            this.rescoreMultiplier = rescoreMultiplier;
+            return this;
+        }
+
+        /**
+         * @param kernel 相似度计算内核，默认在 Vector API 可用时使用 SIMD 实现
+         */
+        public HnswVectorStoreBuilder similarityKernel(SimilarityKernel kernel) {
+            Assert.notNull(kernel, "kernel must not be null");
+            this.kernel = kernel;
+            return this;
+        }
+
+        @Override
+        public HnswVectorStore build() {
+            return new HnswVectorStore(this);
+        }
+    }
+}
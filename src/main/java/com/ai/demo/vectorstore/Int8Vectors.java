@@ -0,0 +1,133 @@
+package com.ai.demo.vectorstore;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * 按维度 min/max 做线性标量量化的 8 位向量
+ * <p>x ≈ min[i] + code * scale[i]，因此 q·x = Σ q[i]·min[i] + Σ (q[i]·scale[i])·code，
+ * 两部分均可按查询预计算，内层循环只剩一次乘加。超出训练范围的新向量会被截断，由重打分修正排序。</p>
+ */
+final class Int8Vectors extends QuantizedVectors {
+
+    private static final int LEVELS = 255;
+
+    private final int dimensions;
+
+    private final float[] min;
+
+    private final float[] scale;
+
+    private byte[][] pages = new byte[0][];
+
+    private int size;
+
+    private Int8Vectors(int dimensions, float[] min, float[] scale) {
+        this.dimensions = dimensions;
+        this.min = min;
+        this.scale = scale;
+    }
+
+    static Int8Vectors train(int dimensions, int count, Source source) {
+        float[] min = new float[dimensions];
+        float[] max = new float[dimensions];
+        Arrays.fill(min, count > 0 ? Float.POSITIVE_INFINITY : -1);
+        Arrays.fill(max, count > 0 ? Float.NEGATIVE_INFINITY : 1);
+        float[] row = new float[dimensions];
+        for (int node = 0; node < count; node++) {
+            source.copy(node, row);
+            for (int i = 0; i < dimensions; i++) {
+                min[i] = Math.min(min[i], row[i]);
+                max[i] = Math.max(max[i], row[i]);
+            }
+        }
+        float[] scale = new float[dimensions];
+        for (int i = 0; i < dimensions; i++) {
+            scale[i] = (max[i] - min[i]) / LEVELS;
+        }
+        Int8Vectors vectors = new Int8Vectors(dimensions, min, scale);
+        for (int node = 0; node < count; node++) {
+            source.copy(node, row);
+            vectors.append(row);
+        }
+        return vectors;
+    }
+
+    static Int8Vectors read(int dimensions, int count, MappedRegion region) {
+        long position = 0;
+        float[] min = new float[dimensions];
+        float[] scale = new float[dimensions];
+        for (int i = 0; i < dimensions; i++, position += Float.BYTES) {
+            min[i] = Float.intBitsToFloat(region.getInt(position));
+        }
+        for (int i = 0; i < dimensions; i++, position += Float.BYTES) {
+            scale[i] = Float.intBitsToFloat(region.getInt(position));
+        }
+        Int8Vectors vectors = new Int8Vectors(dimensions, min, scale);
+        while (vectors.size < count) {
+            int rows = Math.min(ROWS_PER_PAGE, count - vectors.size);
+            byte[] page = vectors.newPage();
+            region.get(position, page, 0, rows * dimensions);
+            position += (long) rows * dimensions;
+            vectors.size += rows;
+        }
+        return vectors;
+    }
+
+    @Override
+    VectorEncoding encoding() {
+        return VectorEncoding.INT8;
+    }
+
+    @Override
+    int size() {
+        return size;
+    }
+
+    @Override
+    void append(float[] vector) {
+        if (size == pages.length * ROWS_PER_PAGE) {
+            newPage();
+        }
+        byte[] page = pages[size / ROWS_PER_PAGE];
+        int offset = (size % ROWS_PER_PAGE) * dimensions;
+        for (int i = 0; i < dimensions; i++) {
+            int code = scale[i] == 0 ? 0 : Math.round((vector[i] - min[i]) / scale[i]);
+            page[offset + i] = (byte) Math.clamp(code, 0, LEVELS);
+        }
+        size++;
+    }
+
+    @Override
+    VectorScorer scorer(float[] query, SimilarityKernel kernel) {
+        float bias = 0;
+        float[] scaled = new float[dimensions];
+        for (int i = 0; i < dimensions; i++) {
+            bias += query[i] * min[i];
+            scaled[i] = query[i] * scale[i];
+        }
+        float queryBias = bias;
+        return node -> queryBias + kernel.dotUnsigned(scaled, pages[node / ROWS_PER_PAGE],
+                (node % ROWS_PER_PAGE) * dimensions, dimensions);
+    }
+
+    @Override
+    long bytes() {
+        return (long) pages.length * ROWS_PER_PAGE * dimensions + 2L * dimensions * Float.BYTES;
+    }
+
+    @Override
+    void writeTo(VectorSnapshot.ChannelWriter writer) throws IOException {
+        writer.putFloats(min);
+        writer.putFloats(scale);
+        for (int node = 0; node < size; node += ROWS_PER_PAGE) {
+            writer.putBytes(pages[node / ROWS_PER_PAGE], 0, Math.min(ROWS_PER_PAGE, size - node) * dimensions);
+        }
+    }
+
+    private byte[] newPage() {
+        pages = Arrays.copyOf(pages, pages.length + 1);
+        pages[pages.length - 1] = new byte[ROWS_PER_PAGE * dimensions];
+        return pages[pages.length - 1];
+    }
+}
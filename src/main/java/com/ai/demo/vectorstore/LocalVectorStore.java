@@ -0,0 +1,95 @@
+package com.ai.demo.vectorstore;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * 进程内向量库：在 {@link VectorStore} 之上补充预计算向量写入、按向量检索与快照持久化
+ */
+public interface LocalVectorStore extends VectorStore {
+
+    /**
+     * 写入已经计算好向量的文档，跳过 EmbeddingModel 调用
+     * @param documents 文档
+     * @param embeddings 与文档一一对应的向量
+     */
+    void add(List<Document> documents, List<float[]> embeddings);
+
+    /**
+     * 使用已经计算好的查询向量检索，忽略 request 中的查询文本
+     * @param request 检索参数（topK、相似度阈值、过滤条件）
+     * @param queryEmbedding 查询向量
+     */
+    List<Document> similaritySearch(SearchRequest request, float[] queryEmbedding);
+
+    /**
+     * 遍历所有有效文档及其（归一化后的）向量
+     */
+    void forEach(BiConsumer<Document, float[]> consumer);
+
+    /**
+     * 遍历所有有效文档（不含向量）
+     */
+    void forEachDocument(Consumer<Document> consumer);
+
+    /**
+     * 按 id 读取已存储的（归一化后的）向量，不调用 EmbeddingModel
+     * @param ids 文档 id
+     * @return id 到向量的映射，不存在的 id 不出现在结果中
+     */
+    Map<String, float[]> embeddings(Collection<String> ids);
+
+    /**
+     * @return 当前有效（未删除）的文档数
+     */
+    int size();
+
+    /**
+     * @return 内容版本号，每次新增、删除或加载快照后递增，用于让依赖检索结果的缓存失效
+     */
+    long version();
+
+    /**
+     * @return 指定位置是否存在可加载的快照
+     */
+    boolean hasSnapshot(File file);
+
+    /**
+     * 保存为二进制快照
+     * @param file 目标文件
+     */
+    void save(File file);
+
+    /**
+     * 加载二进制快照，替换当前内容
+     * @param file 快照文件
+     */
+    void load(File file);
+
+    /**
+     * 导入 SimpleVectorStore 的 JSON 持久化文件（沿用其中的向量，不调用 EmbeddingModel）
+     * @param file JSON 文件
+     */
+    default void importJson(File file) {
+        try {
+            List<VectorSnapshotConverter.JsonEntry> entries = VectorSnapshotConverter.readJson(file.toPath());
+            add(entries.stream()
+                            .map(entry -> Document.builder().id(entry.id()).text(entry.text())
+                                    .metadata(entry.metadata()).build())
+                            .toList(),
+                    entries.stream().map(VectorSnapshotConverter.JsonEntry::embedding).toList());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to import vector store from " + file, e);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.ai.demo.vectorstore;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * 只读映射的一段文件区域，按 1GB 切块以突破单个 MappedByteBuffer 的 2GB 上限，跨块读取时自动拼接
+ */
+final class MappedRegion {
+
+    private static final long CHUNK_BYTES = 1L << 30;
+
+    private final MappedByteBuffer[] chunks;
+
+    private final long length;
+
+    private MappedRegion(MappedByteBuffer[] chunks, long length) {
+        this.chunks = chunks;
+        this.length = length;
+    }
+
+    static MappedRegion map(FileChannel channel, long offset, long length) throws IOException {
+        int chunkCount = (int) ((length + CHUNK_BYTES - 1) / CHUNK_BYTES);
+        MappedByteBuffer[] chunks = new MappedByteBuffer[chunkCount];
+        for (int c = 0; c < chunkCount; c++) {
+            long start = c * CHUNK_BYTES;
+            chunks[c] = channel.map(FileChannel.MapMode.READ_ONLY, offset + start, Math.min(CHUNK_BYTES, length - start));
+            chunks[c].order(ByteOrder.LITTLE_ENDIAN);
+        }
+        return new MappedRegion(chunks, length);
+    }
+
+    long length() {
+        return length;
+    }
+
+    int getInt(long position) {
+        ByteBuffer chunk = chunks[(int) (position / CHUNK_BYTES)];
+        int within = (int) (position % CHUNK_BYTES);
+        if (within + Integer.BYTES <= chunk.limit()) {
+            return chunk.getInt(within);
+        }
+        byte[] bytes = new byte[Integer.BYTES];
+        get(position, bytes);
+        return ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).getInt();
+    }
+
+    long getLong(long position) {
+        ByteBuffer chunk = chunks[(int) (position / CHUNK_BYTES)];
+        int within = (int) (position % CHUNK_BYTES);
+        if (within + Long.BYTES <= chunk.limit()) {
+            return chunk.getLong(within);
+        }
+        byte[] bytes = new byte[Long.BYTES];
+        get(position, bytes);
+        return ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).getLong();
+    }
+
+    void get(long position, byte[] dst) {
+        get(position, dst, 0, dst.length);
+    }
+
+    void get(long position, byte[] dst, int offset, int length) {
+        int copied = 0;
+        while (copied < length) {
+            long current = position + copied;
+            ByteBuffer chunk = chunks[(int) (current / CHUNK_BYTES)];
+            int within = (int) (current % CHUNK_BYTES);
+            int n = Math.min(length - copied, chunk.limit() - within);
+            chunk.get(within, dst, offset + copied, n);
+            copied += n;
+        }
+    }
+}
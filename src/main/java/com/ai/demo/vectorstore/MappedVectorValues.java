@@ -0,0 +1,72 @@
+package com.ai.demo.vectorstore;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * 基于内存映射文件的只读向量集合，向量数据留在堆外（页缓存）中
+ * <p>单个 MappedByteBuffer 上限为 2GB，因此按整行切分为多个映射块，保证任一向量不会跨块。
+ * 打分时先把整行批量复制到调用方提供的缓冲区，再交给相似度内核计算，避免逐元素读取缓冲区。</p>
+ */
+final class MappedVectorValues implements VectorValues {
+
+    private final int dimensions;
+
+    private final int size;
+
+    private final int rowsPerChunk;
+
+    private final FloatBuffer[] chunks;
+
+    private MappedVectorValues(int dimensions, int size, int rowsPerChunk, FloatBuffer[] chunks) {
+        this.dimensions = dimensions;
+        this.size = size;
+        this.rowsPerChunk = rowsPerChunk;
+        this.chunks = chunks;
+    }
+
+    /**
+     * 映射文件中一段连续的 float32（小端）矩阵
+     * @param channel 文件通道，映射建立后可以关闭
+     * @param offset 矩阵起始偏移
+     * @param size 行数
+     * @param dimensions 列数
+     */
+    static MappedVectorValues map(FileChannel channel, long offset, int size, int dimensions) throws IOException {
+        long rowBytes = (long) dimensions * Float.BYTES;
+        int rowsPerChunk = (int) Math.max(1, Integer.MAX_VALUE / rowBytes);
+        int chunkCount = (size + rowsPerChunk - 1) / rowsPerChunk;
+        FloatBuffer[] chunks = new FloatBuffer[chunkCount];
+        for (int c = 0; c < chunkCount; c++) {
+            long firstRow = (long) c * rowsPerChunk;
+            long rows = Math.min(rowsPerChunk, size - firstRow);
+            chunks[c] = channel.map(FileChannel.MapMode.READ_ONLY, offset + firstRow * rowBytes, rows * rowBytes)
+                    .order(ByteOrder.LITTLE_ENDIAN)
+                    .asFloatBuffer();
+        }
+        return new MappedVectorValues(dimensions, size, rowsPerChunk, chunks);
+    }
+
+    @Override
+    public int dimensions() {
+        return dimensions;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void copy(int ord, float[] dst) {
+        chunks[ord / rowsPerChunk].get((ord % rowsPerChunk) * dimensions, dst, 0, dimensions);
+    }
+
+    @Override
+    public float dot(SimilarityKernel kernel, float[] query, int ord, float[] scratch) {
+        copy(ord, scratch);
+        return kernel.dot(query, scratch, 0, dimensions);
+    }
+}
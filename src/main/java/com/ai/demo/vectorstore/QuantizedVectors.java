@@ -0,0 +1,61 @@
+package com.ai.demo.vectorstore;
+
+import java.io.IOException;
+
+/**
+ * 量化后的检索向量，供 HNSW 图遍历使用；精确排序由 float32 原始向量重打分完成
+ * <p>数据按固定行数分页存放在堆内，追加时无需整体扩容拷贝。</p>
+ */
+abstract class QuantizedVectors {
+
+    static final int ROWS_PER_PAGE = 1024;
+
+    /**
+     * 按节点序号读取 float32 向量
+     */
+    @FunctionalInterface
+    interface Source {
+
+        void copy(int node, float[] dst);
+    }
+
+    abstract VectorEncoding encoding();
+
+    abstract int size();
+
+    /**
+     * 追加一个已归一化的向量
+     */
+    abstract void append(float[] vector);
+
+    abstract VectorScorer scorer(float[] query, SimilarityKernel kernel);
+
+    /**
+     * @return 量化数据占用的堆内存字节数
+     */
+    abstract long bytes();
+
+    abstract void writeTo(VectorSnapshot.ChannelWriter writer) throws IOException;
+
+    /**
+     * 基于现有向量构建量化数据（INT8 会据此统计每个维度的取值范围）
+     */
+    static QuantizedVectors build(VectorEncoding encoding, int dimensions, int count, Source source) {
+        return switch (encoding) {
+            case FLOAT16 -> Float16Vectors.build(dimensions, count, source);
+            case INT8 -> Int8Vectors.train(dimensions, count, source);
+            case FLOAT32 -> throw new IllegalArgumentException("FLOAT32 vectors are not quantized");
+        };
+    }
+
+    /**
+     * 从快照的量化数据区读取到堆内
+     */
+    static QuantizedVectors read(VectorEncoding encoding, int dimensions, int count, MappedRegion region) {
+        return switch (encoding) {
+            case FLOAT16 -> Float16Vectors.read(dimensions, count, region);
+            case INT8 -> Int8Vectors.read(dimensions, count, region);
+            case FLOAT32 -> throw new IllegalArgumentException("FLOAT32 vectors are not quantized");
+        };
+    }
+}
@@ -0,0 +1,35 @@
+package com.ai.demo.vectorstore;
+
+/**
+ * 标量相似度内核，未启用 Vector API 时使用
+ */
+final class ScalarSimilarityKernel implements SimilarityKernel {
+
+    static final ScalarSimilarityKernel INSTANCE = new ScalarSimilarityKernel();
+
+    private ScalarSimilarityKernel() {
+    }
+
+    @Override
+    public float dot(float[] a, float[] b, int bOffset, int length) {
+        float sum = 0;
+        for (int i = 0; i < length; i++) {
+            sum += a[i] * b[bOffset + i];
+        }
+        return sum;
+    }
+
+    @Override
+    public float dotUnsigned(float[] a, byte[] codes, int offset, int length) {
+        float sum = 0;
+        for (int i = 0; i < length; i++) {
+            sum += a[i] * (codes[offset + i] & 0xFF);
+        }
+        return sum;
+    }
+
+    @Override
+    public String name() {
+        return "scalar";
+    }
+}
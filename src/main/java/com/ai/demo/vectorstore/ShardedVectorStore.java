@@ -0,0 +1,318 @@
+package com.ai.demo.vectorstore;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.document.MetadataMode;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.observation.conventions.VectorStoreProvider;
+import org.springframework.ai.observation.conventions.VectorStoreSimilarityMetric;
+import org.springframework.ai.vectorstore.AbstractVectorStoreBuilder;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.ai.vectorstore.observation.AbstractObservationVectorStore;
+import org.springframework.ai.vectorstore.observation.VectorStoreObservationContext;
+import org.springframework.util.Assert;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+
+/**
+ * 分片向量库：按文档 id 哈希把文档分散到多个 {@link HnswVectorStore} 分片
+ * <p>查询向量只计算一次，随后在有界 ForkJoin 线程池上并行检索各分片（scatter），
+ * 再用容量为 topK 的小顶堆合并各分片的局部结果（gather）。写入与快照加载同样按分片并行。</p>
+ */
+@Slf4j
+public class ShardedVectorStore extends AbstractObservationVectorStore implements LocalVectorStore, AutoCloseable {
+
+    private static final Comparator<Document> BY_SCORE = Comparator.comparingDouble(Document::getScore);
+
+    private final List<HnswVectorStore> shards;
+
+    private final ForkJoinPool pool;
+
+    protected ShardedVectorStore(ShardedVectorStoreBuilder builder) {
+        super(builder);
+        this.shards = IntStream.range(0, builder.shards)
+                .mapToObj(builder.shardFactory)
+                .toList();
+        this.pool = new ForkJoinPool(Math.min(builder.shards, builder.parallelism), pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("vector-shard-" + thread.getPoolIndex());
+            return thread;
+        }, null, false);
+        log.info("Created sharded vector store with {} shards, parallelism {}", shards.size(), pool.getParallelism());
+    }
+
+    public static ShardedVectorStoreBuilder builder(EmbeddingModel embeddingModel,
+                                                    IntFunction<HnswVectorStore> shardFactory) {
+        return new ShardedVectorStoreBuilder(embeddingModel, shardFactory);
+    }
+
+    @Override
+    public void doAdd(List<Document> documents) {
+        Objects.requireNonNull(documents, "Documents list cannot be null");
+        if (documents.isEmpty()) {
+            return;
+        }
+        List<float[]> embeddings = new ArrayList<>(documents.size());
+        for (List<Document> batch : this.batchingStrategy.batch(documents)) {
+            log.info("Calling EmbeddingModel for {} documents", batch.size());
+            embeddings.addAll(this.embeddingModel.embed(batch.stream()
+                    .map(document -> document.getFormattedContent(MetadataMode.EMBED))
+                    .toList()));
+        }
+        add(documents, embeddings);
+    }
+
+    @Override
+    public void add(List<Document> documents, List<float[]> embeddings) {
+        Assert.isTrue(documents.size() == embeddings.size(), "Documents and embeddings must have the same size");
+        List<List<Document>> shardDocuments = partition();
+        List<List<float[]>> shardEmbeddings = partition();
+        for (int i = 0; i < documents.size(); i++) {
+            int shard = shardOf(documents.get(i).getId());
+            shardDocuments.get(shard).add(documents.get(i));
+            shardEmbeddings.get(shard).add(embeddings.get(i));
+        }
+        scatter(shard -> {
+            if (!shardDocuments.get(shard).isEmpty()) {
+                shards.get(shard).add(shardDocuments.get(shard), shardEmbeddings.get(shard));
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public void doDelete(List<String> idList) {
+        List<List<String>> shardIds = partition();
+        idList.forEach(id -> shardIds.get(shardOf(id)).add(id));
+        for (int shard = 0; shard < shards.size(); shard++) {
+            if (!shardIds.get(shard).isEmpty()) {
+                shards.get(shard).delete(shardIds.get(shard));
+            }
+        }
+    }
+
+    @Override
+    public void doDelete(Filter.Expression filterExpression) {
+        scatter(shard -> {
+            shards.get(shard).delete(filterExpression);
+            return null;
+        });
+    }
+
+    @Override
+    public List<Document> doSimilaritySearch(SearchRequest request) {
+        return similaritySearch(request, this.embeddingModel.embed(request.getQuery()));
+    }
+
+    @Override
+    public List<Document> similaritySearch(SearchRequest request, float[] queryEmbedding) {
+        List<List<Document>> partials = scatter(shard -> shards.get(shard).similaritySearch(request, queryEmbedding));
+        PriorityQueue<Document> topK = new PriorityQueue<>(request.getTopK() + 1, BY_SCORE);
+        for (List<Document> partial : partials) {
+            for (Document document : partial) {
+                topK.add(document);
+                if (topK.size() > request.getTopK()) {
+                    topK.poll();
+                }
+            }
+        }
+        List<Document> merged = new ArrayList<>(topK);
+        merged.sort(BY_SCORE.reversed());
+        return merged;
+    }
+
+    @Override
+    public void forEach(BiConsumer<Document, float[]> consumer) {
+        shards.forEach(shard -> shard.forEach(consumer));
+    }
+
+    @Override
+    public void forEachDocument(Consumer<Document> consumer) {
+        shards.forEach(shard -> shard.forEachDocument(consumer));
+    }
+
+    @Override
+    public Map<String, float[]> embeddings(Collection<String> ids) {
+        List<List<String>> shardIds = partition();
+        ids.forEach(id -> shardIds.get(shardOf(id)).add(id));
+        Map<String, float[]> embeddings = new HashMap<>();
+        for (int shard = 0; shard < shards.size(); shard++) {
+            if (!shardIds.get(shard).isEmpty()) {
+                embeddings.putAll(shards.get(shard).embeddings(shardIds.get(shard)));
+            }
+        }
+        return embeddings;
+    }
+
+    @Override
+    public int size() {
+        return shards.stream().mapToInt(HnswVectorStore::size).sum();
+    }
+
+    @Override
+    public long version() {
+        return shards.stream().mapToLong(HnswVectorStore::version).sum();
+    }
+
+    /**
+     * 存在分片快照，或存在可重新分片的单文件快照
+     */
+    @Override
+    public boolean hasSnapshot(File file) {
+        return hasShardSnapshots(file) || file.exists();
+    }
+
+    /**
+     * 每个分片保存为独立的快照文件：{@code <file>.<分片序号>}，空分片不写文件，并删除之前保存的文件
+     */
+    @Override
+    public void save(File file) {
+        scatter(shard -> {
+            File shardFile = shardFile(file, shard);
+            if (shards.get(shard).size() > 0) {
+                shards.get(shard).save(shardFile);
+            } else {
+                try {
+                    Files.deleteIfExists(shardFile.toPath());
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Failed to delete empty shard snapshot " + shardFile, e);
+                }
+            }
+            return null;
+        });
+    }
+
+    /**
+     * 并行加载各分片快照，替换当前内容，没有快照文件的分片（保存时为空）被清空；
+     * 只有单文件快照时（从未分片的版本升级），读取后按 id 重新分片
+     */
+    @Override
+    public void load(File file) {
+        long start = System.nanoTime();
+        if (hasShardSnapshots(file)) {
+            scatter(shard -> {
+                File shardFile = shardFile(file, shard);
+                if (shardFile.exists()) {
+                    shards.get(shard).load(shardFile);
+                } else {
+                    shards.get(shard).clear();
+                }
+                return null;
+            });
+        } else {
+            log.info("Resharding snapshot {} into {} shards", file, shards.size());
+            HnswVectorStore single = HnswVectorStore.builder(this.embeddingModel).build();
+            single.load(file);
+            shards.forEach(HnswVectorStore::clear);
+            List<Document> documents = new ArrayList<>(single.size());
+            List<float[]> embeddings = new ArrayList<>(single.size());
+            single.forEach((document, embedding) -> {
+                documents.add(document);
+                embeddings.add(embedding);
+            });
+            add(documents, embeddings);
+        }
+        log.info("Loaded {} documents into {} shards in {} ms", size(), shards.size(),
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    @Override
+    public VectorStoreObservationContext.Builder createObservationContextBuilder(String operationName) {
+        return VectorStoreObservationContext.builder(VectorStoreProvider.SIMPLE.value(), operationName)
+                .dimensions(this.embeddingModel.dimensions())
+                .collectionName("hnsw-index-sharded")
+                .similarityMetric(VectorStoreSimilarityMetric.COSINE.value());
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    private int shardOf(String id) {
+        return Math.floorMod(id.hashCode(), shards.size());
+    }
+
+    private boolean hasShardSnapshots(File file) {
+        return IntStream.range(0, shards.size()).anyMatch(shard -> shardFile(file, shard).exists());
+    }
+
+    private static File shardFile(File file, int shard) {
+        return new File(file.getPath() + "." + shard);
+    }
+
+    private <T> List<List<T>> partition() {
+        List<List<T>> partitions = new ArrayList<>(shards.size());
+        for (int shard = 0; shard < shards.size(); shard++) {
+            partitions.add(new ArrayList<>());
+        }
+        return partitions;
+    }
+
+    /**
+     * 在线程池上对每个分片执行操作，并按分片顺序返回结果
+     */
+    private <T> List<T> scatter(IntFunction<T> action) {
+        List<CompletableFuture<T>> futures = IntStream.range(0, shards.size())
+                .mapToObj(shard -> CompletableFuture.supplyAsync(() -> action.apply(shard), pool))
+                .toList();
+        return futures.stream().map(CompletableFuture::join).toList();
+    }
+
+    public static final class ShardedVectorStoreBuilder extends AbstractVectorStoreBuilder<ShardedVectorStoreBuilder> {
+
+        private final IntFunction<HnswVectorStore> shardFactory;
+
+        private int shards = Runtime.getRuntime().availableProcessors();
+
+        private int parallelism = Runtime.getRuntime().availableProcessors();
+
+        private ShardedVectorStoreBuilder(EmbeddingModel embeddingModel, IntFunction<HnswVectorStore> shardFactory) {
+            super(embeddingModel);
+            Assert.notNull(shardFactory, "shardFactory must not be null");
+            this.shardFactory = shardFactory;
+        }
+
+        /**
+         * @param shards 分片数
+         */
+        public ShardedVectorStoreBuilder shards(int shards) {
+            Assert.isTrue(shards > 0, "shards must be positive");
+            this.shards = shards;
+            return this;
+        }
+
+        /**
+         * @param parallelism 检索线程池大小，实际取值不超过分片数
+         */
+        public ShardedVectorStoreBuilder parallelism(int parallelism) {
+            Assert.isTrue(parallelism > 0, "parallelism must be positive");
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        @Override
+        public ShardedVectorStore build() {
+            return new ShardedVectorStore(this);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.ai.demo.vectorstore;
+
+/**
+ * 向量相似度计算内核
+ * <p>向量库中的向量在写入时已归一化，检索打分只需要点积；{@link #cosine} 供未归一化的向量使用。
+ * 默认实现基于 JDK Vector API（{@code jdk.incubator.vector}）做 SIMD 计算，
+ * 运行时未启用该模块（缺少 {@code --add-modules jdk.incubator.vector}）时退化为标量循环。</p>
+ */
+public interface SimilarityKernel {
+
+    /**
+     * 计算 a[0, length) 与 b[bOffset, bOffset + length) 的点积
+     */
+    float dot(float[] a, float[] b, int bOffset, int length);
+
+    /**
+     * 计算 a[0, length) 与无符号 8 位编码 codes[offset, offset + length) 的点积，用于 INT8 量化向量打分
+     */
+    float dotUnsigned(float[] a, byte[] codes, int offset, int length);
+
+    /**
+     * @return 内核名称，用于日志
+     */
+    String name();
+
+    default float dot(float[] a, float[] b) {
+        if (a.length != b.length) {
+            throw new IllegalArgumentException("Vector dimensions differ: " + a.length + " vs " + b.length);
+        }
+        return dot(a, b, 0, a.length);
+    }
+
+    default float cosine(float[] a, float[] b) {
+        float norms = dot(a, a) * dot(b, b);
+        return norms == 0 ? 0 : (float) (dot(a, b) / Math.sqrt(norms));
+    }
+
+    /**
+     * 原地 L2 归一化，之后余弦相似度即点积
+     * @return 传入的数组
+     */
+    default float[] normalize(float[] vector) {
+        float norm = dot(vector, vector);
+        if (norm > 0) {
+            float inv = (float) (1 / Math.sqrt(norm));
+            for (int i = 0; i < vector.length; i++) {
+                vector[i] *= inv;
+            }
+        }
+        return vector;
+    }
+
+    static SimilarityKernel scalar() {
+        return ScalarSimilarityKernel.INSTANCE;
+    }
+
+    /**
+     * @return SIMD 内核，不可用时抛出 IllegalStateException
+     */
+    static SimilarityKernel vectorized() {
+        SimilarityKernel kernel = SimilarityKernels.VECTORIZED;
+        if (kernel == null) {
+            throw new IllegalStateException("jdk.incubator.vector is not available, start the JVM with --add-modules jdk.incubator.vector");
+        }
+        return kernel;
+    }
+
+    /**
+     * @return SIMD 内核可用时使用 SIMD，否则使用标量实现
+     */
+    static SimilarityKernel auto() {
+        return SimilarityKernels.VECTORIZED != null ? SimilarityKernels.VECTORIZED : ScalarSimilarityKernel.INSTANCE;
+    }
+
+    /**
+     * 按名称选择内核
+     * @param name auto / vector / scalar
+     */
+    static SimilarityKernel of(String name) {
+        return switch (name.toLowerCase()) {
+            case "auto" -> auto();
+            case "vector" -> vectorized();
+            case "scalar" -> scalar();
+            default -> throw new IllegalArgumentException("Unknown similarity kernel: " + name);
+        };
+    }
+}
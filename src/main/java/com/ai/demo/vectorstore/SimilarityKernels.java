@@ -0,0 +1,30 @@
+package com.ai.demo.vectorstore;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 延迟探测 Vector API，只在模块存在时才加载依赖它的实现类
+ */
+@Slf4j
+final class SimilarityKernels {
+
+    static final SimilarityKernel VECTORIZED = load();
+
+    private SimilarityKernels() {
+    }
+
+    private static SimilarityKernel load() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            log.info("jdk.incubator.vector is not enabled, falling back to scalar similarity kernel");
+            return null;
+        }
+        try {
+            return (SimilarityKernel) Class.forName("com.ai.demo.vectorstore.VectorizedSimilarityKernel")
+                    .getDeclaredConstructor()
+                    .newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            log.warn("Failed to initialize vectorized similarity kernel, falling back to scalar", e);
+            return null;
+        }
+    }
+}
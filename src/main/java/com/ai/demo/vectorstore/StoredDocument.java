@@ -0,0 +1,23 @@
+package com.ai.demo.vectorstore;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.document.DocumentMetadata;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 向量库中一条文档的文本与元数据（不含向量）
+ */
+record StoredDocument(String id, String text, Map<String, Object> metadata) {
+
+    Document toDocument() {
+        return Document.builder().id(id).text(text).metadata(new HashMap<>(metadata)).build();
+    }
+
+    Document toDocument(float score) {
+        Map<String, Object> result = new HashMap<>(metadata);
+        result.put(DocumentMetadata.DISTANCE.value(), 1.0 - score);
+        return Document.builder().id(id).text(text).metadata(result).score((double) score).build();
+    }
+}
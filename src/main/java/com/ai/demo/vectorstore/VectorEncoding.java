@@ -0,0 +1,32 @@
+package com.ai.demo.vectorstore;
+
+/**
+ * 向量的检索编码方式
+ */
+public enum VectorEncoding {
+
+    /**
+     * 不量化，直接在 float32 向量上检索
+     */
+    FLOAT32(Float.BYTES),
+
+    /**
+     * 半精度浮点，内存减半
+     */
+    FLOAT16(Short.BYTES),
+
+    /**
+     * 按维度 min/max 线性量化为 8 位整数，内存降为 1/4
+     */
+    INT8(Byte.BYTES);
+
+    private final int bytesPerDimension;
+
+    VectorEncoding(int bytesPerDimension) {
+        this.bytesPerDimension = bytesPerDimension;
+    }
+
+    public int bytesPerDimension() {
+        return bytesPerDimension;
+    }
+}
@@ -0,0 +1,13 @@
+package com.ai.demo.vectorstore;
+
+/**
+ * 绑定了某个查询向量的打分器，查询相关的预计算只做一次
+ */
+@FunctionalInterface
+interface VectorScorer {
+
+    /**
+     * @return 查询向量与第 node 个向量的相似度
+     */
+    float score(int node);
+}
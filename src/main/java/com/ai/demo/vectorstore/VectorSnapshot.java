@@ -0,0 +1,360 @@
+package com.ai.demo.vectorstore;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+/**
+ * 向量库二进制快照
+ * <pre>
+ * | 头部 128 字节 | float32 向量矩阵 | HNSW 图结构 | 文档记录区 | 文档偏移表 | 量化向量（可选） |
+ * </pre>
+ * <p>所有数值均为小端序。打开快照时通过 {@link FileChannel#map} 映射向量矩阵与文档区：向量留在堆外，
+ * 文档文本与元数据仅在命中时按需解码；图结构与量化向量读入堆内，以便在快照之上继续增量写入。
+ * 版本 1 的快照没有量化区，仍可正常读取。</p>
+ */
+final class VectorSnapshot {
+
+    /**
+     * "RAGV"
+     */
+    private static final int MAGIC = 0x52414756;
+
+    private static final int VERSION = 2;
+
+    private static final int HEADER_BYTES = 128;
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private static final TypeReference<Map<String, Object>> METADATA_TYPE = new TypeReference<>() {
+    };
+
+    private final HnswIndex index;
+
+    private final MappedRegion documents;
+
+    private final MappedRegion documentOffsets;
+
+    private final QuantizedVectors quantized;
+
+    private VectorSnapshot(HnswIndex index, MappedRegion documents, MappedRegion documentOffsets,
+                           QuantizedVectors quantized) {
+        this.index = index;
+        this.documents = documents;
+        this.documentOffsets = documentOffsets;
+        this.quantized = quantized;
+    }
+
+    /**
+     * 写出快照，先写临时文件再原子替换，避免中途失败损坏已有快照
+     * @param path 快照文件
+     * @param index HNSW 索引
+     * @param documents 按节点序号取文档，已删除的节点返回 null
+     * @param quantized 与索引节点一一对应的量化向量，为 null 时不写量化区
+     */
+    static void write(Path path, HnswIndex index, IntFunction<StoredDocument> documents,
+                      QuantizedVectors quantized) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        int count = index.size();
+        int dimensions = index.dimensions();
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ChannelWriter writer = new ChannelWriter(channel, HEADER_BYTES);
+
+            long vectorsOffset = writer.position();
+            float[] row = new float[dimensions];
+            for (int node = 0; node < count; node++) {
+                index.copyVector(node, row);
+                writer.putFloats(row);
+            }
+
+            long graphOffset = writer.position();
+            long[] deletedWords = index.deleted().toLongArray();
+            writer.putInt(deletedWords.length);
+            for (long word : deletedWords) {
+                writer.putLong(word);
+            }
+            for (int node = 0; node < count; node++) {
+                int[][] levels = index.links(node);
+                writer.putInt(levels.length);
+                for (int[] neighbors : levels) {
+                    writer.putInt(neighbors.length);
+                    for (int neighbor : neighbors) {
+                        writer.putInt(neighbor);
+                    }
+                }
+            }
+
+            long documentsOffset = writer.position();
+            long[] offsets = new long[count];
+            for (int node = 0; node < count; node++) {
+                StoredDocument document = index.isDeleted(node) ? null : documents.apply(node);
+                if (document == null) {
+                    offsets[node] = -1;
+                    continue;
+                }
+                offsets[node] = writer.position() - documentsOffset;
+                writer.putString(document.id());
+                writer.putString(document.text());
+                writer.putString(OBJECT_MAPPER.writeValueAsString(document.metadata()));
+            }
+
+            long offsetsOffset = writer.position();
+            for (long offset : offsets) {
+                writer.putLong(offset);
+            }
+
+            long quantizedOffset = writer.position();
+            VectorEncoding encoding = VectorEncoding.FLOAT32;
+            if (quantized != null) {
+                encoding = quantized.encoding();
+                quantized.writeTo(writer);
+            }
+            writer.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putInt(dimensions).putInt(count)
+                    .putInt(index.m()).putInt(index.efConstruction()).putInt(index.entryPoint()).putInt(index.maxLevel())
+                    .putLong(vectorsOffset).putLong(graphOffset).putLong(documentsOffset).putLong(offsetsOffset)
+                    .putInt(encoding.ordinal()).putLong(quantizedOffset)
+                    .position(HEADER_BYTES).flip();
+            channel.write(header, 0);
+            channel.force(true);
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 打开快照：映射向量矩阵与文档区，读入图结构
+     * @param path 快照文件
+     * @param seed 后续增量写入使用的随机种子
+     * @param kernel 相似度计算内核
+     */
+    static VectorSnapshot open(Path path, long seed, SimilarityKernel kernel) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            channel.read(header, 0);
+            header.flip();
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Not a vector store snapshot: " + path);
+            }
+            int version = header.getInt();
+            if (version != 1 && version != VERSION) {
+                throw new IOException("Unsupported snapshot version " + version + ": " + path);
+            }
+            int dimensions = header.getInt();
+            int count = header.getInt();
+            int m = header.getInt();
+            int efConstruction = header.getInt();
+            int entryPoint = header.getInt();
+            int maxLevel = header.getInt();
+            long vectorsOffset = header.getLong();
+            long graphOffset = header.getLong();
+            long documentsOffset = header.getLong();
+            long offsetsOffset = header.getLong();
+            VectorEncoding encoding = VectorEncoding.FLOAT32;
+            long quantizedOffset = -1;
+            if (version > 1) {
+                encoding = VectorEncoding.values()[header.getInt()];
+                quantizedOffset = header.getLong();
+            }
+
+            MappedVectorValues vectors = MappedVectorValues.map(channel, vectorsOffset, count, dimensions);
+
+            MappedRegion graph = MappedRegion.map(channel, graphOffset, documentsOffset - graphOffset);
+            long position = 0;
+            long[] deletedWords = new long[graph.getInt(position)];
+            position += Integer.BYTES;
+            for (int i = 0; i < deletedWords.length; i++) {
+                deletedWords[i] = graph.getLong(position);
+                position += Long.BYTES;
+            }
+            int[][][] links = new int[count][][];
+            for (int node = 0; node < count; node++) {
+                int levelCount = graph.getInt(position);
+                position += Integer.BYTES;
+                links[node] = new int[levelCount][];
+                for (int level = 0; level < levelCount; level++) {
+                    int[] neighbors = new int[graph.getInt(position)];
+                    position += Integer.BYTES;
+                    for (int i = 0; i < neighbors.length; i++) {
+                        neighbors[i] = graph.getInt(position);
+                        position += Integer.BYTES;
+                    }
+                    links[node][level] = neighbors;
+                }
+            }
+
+            HnswIndex index = new HnswIndex(vectors, m, efConstruction, links, BitSet.valueOf(deletedWords),
+                    entryPoint, maxLevel, seed, kernel);
+            MappedRegion documents = MappedRegion.map(channel, documentsOffset, offsetsOffset - documentsOffset);
+            MappedRegion documentOffsets = MappedRegion.map(channel, offsetsOffset, (long) count * Long.BYTES);
+            QuantizedVectors quantized = null;
+            if (encoding != VectorEncoding.FLOAT32) {
+                MappedRegion region = MappedRegion.map(channel, quantizedOffset, channel.size() - quantizedOffset);
+                quantized = QuantizedVectors.read(encoding, dimensions, count, region);
+            }
+            return new VectorSnapshot(index, documents, documentOffsets, quantized);
+        }
+    }
+
+    HnswIndex index() {
+        return index;
+    }
+
+    /**
+     * @return 快照中保存的量化向量，未量化时为 null
+     */
+    QuantizedVectors quantized() {
+        return quantized;
+    }
+
+    /**
+     * @return 快照中的节点数（含已删除节点）
+     */
+    int count() {
+        return (int) (documentOffsets.length() / Long.BYTES);
+    }
+
+    /**
+     * 只解码文档 id，用于打开快照时重建 id 到节点序号的映射
+     */
+    String id(int node) {
+        long offset = documentOffsets.getLong((long) node * Long.BYTES);
+        return offset < 0 ? null : readString(new long[]{offset});
+    }
+
+    StoredDocument document(int node) {
+        long offset = documentOffsets.getLong((long) node * Long.BYTES);
+        if (offset < 0) {
+            return null;
+        }
+        long[] cursor = {offset};
+        String id = readString(cursor);
+        String text = readString(cursor);
+        String metadata = readString(cursor);
+        try {
+            return new StoredDocument(id, text, OBJECT_MAPPER.readValue(metadata, METADATA_TYPE));
+        } catch (IOException e) {
+            throw new IllegalStateException("Corrupted metadata for snapshot document " + id, e);
+        }
+    }
+
+    private String readString(long[] cursor) {
+        int length = documents.getInt(cursor[0]);
+        cursor[0] += Integer.BYTES;
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        documents.get(cursor[0], bytes);
+        cursor[0] += length;
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 带缓冲的顺序写入器
+     */
+    static final class ChannelWriter {
+
+        private final FileChannel channel;
+
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+
+        private long position;
+
+        ChannelWriter(FileChannel channel, long position) throws IOException {
+            this.channel = channel;
+            this.position = position;
+            channel.position(position);
+        }
+
+        long position() {
+            return position;
+        }
+
+        void putInt(int value) throws IOException {
+            ensure(Integer.BYTES);
+            buffer.putInt(value);
+            position += Integer.BYTES;
+        }
+
+        void putLong(long value) throws IOException {
+            ensure(Long.BYTES);
+            buffer.putLong(value);
+            position += Long.BYTES;
+        }
+
+        void putFloats(float[] values) throws IOException {
+            for (float value : values) {
+                ensure(Float.BYTES);
+                buffer.putFloat(value);
+            }
+            position += (long) values.length * Float.BYTES;
+        }
+
+        void putBytes(byte[] values, int offset, int length) throws IOException {
+            for (int i = offset; i < offset + length; ) {
+                ensure(1);
+                int n = Math.min(buffer.remaining(), offset + length - i);
+                buffer.put(values, i, n);
+                i += n;
+            }
+            position += length;
+        }
+
+        void putShorts(short[] values, int offset, int length) throws IOException {
+            for (int i = offset; i < offset + length; i++) {
+                ensure(Short.BYTES);
+                buffer.putShort(values[i]);
+            }
+            position += (long) length * Short.BYTES;
+        }
+
+        void putString(String value) throws IOException {
+            if (value == null) {
+                putInt(-1);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            putInt(bytes.length);
+            if (bytes.length > buffer.capacity()) {
+                flush();
+                ByteBuffer wrapped = ByteBuffer.wrap(bytes);
+                while (wrapped.hasRemaining()) {
+                    channel.write(wrapped);
+                }
+            } else {
+                ensure(bytes.length);
+                buffer.put(bytes);
+            }
+            position += bytes.length;
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.ai.demo.vectorstore;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 将 SimpleVectorStore 的 JSON 持久化文件一次性转换为二进制快照
+ * <p>用法：{@code java -cp <classpath> com.ai.demo.vectorstore.VectorSnapshotConverter vectorstore.json vectorstore.bin [m] [efConstruction]}</p>
+ */
+@Slf4j
+public final class VectorSnapshotConverter {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private VectorSnapshotConverter() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: VectorSnapshotConverter <vectorstore.json> <vectorstore.bin> [m] [efConstruction]");
+            System.exit(1);
+        }
+        int m = args.length > 2 ? Integer.parseInt(args[2]) : 16;
+        int efConstruction = args.length > 3 ? Integer.parseInt(args[3]) : 200;
+        convert(Path.of(args[0]), Path.of(args[1]), m, efConstruction);
+    }
+
+    /**
+     * 读取 JSON 文件、构建 HNSW 图并写出快照
+     * @param json SimpleVectorStore 持久化文件
+     * @param snapshot 目标快照文件
+     * @param m 每个节点的最大邻居数
+     * @param efConstruction 建图时的候选队列长度
+     */
+    public static void convert(Path json, Path snapshot, int m, int efConstruction) throws IOException {
+        List<JsonEntry> entries = readJson(json);
+        if (entries.isEmpty()) {
+            throw new IllegalArgumentException("No documents found in " + json);
+        }
+        long start = System.nanoTime();
+        HnswIndex index = new HnswIndex(entries.getFirst().embedding().length, m, efConstruction, 42L);
+        List<StoredDocument> documents = new ArrayList<>(entries.size());
+        for (JsonEntry entry : entries) {
+            index.add(entry.embedding());
+            documents.add(new StoredDocument(entry.id(), entry.text(), entry.metadata()));
+        }
+        VectorSnapshot.write(snapshot, index, documents::get, null);
+        log.info("Converted {} documents from {} to {} in {} ms", entries.size(), json, snapshot,
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * 读取 SimpleVectorStore 持久化文件
+     */
+    static List<JsonEntry> readJson(Path json) throws IOException {
+        Map<String, JsonEntry> entries = OBJECT_MAPPER.readValue(json.toFile(),
+                new TypeReference<LinkedHashMap<String, JsonEntry>>() {
+                });
+        return new ArrayList<>(entries.values());
+    }
+
+    /**
+     * 与 SimpleVectorStore 持久化文件中单条记录结构一致
+     */
+    record JsonEntry(String id, String text, Map<String, Object> metadata, float[] embedding) {
+    }
+}
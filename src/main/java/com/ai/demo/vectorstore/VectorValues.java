@@ -0,0 +1,22 @@
+package com.ai.demo.vectorstore;
+
+/**
+ * 按序号访问的只读向量集合，屏蔽堆内数组与内存映射文件两种存储方式
+ */
+interface VectorValues {
+
+    int dimensions();
+
+    int size();
+
+    /**
+     * 将第 ord 个向量复制到 dst
+     */
+    void copy(int ord, float[] dst);
+
+    /**
+     * 计算查询向量与第 ord 个向量的点积
+     * @param scratch 长度为 dimensions 的缓冲区，由调用方按查询提供，不需要复制的实现可以忽略
+     */
+    float dot(SimilarityKernel kernel, float[] query, int ord, float[] scratch);
+}
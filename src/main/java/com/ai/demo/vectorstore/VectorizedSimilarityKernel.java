@@ -0,0 +1,74 @@
+package com.ai.demo.vectorstore;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * 基于 JDK Vector API 的 SIMD 相似度内核，按 CPU 支持的最宽向量寄存器计算，尾部不足一个向量的部分走标量循环
+ * <p>只能通过 {@link SimilarityKernel#auto()} 反射加载，避免在未启用 {@code jdk.incubator.vector} 时触发类加载失败。</p>
+ */
+final class VectorizedSimilarityKernel implements SimilarityKernel {
+
+    private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+
+    private static final VectorSpecies<Integer> INTS = VectorSpecies.of(int.class, FLOATS.vectorShape());
+
+    /**
+     * 与 FLOATS 通道数相同的字节向量，通道数不足 8 时没有对应形状，INT8 打分退回标量循环
+     */
+    private static final VectorSpecies<Byte> BYTES = FLOATS.length() >= 8
+            ? VectorSpecies.of(byte.class, VectorShape.forBitSize(FLOATS.length() * Byte.SIZE)) : null;
+
+    @Override
+    public float dot(float[] a, float[] b, int bOffset, int length) {
+        int step = FLOATS.length();
+        int i = 0;
+        float sum = 0;
+        if (length >= 2 * step) {
+            // 两组累加器交替累加，减少 FMA 之间的依赖等待
+            FloatVector acc1 = FloatVector.zero(FLOATS);
+            FloatVector acc2 = FloatVector.zero(FLOATS);
+            int unrolledBound = length - length % (2 * step);
+            for (; i < unrolledBound; i += 2 * step) {
+                acc1 = FloatVector.fromArray(FLOATS, a, i)
+                        .fma(FloatVector.fromArray(FLOATS, b, bOffset + i), acc1);
+                acc2 = FloatVector.fromArray(FLOATS, a, i + step)
+                        .fma(FloatVector.fromArray(FLOATS, b, bOffset + i + step), acc2);
+            }
+            sum = acc1.add(acc2).reduceLanes(VectorOperators.ADD);
+        }
+        for (; i < length; i++) {
+            sum += a[i] * b[bOffset + i];
+        }
+        return sum;
+    }
+
+    @Override
+    public float dotUnsigned(float[] a, byte[] codes, int offset, int length) {
+        int i = 0;
+        float sum = 0;
+        if (BYTES != null) {
+            FloatVector acc = FloatVector.zero(FLOATS);
+            int bound = FLOATS.loopBound(length);
+            for (; i < bound; i += FLOATS.length()) {
+                FloatVector decoded = (FloatVector) ByteVector.fromArray(BYTES, codes, offset + i)
+                        .convertShape(VectorOperators.ZERO_EXTEND_B2I, INTS, 0)
+                        .convertShape(VectorOperators.I2F, FLOATS, 0);
+                acc = FloatVector.fromArray(FLOATS, a, i).fma(decoded, acc);
+            }
+            sum = acc.reduceLanes(VectorOperators.ADD);
+        }
+        for (; i < length; i++) {
+            sum += a[i] * (codes[offset + i] & 0xFF);
+        }
+        return sum;
+    }
+
+    @Override
+    public String name() {
+        return "vector-" + FLOATS.vectorBitSize();
+    }
+}
@@ -0,0 +1,60 @@
+package com.ai.demo.budget;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RequestBudgetTests {
+
+    @Test
+    void exhaustsOnLlmCallsAndKeepsTheBestGroundedAnswer() {
+        RequestBudget budget = new RequestBudget(5, 2, 10_000, Duration.ofMinutes(1));
+
+        budget.beforeLlmCall();
+        budget.offer("符合事实的回答", true);
+        assertThat(budget.completeIteration()).isFalse();
+        budget.beforeLlmCall();
+        budget.offer("不符合事实的回答", false);
+
+        assertThat(budget.exhaustedReason()).isEqualTo("max llm calls 2");
+        assertThatThrownBy(budget::beforeLlmCall).isInstanceOf(BudgetExceededException.class);
+        assertThat(budget.bestAnswer()).isEqualTo("符合事实的回答");
+        assertThat(budget.exitReason()).isNull();
+        assertThat(budget.exit()).isEqualTo("max llm calls 2");
+        assertThat(budget.toMap()).containsEntry("llmCalls", 2).containsEntry("exhausted", "max llm calls 2");
+    }
+
+    @Test
+    void exhaustsOnIterationsTokensAndDeadline() {
+        RequestBudget iterations = new RequestBudget(1, 10, 10_000, Duration.ofMinutes(1));
+        assertThat(iterations.completeIteration()).isTrue();
+
+        RequestBudget tokens = new RequestBudget(3, 10, 100, Duration.ofMinutes(1));
+        tokens.recordTokens(60);
+        assertThat(tokens.isExhausted()).isFalse();
+        tokens.recordTokens(60);
+        assertThat(tokens.exhaustedReason()).isEqualTo("max tokens 100");
+
+        RequestBudget deadline = new RequestBudget(3, 10, 10_000, Duration.ZERO);
+        assertThat(deadline.exhaustedReason()).startsWith("deadline");
+        // 没有被判定为符合事实的回答时取最近一次回答
+        deadline.offer("第一次回答", false);
+        deadline.offer("第二次回答", false);
+        assertThat(deadline.bestAnswer()).isEqualTo("第二次回答");
+    }
+
+    @Test
+    void cancelledBudgetRejectsFurtherCalls() {
+        RequestBudget budget = new RequestBudget(3, 10, 10_000, Duration.ofMinutes(1));
+        budget.beforeLlmCall();
+
+        budget.cancel("stream timeout");
+
+        assertThat(budget.isExhausted()).isTrue();
+        assertThatThrownBy(budget::beforeLlmCall).isInstanceOf(BudgetExceededException.class);
+        assertThat(budget.exit()).isEqualTo("cancelled: stream timeout");
+    }
+}
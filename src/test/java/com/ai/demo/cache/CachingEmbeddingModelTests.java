@@ -0,0 +1,77 @@
+package com.ai.demo.cache;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CachingEmbeddingModelTests {
+
+    @Test
+    void onlyMissesReachTheDelegateAndSurviveRestart(@TempDir Path dir) throws Exception {
+        CountingEmbeddingModel delegate = new CountingEmbeddingModel();
+        Path file = dir.resolve("embeddings.cache");
+        try (CachingEmbeddingModel cache = new CachingEmbeddingModel(delegate, "test-model", 100, file)) {
+            assertThat(cache.embed(List.of("a", "b"))).hasSize(2);
+            List<float[]> second = cache.embed(List.of("b", "c", "c"));
+
+            assertThat(delegate.requested).containsExactly("a", "b", "c");
+            assertThat(second.get(0)).containsExactly(CountingEmbeddingModel.vectorOf("b"));
+            assertThat(second.get(2)).containsExactly(CountingEmbeddingModel.vectorOf("c"));
+            assertThat(cache.stats()).containsEntry("memoryHits", 1L).containsEntry("misses", 3L);
+        }
+
+        // 模拟写入中途退出留下的半条记录
+        Files.write(file, new byte[]{1, 0, 0}, StandardOpenOption.APPEND);
+        delegate.requested.clear();
+        try (CachingEmbeddingModel reopened = new CachingEmbeddingModel(delegate, "test-model", 100, file)) {
+            assertThat(reopened.embed("a")).containsExactly(CountingEmbeddingModel.vectorOf("a"));
+            assertThat(delegate.requested).isEmpty();
+            assertThat(reopened.stats()).containsEntry("diskHits", 1L).containsEntry("diskEntries", 3);
+        }
+        try (CachingEmbeddingModel otherModel = new CachingEmbeddingModel(delegate, "other-model", 100, file)) {
+            otherModel.embed("a");
+            assertThat(delegate.requested).containsExactly("a");
+        }
+    }
+
+    private static final class CountingEmbeddingModel implements EmbeddingModel {
+
+        private final List<String> requested = new ArrayList<>();
+
+        static float[] vectorOf(String text) {
+            return new float[]{text.hashCode(), text.length(), 1};
+        }
+
+        @Override
+        public EmbeddingResponse call(EmbeddingRequest request) {
+            requested.addAll(request.getInstructions());
+            List<Embedding> embeddings = new ArrayList<>();
+            for (int i = 0; i < request.getInstructions().size(); i++) {
+                embeddings.add(new Embedding(vectorOf(request.getInstructions().get(i)), i));
+            }
+            return new EmbeddingResponse(embeddings);
+        }
+
+        @Override
+        public float[] embed(Document document) {
+            return vectorOf(document.getText());
+        }
+
+        @Override
+        public int dimensions() {
+            return 3;
+        }
+    }
+}
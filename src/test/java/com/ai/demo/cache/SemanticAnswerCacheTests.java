@@ -0,0 +1,91 @@
+package com.ai.demo.cache;
+
+import com.ai.demo.vectorstore.HnswVectorStore;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SemanticAnswerCacheTests {
+
+    private static final EmbeddingModel EMBEDDING_MODEL = new EmbeddingModel() {
+
+        @Override
+        public EmbeddingResponse call(EmbeddingRequest request) {
+            List<Embedding> embeddings = new ArrayList<>();
+            for (int i = 0; i < request.getInstructions().size(); i++) {
+                embeddings.add(new Embedding(vectorOf(request.getInstructions().get(i)), i));
+            }
+            return new EmbeddingResponse(embeddings);
+        }
+
+        @Override
+        public float[] embed(Document document) {
+            return vectorOf(document.getText());
+        }
+
+        @Override
+        public int dimensions() {
+            return 3;
+        }
+    };
+
+    /**
+     * 以“大模型”开头的问题向量相近，其余问题与之正交
+     */
+    private static float[] vectorOf(String text) {
+        return text.startsWith("大模型") ? new float[]{1, 0.1f * text.length(), 0} : new float[]{0, 0, 1};
+    }
+
+    @Test
+    void similarQuestionsHitUntilTheStoreChanges() {
+        HnswVectorStore store = HnswVectorStore.builder(EMBEDDING_MODEL).build();
+        SemanticAnswerCache cache = new SemanticAnswerCache(EMBEDDING_MODEL, store, true, 0.95, Duration.ofHours(1),
+                100);
+
+        assertThat(cache.lookup("大模型是什么")).isEmpty();
+        long version = store.version();
+        cache.put("大模型是什么", Map.of("question", "大模型是什么", "generation", "大模型是……",
+                "conversation_id", "a", "route", "vectorstore"), version);
+        cache.put("没有回答的问题", Map.of("question", "没有回答的问题"), version);
+        cache.put("今天天气怎么样", Map.of("question", "今天天气怎么样", "generation", "未经评估的回答",
+                "budget_exhausted", "max iterations 3"), version);
+
+        assertThat(cache.lookup("  大模型是什么 ")).hasValueSatisfying(answer -> assertThat(answer)
+                .containsEntry("generation", "大模型是……").containsEntry("cacheSimilarity", 1.0)
+                .doesNotContainKeys("conversation_id", "route"));
+        assertThat(cache.lookup("大模型是什么？")).hasValueSatisfying(answer -> assertThat(answer)
+                .containsEntry("cached", true));
+        assertThat(cache.lookup("今天天气怎么样")).isEmpty();
+        assertThat(cache.stats()).containsEntry("exactHits", 1L).containsEntry("semanticHits", 1L)
+                .containsEntry("entries", 1L);
+
+        store.add(List.of(Document.builder().id("doc").text("新文档").build()), List.of(new float[]{1, 0, 0}));
+        assertThat(cache.lookup("大模型是什么")).isEmpty();
+        assertThat(cache.stats()).containsEntry("invalidations", 1L);
+    }
+
+    @Test
+    void answerBuiltFromAnOlderStoreIsNotCached() {
+        HnswVectorStore store = HnswVectorStore.builder(EMBEDDING_MODEL).build();
+        SemanticAnswerCache cache = new SemanticAnswerCache(EMBEDDING_MODEL, store, true, 0.95, Duration.ofHours(1),
+                100);
+        long version = store.version();
+
+        // 图执行期间 /graph/add 写入了新文档
+        store.add(List.of(Document.builder().id("doc").text("新文档").build()), List.of(new float[]{1, 0, 0}));
+        cache.put("大模型是什么", Map.of("question", "大模型是什么", "generation", "基于旧文档的回答"), version);
+
+        assertThat(cache.lookup("大模型是什么")).isEmpty();
+        assertThat(cache.stats()).containsEntry("entries", 0L);
+    }
+}
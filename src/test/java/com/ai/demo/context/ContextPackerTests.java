@@ -0,0 +1,90 @@
+package com.ai.demo.context;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.rag.Query;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+import org.springframework.ai.tokenizer.TokenCountEstimator;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ContextPackerTests {
+
+    private final AtomicInteger estimates = new AtomicInteger();
+
+    /**
+     * 每个字符算一个 token，便于推算预算
+     */
+    private final TokenCountEstimator estimator = new JTokkitTokenCountEstimator() {
+        @Override
+        public int estimate(String text) {
+            estimates.incrementAndGet();
+            return text.length();
+        }
+    };
+
+    @Test
+    void ranksByScoreAndDropsNearDuplicates() {
+        ContextPacker packer = new ContextPacker(estimator, 1000, 0.8, 100);
+        List<Document> documents = List.of(
+                document("1", "版本号采用四位管理方式", 0.2),
+                document("2", "Spring AI Alibaba 提供了基于图的智能体编程框架", 0.9),
+                document("3", "Spring AI Alibaba 提供了基于图的智能体编程框架。", 0.5));
+
+        assertThat(packer.pack("智能体", documents))
+                .isEqualTo("Spring AI Alibaba 提供了基于图的智能体编程框架\n\n版本号采用四位管理方式");
+    }
+
+    @Test
+    void extractsTheSentencesClosestToTheQuestionWhenOverBudget() {
+        ContextPacker packer = new ContextPacker(estimator, 33, 0.8, 100);
+        String text = "今天天气不错。Graph 支持并行节点执行。我们去公园散步吧。并行节点共享同一个状态。";
+
+        assertThat(packer.pack("并行节点", List.of(document("1", text, 0.9))))
+                .isEqualTo("Graph 支持并行节点执行。 并行节点共享同一个状态。");
+    }
+
+    @Test
+    void advisorPostProcessingYieldsTheSameContextAsPacking() {
+        ContextPacker packer = new ContextPacker(estimator, 33, 0.8, 100);
+        List<Document> documents = List.of(
+                document("1", "今天天气不错。Graph 支持并行节点执行。我们去公园散步吧。并行节点共享同一个状态。", 0.9),
+                document("2", "版本号采用四位管理方式", 0.2));
+
+        List<Document> processed = packer.process(new Query("并行节点"), documents);
+
+        assertThat(processed).extracting(Document::getId).containsExactly("1");
+        assertThat(ContextPacker.packed("并行节点", processed).text())
+                .isEqualTo(packer.pack("并行节点", documents));
+    }
+
+    @Test
+    void cachesTokenCountsPerText() {
+        ContextPacker packer = new ContextPacker(estimator, 1000, 0.8, 100);
+        List<Document> documents = List.of(document("1", "版本号采用四位管理方式", 0.9));
+
+        packer.pack("版本号", documents);
+        int first = estimates.get();
+        packer.pack("版本号", documents);
+
+        assertThat(estimates.get()).isEqualTo(first);
+    }
+
+    @Test
+    void fingerprintChangesWithTheQuestionOrDocuments() {
+        List<Document> documents = List.of(document("1", "版本号采用四位管理方式", 0.9));
+
+        assertThat(ContextPacker.fingerprint("版本号", documents))
+                .isEqualTo(ContextPacker.fingerprint("版本号", documents))
+                .isNotEqualTo(ContextPacker.fingerprint("版本", documents))
+                .isNotEqualTo(ContextPacker.fingerprint("版本号", List.of(document("2", "另一段", 0.9))));
+    }
+
+    private static Document document(String id, String text, double score) {
+        return Document.builder().id(id).text(text).metadata(Map.of()).score(score).build();
+    }
+}
@@ -0,0 +1,41 @@
+package com.ai.demo.edge;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GradeGenerationEdgeTests {
+
+    private static final String QUESTION = "Spring AI Alibaba Graph 支持哪些节点类型";
+
+    private static final List<String> DOCUMENTS = List.of(
+            "Spring AI Alibaba Graph 支持哪些节点类型？Graph 支持的节点类型包括 LLM 节点、工具节点、条件边与并行节点。");
+
+    /**
+     * 评分只走本地预检，不会调用 ChatClient
+     */
+    private final GradeGenerationEdge edge = new GradeGenerationEdge(null, null, null, null, "combined", 0.8, 0.6, 10);
+
+    @Test
+    void refusalRestatingTheQuestionNeedsTheAnswerGrader() {
+        String refusal = "我无法回答关于 Spring AI Alibaba Graph 支持哪些节点类型的问题。";
+
+        assertThat(LexicalSupport.coverage(QUESTION, refusal)).isGreaterThanOrEqualTo(0.6);
+        assertThat(answeredLocally(refusal)).isFalse();
+        // 只复述问题时即使有文档支持也不走捷径
+        assertThat(answeredLocally(QUESTION)).isFalse();
+    }
+
+    @Test
+    void groundedAnswerCoveringTheQuestionIsAnsweredLocally() {
+        assertThat(answeredLocally("Spring AI Alibaba Graph 支持的节点类型包括 LLM 节点、工具节点、条件边与并行节点。"))
+                .isTrue();
+    }
+
+    private boolean answeredLocally(String generation) {
+        boolean grounded = LexicalSupport.support(generation, DOCUMENTS) >= 0.8;
+        return edge.answeredLocally(QUESTION, generation, grounded, LexicalSupport.coverage(QUESTION, generation));
+    }
+}
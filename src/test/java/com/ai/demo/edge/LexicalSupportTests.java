@@ -0,0 +1,26 @@
+package com.ai.demo.edge;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LexicalSupportTests {
+
+    @Test
+    void measuresHowMuchOfTheGenerationTheDocumentsSupport() {
+        List<String> documents = List.of("Spring AI Alibaba 提供了基于图的智能体编程框架", "版本号采用四位管理方式");
+
+        assertThat(LexicalSupport.support("Spring AI Alibaba 提供了基于图的智能体编程框架", documents)).isEqualTo(1.0);
+        assertThat(LexicalSupport.support("它是一个数据库连接池", documents)).isLessThan(0.2);
+        assertThat(LexicalSupport.support("", documents)).isZero();
+    }
+
+    @Test
+    void measuresHowMuchOfTheQuestionTheGenerationCovers() {
+        assertThat(LexicalSupport.coverage("智能体编程框架", "Spring AI Alibaba 提供了智能体编程框架"))
+                .isEqualTo(1.0);
+        assertThat(LexicalSupport.coverage("版本号怎么管理", "请参考官网")).isZero();
+    }
+}
@@ -0,0 +1,50 @@
+package com.ai.demo.execution;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BulkheadTests {
+
+    @Test
+    void rejectsWhenAllPermitsAreHeldPastTheTimeout() throws Exception {
+        Bulkhead bulkhead = new Bulkhead("test", 2, Duration.ofMillis(50));
+        CountDownLatch started = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<String> first = executor.submit(() -> bulkhead.call(() -> {
+                started.countDown();
+                release.await();
+                return "first";
+            }));
+            Future<String> second = executor.submit(() -> bulkhead.get(() -> {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                return "second";
+            }));
+            started.await();
+
+            assertThat(bulkhead.stats()).containsEntry("inFlight", 2);
+            assertThatThrownBy(() -> bulkhead.get(() -> "third")).isInstanceOf(RejectedExecutionException.class);
+
+            release.countDown();
+            assertThat(first.get()).isEqualTo("first");
+            assertThat(second.get()).isEqualTo("second");
+        }
+        assertThat(bulkhead.get(() -> "after")).isEqualTo("after");
+        assertThat(bulkhead.stats()).containsEntry("inFlight", 0).containsEntry("rejected", 1L);
+    }
+}
@@ -0,0 +1,106 @@
+package com.ai.demo.ingest;
+
+import com.ai.demo.vectorstore.HnswVectorStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.ai.transformer.splitter.TokenTextSplitter;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IngestionPipelineTests {
+
+    private static final String LEGACY_JSON = """
+            {
+              "legacy-1": {"id": "legacy-1", "text": "旧版片段一", "metadata": {"title": "guide"},
+                           "embedding": [1.0, 0.0, 0.0]},
+              "legacy-2": {"id": "legacy-2", "text": "旧版片段二", "metadata": {"title": "guide"},
+                           "embedding": [0.0, 1.0, 0.0]}
+            }
+            """;
+
+    @Test
+    void legacyChunksAreReplacedOnceAfterConversion(@TempDir Path dir) throws Exception {
+        Path documents = Files.createDirectories(dir.resolve("documents"));
+        Files.writeString(documents.resolve("guide.md"), """
+                # 指南
+
+                Spring AI 提供统一的模型调用接口。
+
+                ## 检索
+
+                检索增强生成先从向量库检索相关片段，再交给大模型生成回答。
+                """);
+        Path legacy = dir.resolve("vectorstore.json");
+        Files.writeString(legacy, LEGACY_JSON);
+        File snapshot = dir.resolve("vectorstore.bin").toFile();
+
+        CountingEmbeddingModel embeddingModel = new CountingEmbeddingModel();
+        HnswVectorStore vectorStore = HnswVectorStore.builder(embeddingModel).build();
+        IngestionPipeline pipeline = new IngestionPipeline(vectorStore, embeddingModel,
+                TokenTextSplitter.builder().build(), documents.toUri() + "*.md", 2, 1, 10);
+
+        // 与 /graph/add 的转换分支一致：导入旧版 JSON 并保存快照
+        vectorStore.importJson(legacy.toFile());
+        vectorStore.save(snapshot);
+
+        Map<String, Object> first = pipeline.run(snapshot);
+        int embedded = embeddingModel.requested.size();
+        List<Object> sources = new ArrayList<>();
+        vectorStore.forEachDocument(document -> sources.add(document.getMetadata().get(IngestionPipeline.SOURCE)));
+
+        assertThat(first).containsEntry("chunksDeleted", 2L);
+        assertThat(embedded).isPositive();
+        // 源文件与内容哈希不参与向量化
+        assertThat(embeddingModel.requested).noneMatch(text -> text.contains("guide.md")
+                || text.contains(IngestionPipeline.CONTENT_HASH));
+        assertThat(sources).hasSize(embedded).containsOnly("guide.md");
+
+        embeddingModel.requested.clear();
+        Map<String, Object> second = pipeline.run(snapshot);
+
+        assertThat(embeddingModel.requested).isEmpty();
+        assertThat(second).containsEntry("chunksDeleted", 0L);
+        assertThat(vectorStore.size()).isEqualTo(embedded);
+    }
+
+    private static final class CountingEmbeddingModel implements EmbeddingModel {
+
+        private final List<String> requested = new ArrayList<>();
+
+        static float[] vectorOf(String text) {
+            return new float[]{text.hashCode(), text.length(), 1};
+        }
+
+        @Override
+        public EmbeddingResponse call(EmbeddingRequest request) {
+            requested.addAll(request.getInstructions());
+            List<Embedding> embeddings = new ArrayList<>();
+            for (int i = 0; i < request.getInstructions().size(); i++) {
+                embeddings.add(new Embedding(vectorOf(request.getInstructions().get(i)), i));
+            }
+            return new EmbeddingResponse(embeddings);
+        }
+
+        @Override
+        public float[] embed(Document document) {
+            return vectorOf(document.getText());
+        }
+
+        @Override
+        public int dimensions() {
+            return 3;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.ai.demo.memory;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BoundedChatMemoryRepositoryTests {
+
+    @TempDir
+    Path spillDirectory;
+
+    @Test
+    void sessionsOverTheLimitSpillToDiskAndReloadOnReturn() {
+        BoundedChatMemoryRepository repository = new BoundedChatMemoryRepository(2, 1 << 20, Duration.ofMinutes(30),
+                spillDirectory, Duration.ofDays(1));
+
+        for (String id : List.of("a", "b", "c")) {
+            repository.saveAll(id, List.of(new UserMessage("问题 " + id), new AssistantMessage("回答 " + id)));
+        }
+        assertThat(repository.stats()).containsEntry("residentSessions", 2L).containsEntry("spills", 1L);
+        assertThat(repository.findConversationIds()).containsExactlyInAnyOrder("a", "b", "c");
+
+        // 被淘汰的会话从磁盘读回，消息类型与文本不变
+        for (String id : List.of("a", "b", "c")) {
+            assertThat(repository.findByConversationId(id)).extracting(Message::getText)
+                    .containsExactly("问题 " + id, "回答 " + id);
+        }
+        assertThat(repository.stats()).containsEntry("residentSessions", 2L);
+        assertThat((long) repository.stats().get("reloads")).isPositive();
+
+        repository.deleteByConversationId("a");
+        repository.deleteByConversationId("b");
+        repository.deleteByConversationId("c");
+        assertThat(repository.findConversationIds()).isEmpty();
+        assertThat(spillDirectory).isEmptyDirectory();
+    }
+
+    @Test
+    void withoutSpillDirectoryEvictedSessionsAreForgotten() {
+        BoundedChatMemoryRepository repository = new BoundedChatMemoryRepository(1, 1 << 20, Duration.ofMinutes(30),
+                null, Duration.ofDays(1));
+
+        repository.saveAll("a", List.of(new UserMessage("问题 a")));
+        repository.saveAll("b", List.of(new UserMessage("问题 b")));
+
+        assertThat(repository.findConversationIds()).hasSize(1);
+        assertThat(repository.stats()).containsEntry("evictions", 1L);
+        assertThat(BoundedChatMemoryRepository.weigh("a", List.of(new UserMessage("问题 a"))))
+                .isGreaterThan(2 * "问题 a".length());
+    }
+
+    @Test
+    void statsAreExposedAsMeters() {
+        BoundedChatMemoryRepository repository = new BoundedChatMemoryRepository(1, 1 << 20, Duration.ofMinutes(30),
+                spillDirectory, Duration.ofDays(1));
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        repository.bindTo(registry);
+
+        repository.saveAll("a", List.of(new UserMessage("问题 a")));
+        repository.saveAll("b", List.of(new UserMessage("问题 b")));
+        repository.stats();
+
+        assertThat(registry.get("rag.memory.sessions").gauge().value()).isEqualTo(1);
+        assertThat(registry.get("rag.memory.bytes").gauge().value())
+                .isEqualTo(BoundedChatMemoryRepository.weigh("b", List.of(new UserMessage("问题 b"))));
+        assertThat(registry.get("rag.memory.evictions").functionCounter().count()).isEqualTo(1);
+        assertThat(registry.get("rag.memory.spills").functionCounter().count()).isEqualTo(1);
+    }
+}
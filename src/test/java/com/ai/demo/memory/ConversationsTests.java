@@ -0,0 +1,53 @@
+package com.ai.demo.memory;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.memory.ChatMemoryRepository;
+import org.springframework.ai.chat.memory.InMemoryChatMemoryRepository;
+import org.springframework.ai.chat.memory.MessageWindowChatMemory;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConversationsTests {
+
+    @Test
+    void conversationHasHistoryOnceAnAnswerWasGenerated() {
+        ChatMemoryRepository repository = new InMemoryChatMemoryRepository();
+        // 评分等其他作用域的记录不算问答上文
+        repository.saveAll("AnswerGrader:a", List.of(new UserMessage("评分")));
+
+        assertThat(Conversations.hasHistory(repository, "a")).isFalse();
+
+        repository.saveAll(Conversations.GENERATION_SCOPE + ":a",
+                List.of(new UserMessage("什么是 Graph 框架"), new AssistantMessage("Graph 是……")));
+
+        assertThat(Conversations.hasHistory(repository, "a")).isTrue();
+        assertThat(Conversations.hasHistory(repository, "b")).isFalse();
+    }
+
+    @Test
+    void anonymousRequestsGetDistinctConversationIds() {
+        assertThat(Conversations.idOrNew("a")).isEqualTo("a");
+        assertThat(Conversations.idOrNew(null)).isNotBlank().isNotEqualTo(Conversations.idOrNew(null));
+        assertThat(Conversations.idOrNew(" ")).isNotBlank().isNotEqualTo(" ");
+    }
+
+    @Test
+    void rememberedAnswerBecomesHistoryOfBothGenerationScopes() {
+        ChatMemoryRepository repository = new InMemoryChatMemoryRepository();
+        ChatMemory chatMemory = MessageWindowChatMemory.builder().chatMemoryRepository(repository).build();
+
+        Conversations.remember(chatMemory, "a", "什么是 Graph 框架", "Graph 是……");
+
+        assertThat(Conversations.hasHistory(repository, "a")).isTrue();
+        for (String scope : List.of(Conversations.RETRIEVAL_GENERATION_SCOPE, Conversations.GENERATION_SCOPE)) {
+            assertThat(chatMemory.get(scope + ":a")).extracting(Message::getText)
+                    .containsExactly("什么是 Graph 框架", "Graph 是……");
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.ai.demo.memory;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.memory.InMemoryChatMemoryRepository;
+import org.springframework.ai.chat.memory.MessageWindowChatMemory;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StripedChatMemoryTests {
+
+    @Test
+    void concurrentWritesToOneConversationAreNotLostAndConversationsStayIsolated() {
+        StripedChatMemory memory = new StripedChatMemory(MessageWindowChatMemory.builder()
+                .chatMemoryRepository(new InMemoryChatMemoryRepository())
+                .maxMessages(1000)
+                .build(), 8);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            IntStream.range(0, 200).forEach(i -> executor.execute(() -> {
+                memory.add("a", List.of(new UserMessage("a" + i)));
+                memory.add("b", List.of(new UserMessage("b" + i)));
+            }));
+        }
+
+        assertThat(memory.get("a")).hasSize(200).allMatch(message -> message.getText().startsWith("a"));
+        assertThat(memory.get("b")).hasSize(200).allMatch(message -> message.getText().startsWith("b"));
+        memory.clear("a");
+        assertThat(memory.get("a")).isEmpty();
+        assertThat(memory.get("b")).hasSize(200);
+    }
+
+    @Test
+    void stripeCountIsRoundedUpToAPowerOfTwo() {
+        StripedChatMemory memory = new StripedChatMemory(MessageWindowChatMemory.builder().build(), 5);
+
+        assertThat(IntStream.range(0, 1000).mapToObj(i -> memory.stripeOf("conversation-" + i)).distinct().count())
+                .isEqualTo(8);
+    }
+}
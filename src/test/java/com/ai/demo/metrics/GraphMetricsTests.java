@@ -0,0 +1,59 @@
+package com.ai.demo.metrics;
+
+import com.ai.demo.budget.RequestBudget;
+import com.alibaba.cloud.ai.graph.OverAllState;
+import com.alibaba.cloud.ai.graph.action.NodeAction;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class GraphMetricsTests {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private final GraphMetrics metrics = new GraphMetrics(registry);
+
+    @Test
+    void timesNodesByOutcome() throws Exception {
+        NodeAction ok = metrics.node("retrieve", state -> Map.of("documents", "x"));
+        NodeAction failing = metrics.node("retrieve", state -> {
+            throw new IllegalStateException("boom");
+        });
+
+        assertThat(ok.apply(new OverAllState())).containsEntry("documents", "x");
+        assertThatThrownBy(() -> failing.apply(new OverAllState())).hasMessage("boom");
+
+        assertThat(registry.get("rag.graph.node").tags("node", "retrieve", "outcome", "success").timer().count())
+                .isEqualTo(1);
+        assertThat(registry.get("rag.graph.node").tags("node", "retrieve", "outcome", "error").timer().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void countsEdgeDecisions() throws Exception {
+        metrics.edge("grade", state -> "hallucination").apply(new OverAllState());
+        metrics.edge("grade", state -> "hallucination").apply(new OverAllState());
+        metrics.edge("grade", state -> "useful").apply(new OverAllState());
+
+        assertThat(registry.get("rag.graph.edge.decisions").tags("edge", "grade", "decision", "hallucination")
+                .counter().count()).isEqualTo(2);
+        assertThat(registry.get("rag.graph.edge").tags("edge", "grade").timer().count()).isEqualTo(3);
+    }
+
+    @Test
+    void recordsIterationsPerRequest() {
+        RequestBudget budget = new RequestBudget(3, 12, 40_000, Duration.ofMinutes(1));
+        budget.completeIteration();
+        budget.completeIteration();
+
+        metrics.recordRequest(budget);
+
+        assertThat(registry.get("rag.request.iterations").tags("outcome", "completed").summary().totalAmount())
+                .isEqualTo(2);
+    }
+}
@@ -0,0 +1,35 @@
+package com.ai.demo.node;
+
+import com.ai.demo.tool.WebSearchTool.TavilyResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WebSearchNodeTests {
+
+    @Test
+    void searchesDirectlyUnlessTheQuestionNeedsDecomposition() {
+        assertThat(WebSearchNode.needsDecomposition("今天北京的天气怎么样？")).isFalse();
+        assertThat(WebSearchNode.needsDecomposition("latest Spring AI release")).isFalse();
+
+        assertThat(WebSearchNode.needsDecomposition("LangGraph 和 Spring AI Alibaba Graph 有什么区别？")).isTrue();
+        assertThat(WebSearchNode.needsDecomposition("Spring AI vs LangChain4j")).isTrue();
+        assertThat(WebSearchNode.needsDecomposition("今天天气怎么样？明天呢？")).isTrue();
+    }
+
+    @Test
+    void mapsSearchResultsToDocumentsWithTheAnswerFirst() {
+        TavilyResponse response = new TavilyResponse();
+        response.setAnswer("summary");
+        response.setResults(List.of(new TavilyResponse.Result("Spring AI", "https://spring.io", "content", null, 0.9f,
+                null)));
+
+        List<Document> documents = WebSearchNode.toDocuments(response);
+
+        assertThat(documents).extracting(Document::getText).containsExactly("summary", "content");
+        assertThat(documents.get(1).getMetadata()).containsEntry("origin", "https://spring.io");
+    }
+}
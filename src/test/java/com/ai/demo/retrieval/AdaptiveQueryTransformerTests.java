@@ -0,0 +1,81 @@
+package com.ai.demo.retrieval;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.rag.Query;
+import org.springframework.ai.rag.preretrieval.query.transformation.QueryTransformer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdaptiveQueryTransformerTests {
+
+    private final List<String> calls = new ArrayList<>();
+
+    private QueryTransformer recording(String name) {
+        return query -> {
+            calls.add(name);
+            return query.mutate().text(name + ":" + query.text()).build();
+        };
+    }
+
+    @Test
+    void detectsChineseQuestionsWithIdentifiers() {
+        assertThat(AdaptiveQueryTransformer.isChinese("Spring AI Alibaba 是什么")).isTrue();
+        assertThat(AdaptiveQueryTransformer.isChinese("spring.ai.openai.api-key 怎么配置")).isTrue();
+        assertThat(AdaptiveQueryTransformer.isChinese("How do I configure the api-key?")).isFalse();
+        assertThat(AdaptiveQueryTransformer.isChinese("1.0.0.2")).isTrue();
+    }
+
+    @Test
+    void runsOnlyTheTransformsTheQueryNeeds() {
+        // 只需一项转换时不会用到合并调用的 ChatClient
+        AdaptiveQueryTransformer transformer = new AdaptiveQueryTransformer(recording("compress"),
+                recording("translate"), recording("rewrite"), null, false);
+
+        Query chinese = Query.builder().text("什么是 Graph 框架")
+                .history(new SystemMessage("系统提示词"), new UserMessage("什么是 Graph 框架"))
+                .build();
+        assertThat(transformer.transform(chinese)).isSameAs(chinese);
+        assertThat(calls).isEmpty();
+
+        assertThat(transformer.transform(new Query("What is the Graph framework")).text())
+                .isEqualTo("translate:What is the Graph framework");
+        assertThat(calls).containsExactly("translate");
+
+        calls.clear();
+        Query followUp = Query.builder().text("它支持哪些节点")
+                .history(new UserMessage("什么是 Graph 框架"), new AssistantMessage("Graph 是……"),
+                        new UserMessage("它支持哪些节点"))
+                .build();
+        assertThat(transformer.transform(followUp).text()).isEqualTo("compress:它支持哪些节点");
+        assertThat(calls).containsExactly("compress");
+    }
+
+    @Test
+    void usesPrefetchedDocumentsOnlyWhenTheQueryStaysTheSame() {
+        AdaptiveQueryTransformer transformer = new AdaptiveQueryTransformer(recording("compress"),
+                recording("translate"), recording("rewrite"), null, true);
+        Map<String, Object> context = Map.of(PrefetchedDocumentRetriever.PREFETCHED_DOCUMENTS,
+                List.of(new Document("Graph 是……")));
+
+        // 只差重写时沿用预取文档，不调用大模型
+        Query chinese = Query.builder().text("什么是 Graph 框架").context(context).build();
+        assertThat(transformer.transform(chinese)).isSameAs(chinese);
+        assertThat(calls).isEmpty();
+
+        // 需要翻译时丢弃预取文档，按转换后的问题重新检索
+        AdaptiveQueryTransformer noRewrite = new AdaptiveQueryTransformer(recording("compress"),
+                recording("translate"), recording("rewrite"), null, false);
+        Query english = Query.builder().text("What is the Graph framework").context(context).build();
+        Query transformed = noRewrite.transform(english);
+        assertThat(calls).containsExactly("translate");
+        assertThat(PrefetchedDocumentRetriever.prefetched(transformed)).isNull();
+    }
+}
@@ -0,0 +1,77 @@
+package com.ai.demo.retrieval;
+
+import com.ai.demo.vectorstore.HnswVectorStore;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.ai.rag.Query;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HybridDocumentRetrieverTests {
+
+    /**
+     * 只区分是否提到“版本”，模拟向量检索抓住了语义却分不清具体的配置项
+     */
+    private static final EmbeddingModel EMBEDDING_MODEL = new EmbeddingModel() {
+
+        @Override
+        public EmbeddingResponse call(EmbeddingRequest request) {
+            List<Embedding> embeddings = new ArrayList<>();
+            for (int i = 0; i < request.getInstructions().size(); i++) {
+                embeddings.add(new Embedding(vectorOf(request.getInstructions().get(i)), i));
+            }
+            return new EmbeddingResponse(embeddings);
+        }
+
+        @Override
+        public float[] embed(Document document) {
+            return vectorOf(document.getText());
+        }
+
+        @Override
+        public int dimensions() {
+            return 2;
+        }
+    };
+
+    private static float[] vectorOf(String text) {
+        return text.contains("版本") ? new float[]{1, 0} : new float[]{0.6f, 0.8f};
+    }
+
+    @Test
+    void tokenizesChineseBigramsAndIdentifiers() {
+        assertThat(ChineseTokenizer.tokenize("配置 spring.ai.openai.api-key 即可。"))
+                .containsExactly("配置", "spring.ai.openai.api-key", "spring", "ai", "openai", "api", "key",
+                        "即可");
+        assertThat(ChineseTokenizer.tokenize("大模型")).containsExactly("大模", "模型");
+    }
+
+    @Test
+    void keywordMatchesSurfaceDocumentsMissedByVectorSearch() {
+        HnswVectorStore store = HnswVectorStore.builder(EMBEDDING_MODEL).build();
+        List<Document> documents = List.of(
+                Document.builder().id("versions").text("Spring AI Alibaba 与 Spring Boot 的版本对应关系").build(),
+                Document.builder().id("upgrade").text("升级版本前请阅读发布说明").build(),
+                Document.builder().id("api-key").text("在 application.yaml 中配置 spring.ai.openai.api-key").build(),
+                Document.builder().id("graph").text("Graph 框架用于编排工作流").build());
+        store.add(documents, documents.stream().map(document -> vectorOf(document.getText())).toList());
+        HybridDocumentRetriever retriever = new HybridDocumentRetriever(store, Runnable::run, 3, 4, 0.9,
+                ReciprocalRankFusion.DEFAULT_K);
+
+        List<Document> result = retriever.retrieve(new Query("spring.ai.openai.api-key 配置的版本要求"));
+
+        // 只做向量检索时 api-key 的相似度低于阈值，不会被召回
+        assertThat(result).extracting(Document::getId).containsExactlyInAnyOrder("versions", "upgrade", "api-key");
+
+        store.add(List.of(Document.builder().id("base-url").text("spring.ai.openai.base-url 填写代理地址").build()),
+                List.of(new float[]{0.6f, 0.8f}));
+        assertThat(retriever.retrieve(new Query("base-url")).getFirst().getId()).isEqualTo("base-url");
+    }
+}
@@ -0,0 +1,82 @@
+package com.ai.demo.retrieval;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class LocalRerankerTests {
+
+    private static final float[] QUERY = LocalReranker.normalize(new float[]{1, 1, 0});
+
+    @Test
+    void skipsNearDuplicatesInFavourOfDiverseDocuments() {
+        LocalReranker reranker = new LocalReranker(null, null, 2, 0.7, 0.5);
+        List<Document> documents = List.of(
+                document("a", "Graph 支持并行节点执行"),
+                document("a-copy", "Graph 支持并行节点执行。"),
+                document("b", "节点之间通过共享状态传递数据"));
+        Map<String, float[]> embeddings = Map.of(
+                "a", new float[]{1, 0, 0},
+                "a-copy", new float[]{1, 0, 0},
+                "b", new float[]{0, 1, 0});
+
+        List<Document> reranked = reranker.rerank("并行节点", documents, QUERY, embeddings);
+
+        assertThat(reranked).extracting(Document::getId).containsExactly("a", "b");
+        assertThat(reranked.getFirst().getScore()).isCloseTo(1.0, within(1e-9));
+    }
+
+    @Test
+    void scoresFollowTheMmrOrderRatherThanRelevance() {
+        LocalReranker reranker = new LocalReranker(null, null, 3, 0.7, 0.5);
+        List<Document> documents = List.of(
+                document("a", "Graph 支持并行节点执行"),
+                document("a-copy", "Graph 支持并行节点执行。"),
+                document("b", "节点之间通过共享状态传递数据"));
+        Map<String, float[]> embeddings = Map.of(
+                "a", new float[]{1, 0, 0},
+                "a-copy", new float[]{1, 0, 0},
+                "b", new float[]{0, 1, 0});
+
+        List<Document> reranked = reranker.rerank("并行节点", documents, QUERY, embeddings);
+
+        // a-copy 相关度高于 b，但与 a 重复，MMR 把它排在最后；按分数排序后顺序不变
+        assertThat(reranked).extracting(Document::getId).containsExactly("a", "b", "a-copy");
+        assertThat(reranked).extracting(Document::getScore).isSortedAccordingTo(Comparator.reverseOrder())
+                .doesNotHaveDuplicates();
+    }
+
+    @Test
+    void keywordOverlapBreaksTiesBetweenSimilarEmbeddings() {
+        LocalReranker reranker = new LocalReranker(null, null, 2, 0.5, 1.0);
+        List<Document> documents = List.of(
+                document("a", "版本号采用四位管理方式"),
+                document("b", "配置 spring.ai.openai.api-key 指定密钥"));
+        float[] same = LocalReranker.normalize(new float[]{1, 0.5f, 0});
+        Map<String, float[]> embeddings = Map.of("a", same, "b", same);
+
+        assertThat(reranker.rerank("spring.ai.openai.api-key 怎么配置", documents, QUERY, embeddings))
+                .extracting(Document::getId).containsExactly("b", "a");
+    }
+
+    @Test
+    void ranksByKeywordsAloneWhenNoEmbeddingIsStored() {
+        LocalReranker reranker = new LocalReranker(null, null, 1, 0.7, 0.7);
+        List<Document> documents = List.of(
+                document("web-1", "今天天气晴朗"),
+                document("web-2", "Spring AI Alibaba 发布了新版本"));
+
+        assertThat(reranker.rerank("Spring AI Alibaba 新版本", documents, null, Map.of()))
+                .extracting(Document::getId).containsExactly("web-2");
+    }
+
+    private static Document document(String id, String text) {
+        return Document.builder().id(id).text(text).metadata(Map.of()).build();
+    }
+}
@@ -0,0 +1,68 @@
+package com.ai.demo.retrieval;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.ai.rag.Query;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MultiQueryDocumentRetrieverTests {
+
+    private final List<List<String>> embeddingCalls = new ArrayList<>();
+
+    private final EmbeddingModel embeddingModel = new EmbeddingModel() {
+
+        @Override
+        public EmbeddingResponse call(EmbeddingRequest request) {
+            embeddingCalls.add(request.getInstructions());
+            List<Embedding> embeddings = new ArrayList<>();
+            for (int i = 0; i < request.getInstructions().size(); i++) {
+                embeddings.add(new Embedding(new float[]{i}, i));
+            }
+            return new EmbeddingResponse(embeddings);
+        }
+
+        @Override
+        public float[] embed(Document document) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int dimensions() {
+            return 1;
+        }
+    };
+
+    @Test
+    void embedsSubQueriesOnceAndFusesTheirRankings() {
+        Map<String, List<String>> results = Map.of(
+                "Graph 是什么", List.of("a", "b"),
+                "Graph 框架的作用", List.of("b", "c"),
+                "Graph 支持哪些节点", List.of("b", "d"));
+        RankedRetriever ranked = (query, embedding) -> List.of(results.get(query.text()).stream()
+                .map(id -> Document.builder().id(id).text(id).build())
+                .toList());
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            MultiQueryDocumentRetriever retriever = new MultiQueryDocumentRetriever(
+                    query -> List.of(new Query("Graph 框架的作用"), new Query("Graph 是什么"),
+                            new Query("Graph 支持哪些节点")),
+                    embeddingModel, ranked, executor, 3, ReciprocalRankFusion.DEFAULT_K);
+
+            List<Document> documents = retriever.retrieve(new Query("Graph 是什么"));
+
+            assertThat(embeddingCalls).containsExactly(List.of("Graph 是什么", "Graph 框架的作用", "Graph 支持哪些节点"));
+            assertThat(documents).extracting(Document::getId).containsExactly("b", "a", "c");
+        }
+    }
+}
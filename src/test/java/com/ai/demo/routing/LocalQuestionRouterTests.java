@@ -0,0 +1,66 @@
+package com.ai.demo.routing;
+
+import com.ai.demo.vectorstore.HnswVectorStore;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LocalQuestionRouterTests {
+
+    /**
+     * 提到“框架”的文本落在知识库方向，提到“天气”的正交，其余居中
+     */
+    private static final EmbeddingModel EMBEDDING_MODEL = new EmbeddingModel() {
+
+        @Override
+        public EmbeddingResponse call(EmbeddingRequest request) {
+            List<Embedding> embeddings = new ArrayList<>();
+            for (int i = 0; i < request.getInstructions().size(); i++) {
+                embeddings.add(new Embedding(vectorOf(request.getInstructions().get(i)), i));
+            }
+            return new EmbeddingResponse(embeddings);
+        }
+
+        @Override
+        public float[] embed(Document document) {
+            return vectorOf(document.getText());
+        }
+
+        @Override
+        public int dimensions() {
+            return 2;
+        }
+    };
+
+    private static float[] vectorOf(String text) {
+        if (text.contains("框架")) {
+            return new float[]{1, 0};
+        }
+        return text.contains("天气") ? new float[]{0, 1} : new float[]{1, 1};
+    }
+
+    @Test
+    void routesConfidentQuestionsLocallyAndLeavesTheBandToTheLlm() {
+        HnswVectorStore store = HnswVectorStore.builder(EMBEDDING_MODEL).build();
+        LocalQuestionRouter router = new LocalQuestionRouter(EMBEDDING_MODEL, store, 1, 0.8, 0.3, 0.1,
+                List.of("Spring AI"), List.of("最新"));
+
+        assertThat(router.route("Graph 框架是什么").isUncertain()).isTrue();
+
+        store.add(List.of(Document.builder().id("graph").text("Graph 框架").build()), List.of(new float[]{1, 0}));
+        assertThat(router.route("Graph 框架是什么").dataSource()).isEqualTo(RouteDecision.VECTORSTORE);
+        assertThat(router.route("明天天气怎么样").dataSource()).isEqualTo(RouteDecision.WEB_SEARCH);
+
+        // 相似度约 0.707，落在不确定区间；命中知识库关键词后得分超过阈值
+        assertThat(router.route("怎么开始").isUncertain()).isTrue();
+        assertThat(router.route("怎么开始使用 spring ai").dataSource()).isEqualTo(RouteDecision.VECTORSTORE);
+    }
+}
@@ -0,0 +1,112 @@
+package com.ai.demo.tool;
+
+import com.ai.demo.tool.WebSearchTool.TavilyRequest;
+import com.ai.demo.tool.WebSearchTool.TavilyResponse;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TavilyClientTests {
+
+    private static final String BODY = """
+            {"query": "spring ai", "results": [{"title": "Spring AI", "url": "https://spring.io", "content": "..."}]}
+            """;
+
+    private final AtomicInteger hits = new AtomicInteger();
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private HttpServer server;
+
+    @BeforeEach
+    void startServer() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/search", exchange -> {
+            hits.incrementAndGet();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = BODY.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        release.countDown();
+        server.stop(0);
+    }
+
+    @Test
+    void coalescesConcurrentSearchesAndCachesTheResult() {
+        TavilyClient client = client(Duration.ofSeconds(5));
+
+        List<Mono<TavilyResponse>> searches = List.of(
+                client.search(request("Spring AI")),
+                client.search(request("  spring   ai ")),
+                client.search(request("SPRING AI")));
+        release.countDown();
+        List<TavilyResponse> responses = Mono.zip(searches, results -> List.of(results))
+                .map(results -> results.stream().map(TavilyResponse.class::cast).toList())
+                .block(Duration.ofSeconds(5));
+
+        assertThat(responses).hasSize(3).allSatisfy(response -> assertThat(response.getResults()).hasSize(1));
+        assertThat(client.search(request("spring ai")).block(Duration.ofSeconds(5))).isNotNull();
+        assertThat(hits.get()).isEqualTo(1);
+        assertThat(client.stats()).containsEntry("requests", 1L).containsEntry("hits", 3L);
+    }
+
+    @Test
+    void differentSearchParametersAreCachedSeparately() {
+        TavilyClient client = client(Duration.ofSeconds(5));
+        release.countDown();
+
+        client.search(request("spring ai")).block(Duration.ofSeconds(5));
+        client.search(request("spring ai").toBuilder().maxResults(5).build()).block(Duration.ofSeconds(5));
+
+        assertThat(hits.get()).isEqualTo(2);
+    }
+
+    @Test
+    void failsOnReadTimeoutAndDoesNotCacheTheFailure() {
+        TavilyClient client = client(Duration.ofMillis(100));
+
+        assertThatThrownBy(() -> client.search(request("slow")).block(Duration.ofSeconds(5)))
+                .hasRootCauseInstanceOf(TimeoutException.class);
+
+        release.countDown();
+        assertThat(client.search(request("slow")).block(Duration.ofSeconds(5))).isNotNull();
+        assertThat(hits.get()).isEqualTo(2);
+    }
+
+    private TavilyClient client(Duration readTimeout) {
+        return new TavilyClient(WebClient.builder(), "http://127.0.0.1:" + server.getAddress().getPort(), "test",
+                Duration.ofSeconds(1), readTimeout, Duration.ofMinutes(1), 100);
+    }
+
+    private static TavilyRequest request(String query) {
+        return TavilyRequest.builder().query(query).maxResults(3).build();
+    }
+}
@@ -0,0 +1,116 @@
+package com.ai.demo.vectorstore;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HnswIndexTests {
+
+    private static final int DIMENSIONS = 32;
+
+    @Test
+    void approximateSearchMatchesBruteForce() {
+        Random random = new Random(7);
+        float[][] vectors = randomVectors(random, 2000);
+        HnswIndex index = new HnswIndex(DIMENSIONS, 16, 200, 42L);
+        Arrays.stream(vectors).forEach(index::add);
+
+        int hits = 0;
+        for (int q = 0; q < 50; q++) {
+            float[] query = randomVectors(random, 1)[0];
+            Set<Integer> expected = bruteForce(vectors, query, 10);
+            hits += (int) index.search(query, 10, 100, node -> true).stream()
+                    .filter(neighbor -> expected.contains(neighbor.node()))
+                    .count();
+        }
+        assertThat(hits / 500.0).isGreaterThan(0.9);
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = VectorEncoding.class, names = {"FLOAT16", "INT8"})
+    void quantizedSearchWithRescoringKeepsRecall(VectorEncoding encoding) {
+        Random random = new Random(13);
+        float[][] vectors = randomVectors(random, 2000);
+        HnswIndex index = new HnswIndex(DIMENSIONS, 16, 200, 42L);
+        Arrays.stream(vectors).forEach(index::add);
+        index.quantize(index.buildQuantized(encoding), 4);
+
+        int hits = 0;
+        for (int q = 0; q < 50; q++) {
+            float[] query = randomVectors(random, 1)[0];
+            Set<Integer> expected = bruteForce(vectors, query, 10);
+            hits += (int) index.search(query, 10, 100, node -> true).stream()
+                    .filter(neighbor -> expected.contains(neighbor.node()))
+                    .count();
+        }
+        assertThat(hits / 500.0).isGreaterThan(0.9);
+    }
+
+    @Test
+    void deletedNodesAreNeverReturned() {
+        Random random = new Random(11);
+        float[][] vectors = randomVectors(random, 500);
+        HnswIndex index = new HnswIndex(DIMENSIONS, 8, 100, 42L);
+        Arrays.stream(vectors).forEach(index::add);
+        IntStream.range(0, 500).filter(i -> i % 2 == 0).forEach(index::markDeleted);
+
+        List<HnswIndex.Neighbor> results = index.search(vectors[0], 20, 64, node -> true);
+
+        assertThat(index.liveCount()).isEqualTo(250);
+        assertThat(results).hasSize(20).allMatch(neighbor -> neighbor.node() % 2 == 1);
+    }
+
+    @Test
+    void concurrentSearchesOnVirtualThreadsMatchSequentialResults() throws Exception {
+        Random random = new Random(5);
+        float[][] vectors = randomVectors(random, 1000);
+        HnswIndex index = new HnswIndex(DIMENSIONS, 16, 200, 42L);
+        Arrays.stream(vectors).forEach(index::add);
+        float[][] queries = randomVectors(random, 64);
+        List<List<HnswIndex.Neighbor>> expected = Arrays.stream(queries)
+                .map(query -> index.search(query, 10, 64, node -> true))
+                .toList();
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<List<HnswIndex.Neighbor>>> futures = Arrays.stream(queries)
+                    .map(query -> executor.submit(() -> index.search(query, 10, 64, node -> true)))
+                    .toList();
+            for (int q = 0; q < queries.length; q++) {
+                assertThat(futures.get(q).get()).isEqualTo(expected.get(q));
+            }
+        }
+    }
+
+    private static float[][] randomVectors(Random random, int count) {
+        float[][] vectors = new float[count][DIMENSIONS];
+        for (float[] vector : vectors) {
+            for (int i = 0; i < DIMENSIONS; i++) {
+                vector[i] = (float) random.nextGaussian();
+            }
+        }
+        return vectors;
+    }
+
+    private static Set<Integer> bruteForce(float[][] vectors, float[] query, int k) {
+        SimilarityKernel kernel = SimilarityKernel.scalar();
+        float[] normalizedQuery = kernel.normalize(query.clone());
+        return IntStream.range(0, vectors.length).boxed()
+                .sorted(Comparator.comparingDouble((Integer i) ->
+                        kernel.dot(normalizedQuery, kernel.normalize(vectors[i].clone()))).reversed())
+                .limit(k)
+                .collect(Collectors.toSet());
+    }
+}
@@ -0,0 +1,106 @@
+package com.ai.demo.vectorstore;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.ai.vectorstore.SearchRequest;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ShardedVectorStoreTests {
+
+    private static final EmbeddingModel UNUSED_EMBEDDING_MODEL = new EmbeddingModel() {
+
+        @Override
+        public EmbeddingResponse call(EmbeddingRequest request) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public float[] embed(Document document) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int dimensions() {
+            return 16;
+        }
+    };
+
+    @Test
+    void mergedTopKMatchesSingleStore() {
+        Random random = new Random(17);
+        List<Document> documents = new ArrayList<>();
+        List<float[]> embeddings = new ArrayList<>();
+        for (int i = 0; i < 600; i++) {
+            documents.add(Document.builder().id("doc-" + i).text("文本 " + i).build());
+            embeddings.add(randomVector(random));
+        }
+        HnswVectorStore single = shard();
+        single.add(documents, embeddings);
+        try (ShardedVectorStore sharded = ShardedVectorStore.builder(UNUSED_EMBEDDING_MODEL, i -> shard())
+                .shards(4)
+                .build()) {
+            sharded.add(documents, embeddings);
+            sharded.delete(List.of("doc-1", "doc-2"));
+            single.delete(List.of("doc-1", "doc-2"));
+
+            SearchRequest request = SearchRequest.builder().query("unused").topK(10).similarityThresholdAll().build();
+            for (int q = 0; q < 20; q++) {
+                float[] query = randomVector(random);
+                List<Document> expected = single.similaritySearch(request, query);
+                List<Document> actual = sharded.similaritySearch(request, query);
+
+                assertThat(actual).extracting(Document::getId)
+                        .containsExactlyElementsOf(expected.stream().map(Document::getId).toList());
+            }
+            assertThat(sharded.size()).isEqualTo(598);
+        }
+    }
+
+    @Test
+    void loadReplacesShardsWhoseSnapshotIsMissing(@TempDir Path dir) {
+        File file = dir.resolve("vectorstore.bin").toFile();
+        // 两个分片下 "a" 落在分片 1，"b" 落在分片 0
+        List<Document> documents = List.of(Document.builder().id("a").text("文本 a").build(),
+                Document.builder().id("b").text("文本 b").build());
+        Random random = new Random(7);
+        try (ShardedVectorStore store = ShardedVectorStore.builder(UNUSED_EMBEDDING_MODEL, i -> shard())
+                .shards(2)
+                .build()) {
+            store.add(documents, List.of(randomVector(random), randomVector(random)));
+            store.save(file);
+            store.delete(List.of("b"));
+            store.save(file);
+            assertThat(new File(file.getPath() + ".0")).doesNotExist();
+
+            store.add(List.of(documents.get(1)), List.of(randomVector(random)));
+            store.load(file);
+
+            List<String> ids = new ArrayList<>();
+            store.forEachDocument(document -> ids.add(document.getId()));
+            assertThat(ids).containsExactly("a");
+        }
+    }
+
+    private static HnswVectorStore shard() {
+        return HnswVectorStore.builder(UNUSED_EMBEDDING_MODEL).efSearch(600).build();
+    }
+
+    private static float[] randomVector(Random random) {
+        float[] vector = new float[16];
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+}
@@ -0,0 +1,46 @@
+package com.ai.demo.vectorstore;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class SimilarityKernelTests {
+
+    @Test
+    void vectorizedKernelMatchesScalar() {
+        assumeTrue(SimilarityKernels.VECTORIZED != null, "jdk.incubator.vector is not enabled");
+        SimilarityKernel vectorized = SimilarityKernel.vectorized();
+        SimilarityKernel scalar = SimilarityKernel.scalar();
+        Random random = new Random(5);
+        for (int dimensions : new int[]{1, 7, 31, 64, 1536}) {
+            float[] a = new float[dimensions];
+            float[] b = new float[dimensions + 3];
+            byte[] codes = new byte[dimensions + 3];
+            for (int i = 0; i < dimensions; i++) {
+                a[i] = (float) random.nextGaussian();
+            }
+            for (int i = 0; i < b.length; i++) {
+                b[i] = (float) random.nextGaussian();
+            }
+            random.nextBytes(codes);
+
+            assertThat(vectorized.dot(a, b, 3, dimensions)).isCloseTo(scalar.dot(a, b, 3, dimensions), within(1e-3f));
+            assertThat(vectorized.dotUnsigned(a, codes, 3, dimensions))
+                    .isCloseTo(scalar.dotUnsigned(a, codes, 3, dimensions), within(0.05f));
+        }
+    }
+
+    @Test
+    void cosineOfNormalizedVectorsEqualsDot() {
+        SimilarityKernel kernel = SimilarityKernel.auto();
+        float[] a = {3, 4, 0};
+        float[] b = {4, 3, 0};
+
+        assertThat(kernel.cosine(a, b)).isCloseTo(0.96f, within(1e-6f));
+        assertThat(kernel.dot(kernel.normalize(a.clone()), kernel.normalize(b.clone()))).isCloseTo(0.96f, within(1e-6f));
+    }
+}
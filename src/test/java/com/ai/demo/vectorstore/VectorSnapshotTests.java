@@ -0,0 +1,50 @@
+package com.ai.demo.vectorstore;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class VectorSnapshotTests {
+
+    @Test
+    void reopenedSnapshotAnswersLikeTheOriginalIndex(@TempDir Path dir) throws Exception {
+        Random random = new Random(3);
+        HnswIndex index = new HnswIndex(24, 8, 64, 42L);
+        List<StoredDocument> documents = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            index.add(randomVector(random, 24));
+            documents.add(new StoredDocument("doc-" + i, "文本 " + i, Map.of("title", "标题 " + i)));
+        }
+        index.markDeleted(5);
+
+        Path file = dir.resolve("vectorstore.bin");
+        VectorSnapshot.write(file, index, documents::get, null);
+        VectorSnapshot snapshot = VectorSnapshot.open(file, 42L, SimilarityKernel.auto());
+
+        float[] query = randomVector(random, 24);
+        assertThat(snapshot.index().search(query, 10, 64, node -> true))
+                .isEqualTo(index.search(query, 10, 64, node -> true));
+        assertThat(snapshot.count()).isEqualTo(300);
+        assertThat(snapshot.document(5)).isNull();
+        assertThat(snapshot.document(7)).isEqualTo(documents.get(7));
+        assertThat(snapshot.id(7)).isEqualTo("doc-7");
+
+        int appended = snapshot.index().add(query);
+        assertThat(snapshot.index().search(query, 1, 64, node -> true).getFirst().node()).isEqualTo(appended);
+    }
+
+    private static float[] randomVector(Random random, int dimensions) {
+        float[] vector = new float[dimensions];
+        for (int i = 0; i < dimensions; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+}